@@ -42,7 +42,7 @@ public class ProtoFormattingModelBuilder implements FormattingModelBuilder {
 
   @Override
   public TextRange getRangeAffectingIndent(PsiFile file, int offset, ASTNode elementAtOffset) {
-    return null; // null is default
+    return ProtoBlock.getRangeAffectingIndent(elementAtOffset);
   }
 
   private static class ProtoFormattingModel implements FormattingModel {
@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.actions;
+
+import com.google.protoeditor.psi.ProtoElementWithName;
+import com.google.protoeditor.psi.ProtoFile;
+import com.google.protoeditor.psi.ProtoJavaNames;
+
+import com.intellij.codeInsight.hint.HintManager;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.LangDataKeys;
+import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
+
+/**
+ * Navigates from the proto definition at the caret to the Java class generated for it.
+ * <p>
+ * The class name is derived from the file options of the proto file, so finding the class is
+ * a single lookup in the Java short-name index.
+ */
+public class GotoGeneratedClassAction extends AnAction {
+
+  @Override
+  public void update(AnActionEvent e) {
+    e.getPresentation().setEnabled(e.getData(PlatformDataKeys.EDITOR) != null
+        && e.getData(LangDataKeys.PSI_FILE) instanceof ProtoFile);
+  }
+
+  @Override
+  public void actionPerformed(AnActionEvent e) {
+    Editor editor = e.getData(PlatformDataKeys.EDITOR);
+    PsiFile file = e.getData(LangDataKeys.PSI_FILE);
+    if (editor == null || !(file instanceof ProtoFile)) {
+      return;
+    }
+    ProtoElementWithName definition = ProtoJavaNames.getEnclosingDefinition(
+        file.findElementAt(editor.getCaretModel().getOffset()));
+    String className = definition == null ? null : ProtoJavaNames.getJavaClassName(definition);
+    if (className == null) {
+      HintManager.getInstance().showErrorHint(editor,
+          "Place the caret inside a message, enum or service");
+      return;
+    }
+    PsiClass cls = JavaPsiFacade.getInstance(file.getProject())
+        .findClass(className, GlobalSearchScope.allScope(file.getProject()));
+    if (cls == null) {
+      HintManager.getInstance().showErrorHint(editor,
+          "Generated class " + className + " not found");
+      return;
+    }
+    cls.navigate(true);
+  }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.actions;
+
+import com.google.protoeditor.index.ProtoJavaNameIndex;
+import com.google.protoeditor.psi.ProtoElementWithName;
+
+import com.intellij.codeInsight.hint.HintManager;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.LangDataKeys;
+import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.pom.Navigatable;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+
+import java.util.List;
+
+/**
+ * Navigates from a generated Java class to the proto definition it was generated from.
+ * <p>
+ * The innermost class at the caret that has a proto definition wins, so the caret may be
+ * anywhere inside the generated code of a nested message.
+ */
+public class GotoProtoDefinitionAction extends AnAction {
+
+  @Override
+  public void update(AnActionEvent e) {
+    e.getPresentation().setEnabled(e.getData(PlatformDataKeys.EDITOR) != null
+        && e.getData(LangDataKeys.PSI_FILE) instanceof PsiJavaFile);
+  }
+
+  @Override
+  public void actionPerformed(AnActionEvent e) {
+    Editor editor = e.getData(PlatformDataKeys.EDITOR);
+    PsiFile file = e.getData(LangDataKeys.PSI_FILE);
+    if (editor == null || !(file instanceof PsiJavaFile)) {
+      return;
+    }
+    GlobalSearchScope scope = GlobalSearchScope.allScope(file.getProject());
+    PsiClass cls = PsiTreeUtil.getParentOfType(
+        file.findElementAt(editor.getCaretModel().getOffset()), PsiClass.class, false);
+    for (; cls != null; cls = PsiTreeUtil.getParentOfType(cls, PsiClass.class, true)) {
+      String qualifiedName = cls.getQualifiedName();
+      if (qualifiedName == null) {
+        continue;
+      }
+      List<ProtoElementWithName> definitions =
+          ProtoJavaNameIndex.findProtoDefinitions(qualifiedName, scope);
+      if (!definitions.isEmpty() && definitions.get(0) instanceof Navigatable) {
+        ((Navigatable) definitions.get(0)).navigate(true);
+        return;
+      }
+    }
+    HintManager.getInstance().showErrorHint(editor, "No proto definition found");
+  }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.actions;
+
+import com.google.protoeditor.validation.ProtoCheckStatistics;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+
+/**
+ * Shows the {@link ProtoCheckStatistics} of the current project and writes them to the log.
+ */
+public class ShowProtoCheckStatisticsAction extends AnAction {
+
+  @Override
+  public void actionPerformed(AnActionEvent e) {
+    Project project = e.getData(PlatformDataKeys.PROJECT);
+    if (project == null) {
+      return;
+    }
+    ProtoCheckStatistics statistics = ProtoCheckStatistics.getInstance(project);
+    statistics.dumpToLog();
+    String message = ProtoCheckStatistics.isEnabled()
+        ? statistics.getReport()
+        : "Collection is disabled.\n\n" + statistics.getReport();
+    Messages.showInfoMessage(project, message, "Proto Check Statistics");
+  }
+
+  @Override
+  public void update(AnActionEvent e) {
+    e.getPresentation().setEnabled(e.getData(PlatformDataKeys.PROJECT) != null);
+  }
+}
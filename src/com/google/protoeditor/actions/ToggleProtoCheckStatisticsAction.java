@@ -0,0 +1,39 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.actions;
+
+import com.google.protoeditor.validation.ProtoCheckStatistics;
+
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.ToggleAction;
+
+/**
+ * Turns the collection of {@link ProtoCheckStatistics}, and with it of all plugin-wide
+ * performance metrics, on and off.
+ */
+public class ToggleProtoCheckStatisticsAction extends ToggleAction {
+
+  @Override
+  public boolean isSelected(AnActionEvent e) {
+    return ProtoCheckStatistics.isEnabled();
+  }
+
+  @Override
+  public void setSelected(AnActionEvent e, boolean state) {
+    ProtoCheckStatistics.setEnabled(state);
+  }
+}
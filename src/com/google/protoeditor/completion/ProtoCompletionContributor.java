@@ -0,0 +1,173 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.completion;
+
+import com.google.common.base.Strings;
+import com.google.protoeditor.ProtoeditorIcon;
+import com.google.protoeditor.index.ProtoSymbolIndex;
+import com.google.protoeditor.index.ProtoSymbolIndex.ProtoIndexKey;
+import com.google.protoeditor.index.ProtoSymbolIndex.ProtoIndexValue;
+import com.google.protoeditor.index.ProtoSymbolIndex.ProtoSymbolType;
+import com.google.protoeditor.lex.ProtoTokenTypes;
+import com.google.protoeditor.psi.ProtoFile;
+import com.google.protoeditor.psi.ProtoMessageTypeReference;
+import com.google.protoeditor.psi.ProtoPsiTools;
+
+import com.intellij.codeInsight.completion.CompletionContributor;
+import com.intellij.codeInsight.completion.CompletionParameters;
+import com.intellij.codeInsight.completion.CompletionProvider;
+import com.intellij.codeInsight.completion.CompletionResultSet;
+import com.intellij.codeInsight.completion.CompletionType;
+import com.intellij.codeInsight.completion.PrefixMatcher;
+import com.intellij.codeInsight.completion.PrioritizedLookupElement;
+import com.intellij.codeInsight.lookup.LookupElement;
+import com.intellij.codeInsight.lookup.LookupElementBuilder;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.patterns.PlatformPatterns;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.ProcessingContext;
+import com.intellij.util.Processor;
+import com.intellij.util.indexing.FileBasedIndex;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Completes the message and enum types of fields and RPCs from {@link ProtoSymbolIndex}.
+ * <p>
+ * Candidates are streamed from the index keys that match the typed prefix, including camel
+ * humps, and built from the index values alone, so no PSI of other files is loaded. They are
+ * ranked by {@link Proximity} to the completed file, and streaming stops once
+ * {@link #MAX_VARIANTS} candidates were produced or the platform stopped the result set. The
+ * Java message classes come from the background variants of the reference.
+ */
+public class ProtoCompletionContributor extends CompletionContributor {
+
+  static final int MAX_VARIANTS = 500;
+
+  /**
+   * How close a candidate is to the completed file, from farthest to closest.
+   */
+  enum Proximity {
+    OTHER,
+    TRANSITIVELY_IMPORTED,
+    DIRECTLY_IMPORTED,
+    SAME_PACKAGE,
+    SAME_FILE
+  }
+
+  public ProtoCompletionContributor() {
+    extend(CompletionType.BASIC,
+        PlatformPatterns.psiElement(ProtoTokenTypes.IDENTIFIER)
+            .withParent(ProtoMessageTypeReference.class),
+        new CompletionProvider<CompletionParameters>() {
+          @Override
+          protected void addCompletions(@NotNull CompletionParameters parameters,
+              ProcessingContext context, @NotNull CompletionResultSet result) {
+            addTypeVariants(parameters, result);
+          }
+        });
+  }
+
+  private static void addTypeVariants(CompletionParameters parameters,
+      final CompletionResultSet result) {
+    PsiFile originalFile = parameters.getOriginalFile();
+    if (!(originalFile instanceof ProtoFile)) {
+      return;
+    }
+    final ProtoFile file = (ProtoFile) originalFile;
+    final VirtualFile vFile = file.getVirtualFile();
+    final String packageName = Strings.nullToEmpty(ProtoPsiTools.getContainingPackage(file));
+    final ProtoImports imports = ProtoImports.getInstance(file);
+    final PrefixMatcher matcher = result.getPrefixMatcher();
+    final GlobalSearchScope scope = GlobalSearchScope.allScope(file.getProject());
+    final FileBasedIndex index = FileBasedIndex.getInstance();
+
+    final int[] produced = {0};
+    index.processAllKeys(ProtoSymbolIndex.NAME, new Processor<ProtoIndexKey>() {
+      @Override
+      public boolean process(final ProtoIndexKey key) {
+        ProgressManager.checkCanceled();
+        if (key.getType() != ProtoSymbolType.TOP_LEVEL_DEFINTION
+            || !matcher.prefixMatches(key.getSymbolName())) {
+          return true;
+        }
+        index.processValues(ProtoSymbolIndex.NAME, key, null,
+            new FileBasedIndex.ValueProcessor<List<ProtoIndexValue>>() {
+              @Override
+              public boolean process(VirtualFile definingFile, List<ProtoIndexValue> values) {
+                for (ProtoIndexValue value : values) {
+                  if (value.isTypeDefinition()) {
+                    Proximity proximity = getProximity(definingFile, value.getPackageName(),
+                        vFile, packageName, imports);
+                    result.addElement(createLookupElement(key.getSymbolName(), definingFile,
+                        proximity));
+                    produced[0]++;
+                    // Further values of the key would only add the same variant again.
+                    break;
+                  }
+                }
+                return true;
+              }
+            }, scope);
+        return produced[0] < MAX_VARIANTS && !result.isStopped();
+      }
+    }, scope, null);
+
+    PsiElement parent = parameters.getPosition().getParent();
+    if (parent instanceof ProtoMessageTypeReference) {
+      for (Object variant : ((ProtoMessageTypeReference) parent).getVariants()) {
+        if (variant instanceof PsiClass) {
+          result.addElement(PrioritizedLookupElement.withPriority(
+              LookupElementBuilder.create((PsiClass) variant), Proximity.OTHER.ordinal()));
+        }
+      }
+    }
+    // The index covers everything the reference would offer, so skip the eager variants.
+    result.stopHere();
+  }
+
+  static Proximity getProximity(VirtualFile definingFile, String definingPackage,
+      VirtualFile completedFile, String completedPackage, ProtoImports imports) {
+    if (definingFile.equals(completedFile)) {
+      return Proximity.SAME_FILE;
+    }
+    if (definingPackage.equals(completedPackage)) {
+      return Proximity.SAME_PACKAGE;
+    }
+    if (imports.isDirectlyImported(definingFile)) {
+      return Proximity.DIRECTLY_IMPORTED;
+    }
+    if (imports.isImported(definingFile)) {
+      return Proximity.TRANSITIVELY_IMPORTED;
+    }
+    return Proximity.OTHER;
+  }
+
+  private static LookupElement createLookupElement(String name, VirtualFile definingFile,
+      Proximity proximity) {
+    LookupElementBuilder builder = LookupElementBuilder.create(name)
+        .withIcon(ProtoeditorIcon.PROTOEDITOR_ICON)
+        .withTypeText(definingFile.getName(), true);
+    return PrioritizedLookupElement.withPriority(builder, proximity.ordinal());
+  }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.completion;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.protoeditor.index.ProtoFileHeaderIndex;
+import com.google.protoeditor.psi.ProtoFile;
+import com.google.protoeditor.psi.ProtoImportStatement;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.FilenameIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The files imported by a proto file, directly and transitively.
+ * <p>
+ * Import paths are matched against the ends of the paths of project files with the same name.
+ * The imports of the given file are read from its PSI, and those of the imported files from
+ * {@link ProtoFileHeaderIndex}, so no other file is parsed. The transitive imports are collected
+ * breadth-first and capped at {@link #MAX_FILES}, so a file importing a large part of the
+ * project costs a bounded number of index lookups. The result is not cached: it depends on the
+ * imports of other files, and is built once per completion.
+ */
+class ProtoImports {
+
+  static final int MAX_FILES = 500;
+
+  static ProtoImports getInstance(ProtoFile file) {
+    Project project = file.getProject();
+    GlobalSearchScope scope = GlobalSearchScope.allScope(project);
+    Set<VirtualFile> direct = new HashSet<VirtualFile>();
+    for (ProtoImportStatement statement : file.getImportStatements()) {
+      String path = statement.getImportedPath();
+      if (path != null) {
+        resolveImport(project, path, scope, direct);
+      }
+    }
+    Set<VirtualFile> all = new HashSet<VirtualFile>(direct);
+    Deque<VirtualFile> worklist = new ArrayDeque<VirtualFile>(direct);
+    while (!worklist.isEmpty() && all.size() < MAX_FILES) {
+      ProgressManager.checkCanceled();
+      ProtoFileHeaderIndex.Header header =
+          ProtoFileHeaderIndex.getHeader(project, worklist.poll());
+      if (header == null) {
+        continue;
+      }
+      for (String path : header.getImportedPaths()) {
+        Set<VirtualFile> imported = new HashSet<VirtualFile>();
+        resolveImport(project, path, scope, imported);
+        for (VirtualFile next : imported) {
+          if (all.add(next)) {
+            worklist.add(next);
+          }
+        }
+      }
+    }
+    return new ProtoImports(direct, all);
+  }
+
+  private static void resolveImport(Project project, String path, GlobalSearchScope scope,
+      Set<VirtualFile> files) {
+    String name = path.substring(path.lastIndexOf('/') + 1);
+    for (VirtualFile candidate : FilenameIndex.getVirtualFilesByName(project, name, scope)) {
+      String candidatePath = candidate.getPath();
+      if (candidatePath.equals(path) || candidatePath.endsWith("/" + path)) {
+        files.add(candidate);
+      }
+    }
+  }
+
+  private final Set<VirtualFile> direct;
+  private final Set<VirtualFile> transitive;
+
+  private ProtoImports(Set<VirtualFile> direct, Set<VirtualFile> transitive) {
+    this.direct = ImmutableSet.copyOf(direct);
+    this.transitive = ImmutableSet.copyOf(transitive);
+  }
+
+  boolean isDirectlyImported(VirtualFile file) {
+    return direct.contains(file);
+  }
+
+  /**
+   * Returns {@code true} if the file is imported directly or through other imported files.
+   */
+  boolean isImported(VirtualFile file) {
+    return transitive.contains(file);
+  }
+}
@@ -19,7 +19,11 @@ package com.google.protoeditor.findusages;
 import com.google.protoeditor.lex.ProtoElementTypes;
 import com.google.protoeditor.lex.ProtoTokenTypes;
 import com.google.protoeditor.psi.ProtoElementWithName;
+import com.google.protoeditor.psi.ProtoEnumConstant;
+import com.google.protoeditor.psi.ProtoEnumDefinition;
+import com.google.protoeditor.psi.ProtoGroupDefinition;
 import com.google.protoeditor.psi.ProtoMessageDefinition;
+import com.google.protoeditor.psi.ProtoNamedElement;
 import com.google.protoeditor.psi.ProtoProperty;
 import com.google.protoeditor.psi.ProtoRpcDefinition;
 import com.google.protoeditor.psi.ProtoServiceDefinition;
@@ -29,15 +33,21 @@ import com.intellij.lang.findUsages.FindUsagesProvider;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.search.UsageSearchContext;
 import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.TokenSet;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class ProtoFindUsagesProvider implements FindUsagesProvider {
 
+  private static final TokenSet REFERENCE_ELEMENT_TYPES = TokenSet.create(
+      ProtoElementTypes.MESSAGE_TYPE_REFERENCE, ProtoElementTypes.ENUM_PROPERTY_TYPE,
+      ProtoElementTypes.USER_DEFINED_PROPERTY_TYPE, ProtoElementTypes.EXTEND_DEFINITION,
+      ProtoElementTypes.DEFAULT_VALUE);
+
   public boolean mayHaveReferences(IElementType token, short searchContext) {
     if ((searchContext & UsageSearchContext.IN_CODE) != 0
-        && (token == ProtoElementTypes.MESSAGE_TYPE_REFERENCE)) {
+        && (token == ProtoTokenTypes.IDENTIFIER || REFERENCE_ELEMENT_TYPES.contains(token))) {
       return true;
     }
     if ((searchContext & UsageSearchContext.IN_COMMENTS) != 0 && (
@@ -57,7 +67,8 @@ public class ProtoFindUsagesProvider implements FindUsagesProvider {
   }
 
   public boolean canFindUsagesFor(PsiElement psiElement) {
-    return psiElement instanceof ProtoMessageDefinition;
+    return psiElement instanceof ProtoNamedElement
+        && ((ProtoNamedElement) psiElement).getName() != null;
   }
 
   @Nullable
@@ -70,6 +81,15 @@ public class ProtoFindUsagesProvider implements FindUsagesProvider {
     if (psiElement instanceof ProtoMessageDefinition) {
       return "message";
     }
+    if (psiElement instanceof ProtoEnumDefinition) {
+      return "enum";
+    }
+    if (psiElement instanceof ProtoEnumConstant) {
+      return "enum constant";
+    }
+    if (psiElement instanceof ProtoGroupDefinition) {
+      return "group";
+    }
     if (psiElement instanceof ProtoServiceDefinition) {
       return "service";
     }
@@ -89,6 +109,12 @@ public class ProtoFindUsagesProvider implements FindUsagesProvider {
 
   @NotNull
   public String getNodeText(PsiElement psiElement, boolean useFullName) {
+    if (useFullName && psiElement instanceof ProtoNamedElement) {
+      String qualifiedName = ((ProtoNamedElement) psiElement).getQualifiedName();
+      if (qualifiedName != null) {
+        return qualifiedName;
+      }
+    }
     if (psiElement instanceof ProtoElementWithName) {
       ProtoElementWithName el = (ProtoElementWithName) psiElement;
 
@@ -0,0 +1,40 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.findusages;
+
+import com.google.protoeditor.parsing.ProtoKeywords;
+import com.google.protoeditor.psi.ProtoChangeTools;
+
+import com.intellij.lang.refactoring.NamesValidator;
+import com.intellij.openapi.project.Project;
+
+/**
+ * Tells the rename refactoring which names are valid for proto definitions, so that the rename
+ * dialog rejects names that would not lex as one identifier.
+ */
+public class ProtoNamesValidator implements NamesValidator {
+
+  @Override
+  public boolean isKeyword(String name, Project project) {
+    return ProtoKeywords.isKeyword(name);
+  }
+
+  @Override
+  public boolean isIdentifier(String name, Project project) {
+    return ProtoChangeTools.isIdentifier(name);
+  }
+}
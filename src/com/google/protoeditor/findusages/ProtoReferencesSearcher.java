@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.findusages;
+
+import com.google.protoeditor.ProtoFileType;
+import com.google.protoeditor.psi.ProtoNamedElement;
+
+import com.intellij.openapi.application.QueryExecutorBase;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiReference;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.SearchScope;
+import com.intellij.psi.search.UsageSearchContext;
+import com.intellij.psi.search.searches.ReferencesSearch;
+import com.intellij.util.Processor;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Searches references to proto definitions through the word index, restricted to the proto
+ * files of the effective search scope.
+ * <p>
+ * The effective scope already includes the use scope of the definition, i.e. the defining
+ * file and its importers, so only the files that can refer to the definition are opened.
+ * References are collected through the search optimizer, which merges this request with other
+ * searches for the same word into a single pass.
+ */
+public class ProtoReferencesSearcher
+    extends QueryExecutorBase<PsiReference, ReferencesSearch.SearchParameters> {
+
+  public ProtoReferencesSearcher() {
+    super(true);
+  }
+
+  @Override
+  public void processQuery(@NotNull ReferencesSearch.SearchParameters queryParameters,
+      @NotNull Processor<PsiReference> consumer) {
+    PsiElement element = queryParameters.getElementToSearch();
+    if (!(element instanceof ProtoNamedElement)) {
+      return;
+    }
+    String name = ((ProtoNamedElement) element).getName();
+    if (StringUtil.isEmpty(name)) {
+      return;
+    }
+    SearchScope scope = queryParameters.getEffectiveSearchScope();
+    if (scope instanceof GlobalSearchScope) {
+      scope = GlobalSearchScope.getScopeRestrictedByFileTypes((GlobalSearchScope) scope,
+          ProtoFileType.instance());
+    }
+    queryParameters.getOptimizer().searchWord(name, scope, UsageSearchContext.IN_CODE, true,
+        element);
+  }
+}
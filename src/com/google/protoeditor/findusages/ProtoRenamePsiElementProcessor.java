@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.findusages;
+
+import com.google.protoeditor.psi.ProtoChangeTools;
+import com.google.protoeditor.psi.ProtoFile;
+import com.google.protoeditor.psi.ProtoNamedElement;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiNamedElement;
+import com.intellij.psi.PsiReference;
+import com.intellij.refactoring.listeners.RefactoringElementListener;
+import com.intellij.refactoring.rename.RenamePsiElementProcessor;
+import com.intellij.usageView.UsageInfo;
+import com.intellij.util.IncorrectOperationException;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renames proto definitions together with their usages.
+ * <p>
+ * The usages are collected up front by the rename processor through {@link
+ * ProtoReferencesSearcher}. Instead of changing the PSI once per usage, the usages in other proto
+ * files are grouped per document and replaced as text in one batch, and each document is
+ * committed once afterwards. Usages in the defining file are renamed through the PSI, so that
+ * the renamed definition stays valid for the refactoring listeners.
+ */
+public class ProtoRenamePsiElementProcessor extends RenamePsiElementProcessor {
+
+  private static final Comparator<TextRange> BY_START_DESCENDING = new Comparator<TextRange>() {
+    @Override
+    public int compare(TextRange range1, TextRange range2) {
+      return range2.getStartOffset() - range1.getStartOffset();
+    }
+  };
+
+  @Override
+  public boolean canProcessElement(@NotNull PsiElement element) {
+    return element instanceof ProtoNamedElement;
+  }
+
+  @Override
+  public void renameElement(PsiElement element, String newName, UsageInfo[] usages,
+      @Nullable RefactoringElementListener listener) throws IncorrectOperationException {
+    if (!ProtoChangeTools.isIdentifier(newName)) {
+      // The usages in other files are replaced as text, which would not catch an invalid name.
+      throw new IncorrectOperationException("not a valid identifier: " + newName);
+    }
+    PsiDocumentManager documentManager = PsiDocumentManager.getInstance(element.getProject());
+    PsiFile definingFile = element.getContainingFile();
+    Map<Document, List<TextRange>> rangesByDocument =
+        new LinkedHashMap<Document, List<TextRange>>();
+    List<PsiReference> psiReferences = new ArrayList<PsiReference>();
+    for (UsageInfo usage : usages) {
+      PsiReference reference = usage.getReference();
+      if (reference == null) {
+        // Usages in comments and strings are renamed by the rename processor itself.
+        continue;
+      }
+      PsiFile file = reference.getElement().getContainingFile();
+      Document document = file instanceof ProtoFile && file != definingFile
+          ? documentManager.getDocument(file) : null;
+      if (document == null) {
+        psiReferences.add(reference);
+      } else {
+        List<TextRange> ranges = rangesByDocument.get(document);
+        if (ranges == null) {
+          ranges = new ArrayList<TextRange>();
+          rangesByDocument.put(document, ranges);
+        }
+        ranges.add(getLastSegmentRange(reference));
+      }
+    }
+
+    for (Map.Entry<Document, List<TextRange>> entry : rangesByDocument.entrySet()) {
+      ProgressManager.checkCanceled();
+      Document document = entry.getKey();
+      documentManager.doPostponedOperationsAndUnblockDocument(document);
+      replaceAll(document, entry.getValue(), newName);
+      documentManager.commitDocument(document);
+    }
+    for (PsiReference reference : psiReferences) {
+      reference.handleElementRename(newName);
+    }
+    ((PsiNamedElement) element).setName(newName);
+    if (listener != null) {
+      listener.elementRenamed(element);
+    }
+  }
+
+  /**
+   * Returns the range of the last segment of the referenced name, in the coordinates of the file
+   * containing the reference. Renaming a definition keeps the qualifier of qualified names.
+   */
+  static TextRange getLastSegmentRange(PsiReference reference) {
+    PsiElement referenceElement = reference.getElement();
+    TextRange rangeInElement = reference.getRangeInElement();
+    String name = rangeInElement.substring(referenceElement.getText());
+    return TextRange.create(rangeInElement.getStartOffset() + name.lastIndexOf('.') + 1,
+        rangeInElement.getEndOffset())
+        .shiftRight(referenceElement.getTextRange().getStartOffset());
+  }
+
+  /**
+   * Replaces all given ranges of the document with the given text. The ranges are replaced from
+   * the end of the document, so the replacements do not shift the ranges still to be replaced;
+   * duplicate and overlapping ranges are replaced once.
+   */
+  static void replaceAll(Document document, Collection<TextRange> ranges, String text) {
+    List<TextRange> sorted = new ArrayList<TextRange>(ranges);
+    Collections.sort(sorted, BY_START_DESCENDING);
+    int limit = document.getTextLength();
+    for (TextRange range : sorted) {
+      if (range.getEndOffset() <= limit) {
+        document.replaceString(range.getStartOffset(), range.getEndOffset(), text);
+        limit = range.getStartOffset();
+      }
+    }
+  }
+}
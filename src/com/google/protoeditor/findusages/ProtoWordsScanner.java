@@ -19,15 +19,75 @@ package com.google.protoeditor.findusages;
 import com.google.protoeditor.lex.ProtoLexer;
 import com.google.protoeditor.lex.ProtoTokenTypes;
 
-import com.intellij.lang.cacheBuilder.DefaultWordsScanner;
-import com.intellij.psi.tree.TokenSet;
+import com.intellij.lang.cacheBuilder.WordOccurrence;
+import com.intellij.lang.cacheBuilder.WordsScanner;
+import com.intellij.lexer.Lexer;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.util.Processor;
 
-public class ProtoWordsScanner extends DefaultWordsScanner {
+/**
+ * Splits proto files into the words stored in the word index.
+ * <p>
+ * Identifiers are split at dots, so that a qualified type name like {@code foo.Bar} is found
+ * when searching for {@code Bar}; comments and string literals contribute the identifier-like
+ * words they contain. Words are reported as ranges of the file text through a single reused
+ * {@link WordOccurrence}, so scanning allocates nothing per word.
+ */
+public class ProtoWordsScanner implements WordsScanner {
+
+  @Override
+  public void processWords(CharSequence fileText, Processor<WordOccurrence> processor) {
+    Lexer lexer = new ProtoLexer();
+    lexer.start(fileText);
+    WordOccurrence occurrence = new WordOccurrence(fileText, 0, 0, null);
+    IElementType tokenType;
+    while ((tokenType = lexer.getTokenType()) != null) {
+      WordOccurrence.Kind kind = getKind(tokenType);
+      if (kind != null && !processWords(fileText, lexer.getTokenStart(), lexer.getTokenEnd(),
+          kind, occurrence, processor)) {
+        return;
+      }
+      lexer.advance();
+    }
+  }
+
+  private static WordOccurrence.Kind getKind(IElementType tokenType) {
+    if (tokenType == ProtoTokenTypes.IDENTIFIER) {
+      return WordOccurrence.Kind.CODE;
+    }
+    if (tokenType == ProtoTokenTypes.END_OF_LINE_COMMENT
+        || tokenType == ProtoTokenTypes.C_STYLE_COMMENT) {
+      return WordOccurrence.Kind.COMMENTS;
+    }
+    if (tokenType == ProtoTokenTypes.STRING_LITERAL) {
+      return WordOccurrence.Kind.LITERALS;
+    }
+    return null;
+  }
 
-  public ProtoWordsScanner() {
-    super(new ProtoLexer(), TokenSet.create(ProtoTokenTypes.IDENTIFIER),
-          TokenSet.create(ProtoTokenTypes.C_STYLE_COMMENT,
-                          ProtoTokenTypes.END_OF_LINE_COMMENT),
-          TokenSet.create(ProtoTokenTypes.IDENTIFIER));
+  /**
+   * Reports the maximal runs of identifier characters in {@code [start, end)} of the text that
+   * start with an identifier start character.
+   */
+  static boolean processWords(CharSequence text, int start, int end, WordOccurrence.Kind kind,
+      WordOccurrence occurrence, Processor<WordOccurrence> processor) {
+    int index = start;
+    while (index < end) {
+      while (index < end && !Character.isJavaIdentifierPart(text.charAt(index))) {
+        index++;
+      }
+      int wordStart = index;
+      while (index < end && Character.isJavaIdentifierPart(text.charAt(index))) {
+        index++;
+      }
+      // Numbers, e.g. in comments, are not words.
+      if (index > wordStart && Character.isJavaIdentifierStart(text.charAt(wordStart))) {
+        occurrence.init(text, wordStart, index, kind);
+        if (!processor.process(occurrence)) {
+          return false;
+        }
+      }
+    }
+    return true;
   }
 }
@@ -18,10 +18,7 @@ package com.google.protoeditor.formatting;
 
 import com.google.protoeditor.lex.ProtoElementTypes;
 import com.google.protoeditor.lex.ProtoTokenTypes;
-import com.google.protoeditor.psi.ProtoEnumProperty;
-import com.google.protoeditor.psi.ProtoKeyword;
-import com.google.protoeditor.psi.ProtoProperty;
-import com.google.protoeditor.psi.ProtoSimpleProperty;
+import com.google.protoeditor.metrics.ProtoMetrics;
 
 import com.intellij.formatting.Alignment;
 import com.intellij.formatting.Block;
@@ -32,7 +29,6 @@ import com.intellij.formatting.Wrap;
 import com.intellij.formatting.WrapType;
 import com.intellij.lang.ASTNode;
 import com.intellij.openapi.util.TextRange;
-import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiErrorElement;
 import com.intellij.psi.PsiWhiteSpace;
 import com.intellij.psi.TokenType;
@@ -40,7 +36,6 @@ import com.intellij.psi.codeStyle.CodeStyleSettings;
 import com.intellij.psi.impl.source.tree.JavaElementType;
 import com.intellij.psi.tree.IElementType;
 import com.intellij.psi.tree.TokenSet;
-import com.intellij.psi.util.PsiTreeUtil;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -75,6 +70,10 @@ public class ProtoBlock implements Block {
       ProtoElementTypes.IMPORT_STATEMENT,
       ProtoElementTypes.SYNTAX_STATEMENT);
 
+  private static final TokenSet PROPERTY_TOKENS = createTokenSet(
+      ProtoElementTypes.SIMPLE_PROPERTY,
+      ProtoElementTypes.ENUM_PROPERTY);
+
   private static TokenSet createTokenSet(IElementType... types) {
     return TokenSet.create(types);
   }
@@ -86,7 +85,7 @@ public class ProtoBlock implements Block {
   private Alignment myAlignment;
   private Indent myIndent;
   private Wrap myWrap;
-  private Alignment childAlignment = Alignment.createAlignment();
+  private Alignment childAlignment;
   private static final TokenSet LEFT_TOKENS = createTokenSet(
       ProtoTokenTypes.LT, ProtoTokenTypes.LBRACKET,
       ProtoTokenTypes.LPAR);
@@ -95,13 +94,29 @@ public class ProtoBlock implements Block {
       ProtoTokenTypes.RPAR);
   private List<Block> subBlocks = null;
 
+  // Context of the block, computed once so that getSpacing does not need to look at the PSI.
+  private final IElementType myType;
+  private final boolean myStatementLike;
+  private final boolean myBodyOwner;
+  private final boolean myInFieldOptions;
+
   public ProtoBlock(final ASTNode node, final Alignment alignment,
                     final Indent indent, final Wrap wrap, final CodeStyleSettings settings) {
+    this(node, alignment, indent, wrap, settings, false);
+  }
+
+  private ProtoBlock(ASTNode node, Alignment alignment, Indent indent, Wrap wrap,
+                     CodeStyleSettings settings, boolean inFieldOptions) {
     myAlignment = alignment;
     myIndent = indent;
     myNode = node;
     myWrap = wrap;
     mySettings = settings;
+    myType = node.getElementType();
+    myStatementLike = STATEMENT_LIKE_TOKENS.contains(myType);
+    myBodyOwner = BODY_OWNER_TOKENS.contains(myType);
+    myInFieldOptions = inFieldOptions;
+    ProtoMetrics.BLOCKS_CREATED.increment();
   }
 
   public ASTNode getNode() {
@@ -118,20 +133,36 @@ public class ProtoBlock implements Block {
   @Override
   public List<Block> getSubBlocks() {
     if (subBlocks == null) {
+      long start = ProtoMetrics.BUILD_SUB_BLOCKS.start();
       subBlocks = buildSubBlocks();
+      ProtoMetrics.BUILD_SUB_BLOCKS.stop(start);
     }
     return subBlocks;
   }
 
+  /**
+   * Creates the blocks of the children of this node. The formatter only asks for the sub-blocks
+   * of blocks intersecting the range being formatted, so blocks are only built for that range.
+   */
   private List<Block> buildSubBlocks() {
+    if (isLeaf()) {
+      return Collections.emptyList();
+    }
     List<Block> blocks = new ArrayList<Block>();
-    Wrap wrap = Wrap.createWrap(WrapType.NORMAL, true);
+    Wrap wrap = null;
     Alignment alignment = getChildAlignment();
     Indent indentMe = getChildIndent();
+    // Children of a field are in its options from the opening bracket on; deeper blocks inherit
+    // the flag of their parent.
+    boolean isProperty = PROPERTY_TOKENS.contains(myType);
+    boolean inFieldOptions = !isProperty && myInFieldOptions;
     for (ASTNode child = myNode.getFirstChildNode();
          child != null; child = child.getTreeNext()) {
 
       IElementType childType = child.getElementType();
+      if (isProperty && childType == ProtoTokenTypes.LBRACKET) {
+        inFieldOptions = true;
+      }
       if (isWhitespace(childType)
           || child.getTextRange().getLength() == 0) {
         continue;
@@ -140,24 +171,65 @@ public class ProtoBlock implements Block {
         blocks.add(new ReadOnlyBlock(child));
         continue;
       }
+      if (wrap == null) {
+        wrap = Wrap.createWrap(WrapType.NORMAL, true);
+      }
       blocks.add(new ProtoBlock(child, alignment, indentMe, wrap,
-                                mySettings));
+                                mySettings, inFieldOptions));
     }
     return Collections.unmodifiableList(blocks);
   }
 
+  /**
+   * Returns the alignment shared by the children of a body, or {@code null} for other nodes.
+   * Alignments are only allocated for bodies, when their sub-blocks or child attributes are
+   * first requested.
+   */
+  @Nullable
   private Alignment getChildAlignment() {
-    Alignment alignment;
-    if (BODY_TOKENS.contains(myNode.getElementType())) {
-      alignment = childAlignment;
-    } else {
-      alignment = null;
+    if (!isBody(myNode.getElementType())) {
+      return null;
     }
-    return alignment;
+    if (childAlignment == null) {
+      childAlignment = Alignment.createAlignment();
+    }
+    return childAlignment;
+  }
+
+  /**
+   * Returns {@code true} if nodes of the given type are bodies, whose children are indented.
+   */
+  public static boolean isBody(IElementType type) {
+    return BODY_TOKENS.contains(type);
+  }
+
+  /**
+   * Returns the range of the blocks that determine the indent at the given node: the innermost
+   * body around it or, at the top level, the element containing it together with the element
+   * before it. Indents and alignments only depend on the enclosing body, so the formatter does
+   * not need to build blocks for the rest of the file.
+   */
+  @Nullable
+  public static TextRange getRangeAffectingIndent(@Nullable ASTNode node) {
+    for (ASTNode current = node; current != null; current = current.getTreeParent()) {
+      if (isBody(current.getElementType())) {
+        return current.getTextRange();
+      }
+      ASTNode parent = current.getTreeParent();
+      if (parent != null && parent.getTreeParent() == null) {
+        ASTNode previous = current.getTreePrev();
+        while (previous != null && isWhitespace(previous.getElementType())) {
+          previous = previous.getTreePrev();
+        }
+        int startOffset = (previous == null ? current : previous).getStartOffset();
+        return new TextRange(startOffset, current.getTextRange().getEndOffset());
+      }
+    }
+    return null;
   }
 
   private Indent getChildIndent() {
-    if (BODY_TOKENS.contains(myNode.getElementType())) {
+    if (isBody(myNode.getElementType())) {
       return Indent.getNormalIndent();
     } else {
       return Indent.getNoneIndent();
@@ -192,23 +264,20 @@ public class ProtoBlock implements Block {
     ProtoBlock protoBlock1 = (ProtoBlock) child1;
     ProtoBlock protoBlock2 = (ProtoBlock) child2;
 
-    ASTNode node1 = protoBlock1.getNode();
-    IElementType type1 = node1.getElementType();
-    ASTNode node2 = protoBlock2.getNode();
-    IElementType type2 = node2.getElementType();
+    IElementType type1 = protoBlock1.myType;
+    IElementType type2 = protoBlock2.myType;
 
     if (isWhitespace(type1) || isWhitespace(type2)
-        || node1.getTreeParent().getElementType()
-           == ProtoElementTypes.LANGUAGE_LITERAL) {
+        || myType == ProtoElementTypes.LANGUAGE_LITERAL) {
       return null;
     }
 
-    boolean firstIsStatementLike = STATEMENT_LIKE_TOKENS.contains(type1);
-    boolean secondIsStatementLike = STATEMENT_LIKE_TOKENS.contains(type2);
+    boolean firstIsStatementLike = protoBlock1.myStatementLike;
+    boolean secondIsStatementLike = protoBlock2.myStatementLike;
     boolean oneIsStatementLike = firstIsStatementLike
                                  || secondIsStatementLike;
-    boolean firstHasBody = BODY_OWNER_TOKENS.contains(type1);
-    boolean secondHasBody = BODY_OWNER_TOKENS.contains(type2);
+    boolean firstHasBody = protoBlock1.myBodyOwner;
+    boolean secondHasBody = protoBlock2.myBodyOwner;
     boolean keepLineBreaks = mySettings.KEEP_LINE_BREAKS;
     if ((firstHasBody && secondHasBody)
         || ((firstHasBody || secondHasBody) && oneIsStatementLike)) {
@@ -223,11 +292,11 @@ public class ProtoBlock implements Block {
                || isLeftThing(type1) || isRightThing(type2)
                || type2 == ProtoTokenTypes.LT
                || (type2 == ProtoTokenTypes.LPAR
-                   && !(node1.getPsi() instanceof ProtoKeyword))
+                   && type1 != ProtoElementTypes.KEYWORD)
                || (type1 == ProtoTokenTypes.COMMA
                    || type2 == ProtoTokenTypes.COMMA)
                || ((type1 == ProtoTokenTypes.EQ || type2 == ProtoTokenTypes.EQ)
-                   && isChildOfBracketyThing(node1))) {
+                   && protoBlock1.myInFieldOptions)) {
       return Spacing.createSpacing(0, 1, 0,
                                    keepLineBreaks, 1);
 
@@ -242,33 +311,6 @@ public class ProtoBlock implements Block {
     }
   }
 
-  private boolean isChildOfBracketyThing(ASTNode node1) {
-    PsiElement childPsi = node1.getPsi();
-    ProtoProperty prop = PsiTreeUtil.getParentOfType(childPsi,
-                                                     ProtoSimpleProperty.class);
-    if (prop == null) {
-      prop = PsiTreeUtil.getParentOfType(childPsi,
-                                         ProtoEnumProperty.class);
-      if (prop == null) {
-        return false;
-      }
-    }
-    ASTNode cnode = prop.getNode().getFirstChildNode();
-    for (; cnode != null; cnode = cnode.getTreeNext()) {
-      if (PsiTreeUtil.isAncestor(cnode.getPsi(), childPsi, false)) {
-        ASTNode dnode = cnode;
-        while (dnode != null) {
-          if (dnode.getElementType() == ProtoTokenTypes.LBRACKET) {
-            return true;
-          }
-          dnode = dnode.getTreePrev();
-        }
-        break;
-      }
-    }
-    return false;
-  }
-
   private boolean isComment(IElementType type1) {
     return type1 == ProtoTokenTypes.END_OF_LINE_COMMENT
            || type1 == ProtoTokenTypes.C_STYLE_COMMENT;
@@ -282,7 +324,7 @@ public class ProtoBlock implements Block {
     return RIGHT_TOKENS.contains(type);
   }
 
-  private boolean isWhitespace(IElementType type1) {
+  private static boolean isWhitespace(IElementType type1) {
     return type1 == ProtoTokenTypes.WHITE_SPACE
            || type1 == TokenType.WHITE_SPACE;
   }
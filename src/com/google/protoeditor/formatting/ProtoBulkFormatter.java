@@ -0,0 +1,207 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.formatting;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protoeditor.ProtoFileType;
+
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.codeStyle.CodeStyleManager;
+import com.intellij.util.LineSeparator;
+import com.intellij.util.Processor;
+import com.intellij.util.diff.Diff;
+import com.intellij.util.diff.FilesTooBigForDiffException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Formats or checks the formatting of many proto files without an editor.
+ * <p>
+ * Every file is parsed into a non-physical PSI file and reformatted by the {@link
+ * CodeStyleManager}, so the result is produced by {@link
+ * com.google.protoeditor.ProtoFormattingModelBuilder} with the code style settings of the given
+ * project, exactly as in the editor. Files are processed concurrently on all cores.
+ */
+public class ProtoBulkFormatter {
+
+  /**
+   * The outcome for one file whose formatting differs from the code style.
+   */
+  public static class ChangedFile {
+
+    private final File file;
+    private final int insertedLines;
+    private final int deletedLines;
+
+    ChangedFile(File file, int insertedLines, int deletedLines) {
+      this.file = file;
+      this.insertedLines = insertedLines;
+      this.deletedLines = deletedLines;
+    }
+
+    public File getFile() {
+      return file;
+    }
+
+    public int getInsertedLines() {
+      return insertedLines;
+    }
+
+    public int getDeletedLines() {
+      return deletedLines;
+    }
+
+    @Override
+    public String toString() {
+      return file.getPath() + " (+" + insertedLines + " -" + deletedLines + ")";
+    }
+  }
+
+  private final Project project;
+  private final boolean checkOnly;
+
+  /**
+   * Creates a formatter using the code style of the given project. In check mode, files are
+   * only reported and never written.
+   */
+  public ProtoBulkFormatter(Project project, boolean checkOnly) {
+    this.project = project;
+    this.checkOnly = checkOnly;
+  }
+
+  /**
+   * Returns the proto files in the given directory tree, or the file itself if it is a proto
+   * file.
+   */
+  public static List<File> collectProtoFiles(File root) {
+    List<File> files = new ArrayList<File>();
+    collectProtoFiles(root, files);
+    return files;
+  }
+
+  private static void collectProtoFiles(File file, List<File> files) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        collectProtoFiles(child, files);
+      }
+    } else if (FileUtil.extensionEquals(file.getName(),
+        ProtoFileType.instance().getDefaultExtension())) {
+      files.add(file);
+    }
+  }
+
+  /**
+   * Formats the given files and returns those whose formatting changed, sorted by path.
+   *
+   * @throws IOException if a file cannot be read or written
+   */
+  public List<ChangedFile> format(List<File> files) throws IOException {
+    final ConcurrentLinkedQueue<ChangedFile> changed = new ConcurrentLinkedQueue<ChangedFile>();
+    final ConcurrentLinkedQueue<IOException> errors = new ConcurrentLinkedQueue<IOException>();
+    JobLauncher.getInstance().invokeConcurrentlyUnderProgress(files,
+        new EmptyProgressIndicator(), false, new Processor<File>() {
+          @Override
+          public boolean process(File file) {
+            try {
+              ChangedFile result = formatFile(file);
+              if (result != null) {
+                changed.add(result);
+              }
+              return true;
+            } catch (IOException e) {
+              errors.add(e);
+              return false;
+            }
+          }
+        });
+    if (!errors.isEmpty()) {
+      throw errors.peek();
+    }
+    List<ChangedFile> result = new ArrayList<ChangedFile>(changed);
+    Collections.sort(result, new Comparator<ChangedFile>() {
+      @Override
+      public int compare(ChangedFile changedFile1, ChangedFile changedFile2) {
+        return changedFile1.getFile().getPath().compareTo(changedFile2.getFile().getPath());
+      }
+    });
+    return ImmutableList.copyOf(result);
+  }
+
+  private ChangedFile formatFile(File file) throws IOException {
+    String original = FileUtil.loadFile(file);
+    LineSeparator separator = StringUtil.detectSeparators(original);
+    String lineSeparator = separator == null ? "\n" : separator.getSeparatorString();
+    final String text = StringUtil.convertLineSeparators(original);
+    final String fileName = file.getName();
+    String formatted = ApplicationManager.getApplication().runReadAction(
+        new Computable<String>() {
+          @Override
+          public String compute() {
+            return reformat(fileName, text);
+          }
+        });
+    if (formatted.equals(text)) {
+      return null;
+    }
+    if (!checkOnly) {
+      FileUtil.writeToFile(file, StringUtil.convertLineSeparators(formatted, lineSeparator));
+    }
+    return createChangedFile(file, text, formatted);
+  }
+
+  /**
+   * Returns the given proto text reformatted with the code style of the project.
+   */
+  String reformat(String fileName, String text) {
+    PsiFile psiFile = PsiFileFactory.getInstance(project)
+        .createFileFromText(fileName, ProtoFileType.instance(), text);
+    return CodeStyleManager.getInstance(project).reformat(psiFile).getText();
+  }
+
+  private static ChangedFile createChangedFile(File file, String before, String after) {
+    String[] beforeLines = StringUtil.splitByLinesKeepSeparators(before);
+    String[] afterLines = StringUtil.splitByLinesKeepSeparators(after);
+    int inserted = 0;
+    int deleted = 0;
+    try {
+      for (Diff.Change change = Diff.buildChanges(beforeLines, afterLines); change != null;
+           change = change.link) {
+        inserted += change.inserted;
+        deleted += change.deleted;
+      }
+    } catch (FilesTooBigForDiffException e) {
+      inserted = afterLines.length;
+      deleted = beforeLines.length;
+    }
+    return new ChangedFile(file, inserted, deleted);
+  }
+}
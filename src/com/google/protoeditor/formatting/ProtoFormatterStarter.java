@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.formatting;
+
+import com.intellij.ide.impl.ProjectUtil;
+import com.intellij.openapi.application.ApplicationStarterEx;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import com.intellij.openapi.project.ex.ProjectManagerEx;
+import com.intellij.openapi.util.InvalidDataException;
+
+import org.jdom.JDOMException;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line entry point of the {@link ProtoBulkFormatter}, for enforcing the proto code style
+ * in continuous integration:
+ * <pre>
+ *   idea.sh protoformat [--check] [--project &lt;project&gt;] &lt;file or directory&gt;...
+ * </pre>
+ * Without {@code --check}, files are reformatted in place. With {@code --project}, the given
+ * project directory or {@code .ipr} file is opened headless and its code style settings are
+ * used; otherwise those of the default project. The changed files are printed with the number
+ * of inserted and deleted lines. In check mode, the exit code is 1 if any file is not
+ * formatted; it is 2 if a file cannot be read or written, or the project cannot be opened.
+ */
+public class ProtoFormatterStarter extends ApplicationStarterEx {
+
+  private static final String CHECK_OPTION = "--check";
+
+  private static final String PROJECT_OPTION = "--project";
+
+  @Override
+  public String getCommandName() {
+    return "protoformat";
+  }
+
+  @Override
+  public boolean isHeadless() {
+    return true;
+  }
+
+  @Override
+  public void premain(String[] args) {
+  }
+
+  @Override
+  public void main(String[] args) {
+    // The first argument is the command name.
+    if (args.length <= 1) {
+      printUsage();
+      System.exit(2);
+    }
+    boolean checkOnly = false;
+    String projectPath = null;
+    List<File> files = new ArrayList<File>();
+    for (int i = 1; i < args.length; i++) {
+      if (CHECK_OPTION.equals(args[i])) {
+        checkOnly = true;
+      } else if (PROJECT_OPTION.equals(args[i])) {
+        if (++i == args.length) {
+          printUsage();
+          System.exit(2);
+        }
+        projectPath = args[i];
+      } else {
+        files.addAll(ProtoBulkFormatter.collectProtoFiles(new File(args[i])));
+      }
+    }
+    System.exit(run(files, checkOnly, projectPath));
+  }
+
+  private void printUsage() {
+    System.err.println("Usage: " + getCommandName() + " [" + CHECK_OPTION + "] ["
+        + PROJECT_OPTION + " <project>] <file or directory>...");
+  }
+
+  private static int run(List<File> files, boolean checkOnly, @Nullable String projectPath) {
+    Project project;
+    if (projectPath == null) {
+      project = ProjectManager.getInstance().getDefaultProject();
+    } else {
+      try {
+        project = ProjectManagerEx.getInstanceEx().loadAndOpenProject(projectPath);
+      } catch (IOException e) {
+        return cannotOpen(projectPath, e);
+      } catch (JDOMException e) {
+        return cannotOpen(projectPath, e);
+      } catch (InvalidDataException e) {
+        return cannotOpen(projectPath, e);
+      }
+      if (project == null) {
+        return cannotOpen(projectPath, null);
+      }
+    }
+    try {
+      return format(new ProtoBulkFormatter(project, checkOnly), files, checkOnly);
+    } finally {
+      if (projectPath != null) {
+        ProjectUtil.closeAndDispose(project);
+      }
+    }
+  }
+
+  private static int cannotOpen(String projectPath, @Nullable Exception e) {
+    System.err.println("Cannot open project " + projectPath
+        + (e == null ? "" : ": " + e.getMessage()));
+    return 2;
+  }
+
+  private static int format(ProtoBulkFormatter formatter, List<File> files, boolean checkOnly) {
+    List<ProtoBulkFormatter.ChangedFile> changedFiles;
+    try {
+      changedFiles = formatter.format(files);
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      return 2;
+    }
+    int inserted = 0;
+    int deleted = 0;
+    for (ProtoBulkFormatter.ChangedFile changedFile : changedFiles) {
+      System.out.println(changedFile);
+      inserted += changedFile.getInsertedLines();
+      deleted += changedFile.getDeletedLines();
+    }
+    System.out.println((checkOnly ? "Not formatted: " : "Reformatted: ") + changedFiles.size()
+        + " of " + files.size() + " proto files (+" + inserted + " -" + deleted + " lines)");
+    return checkOnly && !changedFiles.isEmpty() ? 1 : 0;
+  }
+}
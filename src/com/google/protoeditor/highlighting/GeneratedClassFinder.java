@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.highlighting;
+
+import com.google.common.collect.Maps;
+import com.google.protoeditor.psi.ProtoElementWithName;
+import com.google.protoeditor.psi.ProtoFile;
+import com.google.protoeditor.psi.ProtoJavaNames;
+
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.search.GlobalSearchScope;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+/**
+ * Finds the Java classes generated for the definitions of one proto file.
+ * <p>
+ * All classes generated for a file live in the same Java package, and most of them are nested
+ * in the outer class of the file. The finder therefore looks up each top-level class only once
+ * and walks nested classes in memory, instead of querying the class index per definition.
+ */
+class GeneratedClassFinder {
+
+  private final JavaPsiFacade facade;
+  private final GlobalSearchScope scope;
+  private final String javaPackage;
+  private final Map<String, PsiClass> topLevelClasses = Maps.newHashMap();
+
+  GeneratedClassFinder(ProtoFile file) {
+    facade = JavaPsiFacade.getInstance(file.getProject());
+    scope = GlobalSearchScope.allScope(file.getProject());
+    javaPackage = ProtoJavaNames.getJavaPackage(file);
+  }
+
+  /**
+   * Returns the Java class generated for the given definition of the file, or {@code null} if
+   * the class does not exist.
+   */
+  @Nullable
+  PsiClass findClass(ProtoElementWithName definition) {
+    String className = ProtoJavaNames.getJavaClassName(definition);
+    if (className == null) {
+      return null;
+    }
+    String relativeName = javaPackage.isEmpty()
+        ? className : StringUtil.trimStart(className, javaPackage + ".");
+    String[] segments = relativeName.split("\\.");
+    PsiClass cls = findTopLevelClass(segments[0]);
+    for (int i = 1; i < segments.length && cls != null; i++) {
+      cls = cls.findInnerClassByName(segments[i], false);
+    }
+    return cls;
+  }
+
+  @Nullable
+  private PsiClass findTopLevelClass(String name) {
+    if (topLevelClasses.containsKey(name)) {
+      return topLevelClasses.get(name);
+    }
+    PsiClass cls = facade.findClass(StringUtil.getQualifiedName(javaPackage, name), scope);
+    topLevelClasses.put(name, cls);
+    return cls;
+  }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.highlighting;
+
+import com.google.common.collect.Lists;
+import com.google.protoeditor.lex.ProtoTokenTypes;
+import com.google.protoeditor.metrics.ProtoMetrics;
+import com.google.protoeditor.psi.ProtoElementWithName;
+import com.google.protoeditor.psi.ProtoFile;
+import com.google.protoeditor.psi.ProtoJavaNames;
+import com.google.protoeditor.psi.ProtoNameElement;
+
+import com.intellij.codeHighlighting.Pass;
+import com.intellij.codeInsight.daemon.GutterIconNavigationHandler;
+import com.intellij.codeInsight.daemon.LineMarkerInfo;
+import com.intellij.codeInsight.daemon.LineMarkerProvider;
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.editor.markup.GutterIconRenderer;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.Function;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.event.MouseEvent;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Shows gutter markers on messages, groups, enums and services that navigate to the Java
+ * classes generated for them.
+ * <p>
+ * Finding a class needs the Java indexes, so nothing is done per element in
+ * {@link #getLineMarkerInfo}. Instead, {@link #collectSlowLineMarkers} looks up the classes of
+ * all definitions passed in at once with a single {@link GeneratedClassFinder}.
+ */
+public class ProtoLineMarkerProvider implements LineMarkerProvider {
+
+  private static final Function<PsiElement, String> TOOLTIP_PROVIDER =
+      new Function<PsiElement, String>() {
+        @Override
+        public String fun(PsiElement element) {
+          ProtoElementWithName definition = getDefinition(element);
+          String className = definition == null
+              ? null : ProtoJavaNames.getJavaClassName(definition);
+          return className == null ? null : "Generated class " + className;
+        }
+      };
+
+  private static final GutterIconNavigationHandler<PsiElement> NAVIGATION_HANDLER =
+      new GutterIconNavigationHandler<PsiElement>() {
+        @Override
+        public void navigate(MouseEvent e, PsiElement element) {
+          ProtoElementWithName definition = getDefinition(element);
+          PsiFile file = element.getContainingFile();
+          if (definition == null || !(file instanceof ProtoFile)) {
+            return;
+          }
+          PsiClass cls = new GeneratedClassFinder((ProtoFile) file).findClass(definition);
+          if (cls != null) {
+            cls.navigate(true);
+          }
+        }
+      };
+
+  @Override
+  public LineMarkerInfo getLineMarkerInfo(@NotNull PsiElement element) {
+    return null;
+  }
+
+  @Override
+  public void collectSlowLineMarkers(@NotNull List<PsiElement> elements,
+      @NotNull Collection<LineMarkerInfo> result) {
+    List<PsiElement> identifiers = Lists.newArrayList();
+    for (PsiElement element : elements) {
+      if (getDefinition(element) != null) {
+        identifiers.add(element);
+      }
+    }
+    if (identifiers.isEmpty()) {
+      return;
+    }
+    long start = ProtoMetrics.LINE_MARKERS.start();
+    try {
+      GeneratedClassFinder finder =
+          new GeneratedClassFinder((ProtoFile) identifiers.get(0).getContainingFile());
+      for (PsiElement identifier : identifiers) {
+        ProgressManager.checkCanceled();
+        if (finder.findClass(getDefinition(identifier)) != null) {
+          result.add(new LineMarkerInfo<PsiElement>(identifier, identifier.getTextRange(),
+              AllIcons.Gutter.ImplementedMethod, Pass.UPDATE_OVERRIDEN_MARKERS, TOOLTIP_PROVIDER,
+              NAVIGATION_HANDLER, GutterIconRenderer.Alignment.RIGHT));
+        }
+      }
+    } finally {
+      ProtoMetrics.LINE_MARKERS.stop(start);
+    }
+  }
+
+  /**
+   * Returns the definition named by the given identifier if protoc generates a class for it.
+   * Markers are attached to the identifier leaves, as the platform expects.
+   */
+  @Nullable
+  private static ProtoElementWithName getDefinition(PsiElement element) {
+    if (element.getNode() == null
+        || element.getNode().getElementType() != ProtoTokenTypes.IDENTIFIER
+        || !(element.getParent() instanceof ProtoNameElement)
+        || !(element.getContainingFile() instanceof ProtoFile)) {
+      return null;
+    }
+    PsiElement definition = element.getParent().getParent();
+    return ProtoJavaNames.hasJavaClass(definition) ? (ProtoElementWithName) definition : null;
+  }
+}
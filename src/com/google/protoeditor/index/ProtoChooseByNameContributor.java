@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.index;
+
+import com.intellij.navigation.ChooseByNameContributorEx;
+import com.intellij.navigation.NavigationItem;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.CommonProcessors;
+import com.intellij.util.Processor;
+import com.intellij.util.indexing.FindSymbolParameters;
+import com.intellij.util.indexing.IdFilter;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Base class of the "Go to" contributors for proto symbols of one {@link
+ * ProtoSymbolIndex.ProtoSymbolType}.
+ * <p>
+ * Names and elements are streamed from the index with the scope and file filter of the
+ * platform, so opening the popup neither materializes all index keys nor repeats names
+ * defined in several files.
+ */
+public abstract class ProtoChooseByNameContributor implements ChooseByNameContributorEx {
+
+  private final ProtoSymbolIndex.ProtoSymbolType symbolType;
+
+  protected ProtoChooseByNameContributor(ProtoSymbolIndex.ProtoSymbolType symbolType) {
+    this.symbolType = symbolType;
+  }
+
+  @Override
+  public void processNames(@NotNull Processor<String> processor,
+      @NotNull GlobalSearchScope scope, @Nullable IdFilter filter) {
+    new ProtoSymbolIndexLookup().processNames(symbolType, processor, scope, filter);
+  }
+
+  @Override
+  public void processElementsWithName(@NotNull String name,
+      @NotNull Processor<NavigationItem> processor, @NotNull FindSymbolParameters parameters) {
+    new ProtoSymbolIndexLookup().processElementsWithName(name, symbolType, processor,
+        parameters.getSearchScope(), parameters.getIdFilter());
+  }
+
+  @Override
+  public String[] getNames(Project project, boolean includeNonProjectItems) {
+    CommonProcessors.CollectUniquesProcessor<String> names =
+        new CommonProcessors.CollectUniquesProcessor<String>();
+    processNames(names, getScope(project, includeNonProjectItems), null);
+    return names.toArray(new String[] {});
+  }
+
+  @Override
+  public NavigationItem[] getItemsByName(String name, String pattern, Project project,
+      boolean includeNonProjectItems) {
+    return new ProtoSymbolIndexLookup().getProtoItemsByName(name, project, includeNonProjectItems,
+        symbolType);
+  }
+
+  private static GlobalSearchScope getScope(Project project, boolean includeNonProjectItems) {
+    return includeNonProjectItems ? GlobalSearchScope.allScope(project)
+        : GlobalSearchScope.projectScope(project);
+  }
+}
@@ -16,25 +16,12 @@
 
 package com.google.protoeditor.index;
 
-import com.intellij.navigation.ChooseByNameContributor;
-import com.intellij.navigation.NavigationItem;
-import com.intellij.openapi.project.Project;
-
 /**
  * Provides "Go to symbol" functionality for proto files.
  */
-public class ProtoChooseSymbolByNameContributor implements ChooseByNameContributor {
-
-  @Override
-  public String[] getNames(Project project, boolean includeNonProjectItems) {
-    return new ProtoSymbolIndexLookup().getProtoNames(
-        ProtoSymbolIndex.ProtoSymbolType.NAMED_ELEMENT, project);
-  }
+public class ProtoChooseSymbolByNameContributor extends ProtoChooseByNameContributor {
 
-  @Override
-  public NavigationItem[] getItemsByName(String name, String pattern, Project project,
-      boolean includeNonProjectItems) {
-    return new ProtoSymbolIndexLookup().getProtoItemsByName(name, project, includeNonProjectItems,
-        ProtoSymbolIndex.ProtoSymbolType.NAMED_ELEMENT);
+  public ProtoChooseSymbolByNameContributor() {
+    super(ProtoSymbolIndex.ProtoSymbolType.NAMED_ELEMENT);
   }
 }
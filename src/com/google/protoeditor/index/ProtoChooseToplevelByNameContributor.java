@@ -16,25 +16,12 @@
 
 package com.google.protoeditor.index;
 
-import com.intellij.navigation.ChooseByNameContributor;
-import com.intellij.navigation.NavigationItem;
-import com.intellij.openapi.project.Project;
-
 /**
  * Provides "Go to class" functionality for proto files.
  */
-public class ProtoChooseToplevelByNameContributor implements ChooseByNameContributor {
-
-  @Override
-  public String[] getNames(Project project, boolean includeNonProjectItems) {
-    return new ProtoSymbolIndexLookup().getProtoNames(
-        ProtoSymbolIndex.ProtoSymbolType.TOP_LEVEL_DEFINTION, project);
-  }
+public class ProtoChooseToplevelByNameContributor extends ProtoChooseByNameContributor {
 
-  @Override
-  public NavigationItem[] getItemsByName(String name, String pattern, Project project,
-      boolean includeNonProjectItems) {
-    return new ProtoSymbolIndexLookup().getProtoItemsByName(name, project, includeNonProjectItems,
-        ProtoSymbolIndex.ProtoSymbolType.TOP_LEVEL_DEFINTION);
+  public ProtoChooseToplevelByNameContributor() {
+    super(ProtoSymbolIndex.ProtoSymbolType.TOP_LEVEL_DEFINTION);
   }
 }
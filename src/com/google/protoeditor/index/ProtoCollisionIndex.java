@@ -0,0 +1,300 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.index;
+
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+import com.google.protoeditor.ProtoFileType;
+import com.google.protoeditor.metrics.ProtoMetrics;
+import com.google.protoeditor.psi.AbstractProtoDefinition;
+import com.google.protoeditor.psi.ProtoAbstractIntegerLiteral;
+import com.google.protoeditor.psi.ProtoDefinitionBody;
+import com.google.protoeditor.psi.ProtoEnumDefinition;
+import com.google.protoeditor.psi.ProtoExtendDefinition;
+import com.google.protoeditor.psi.ProtoFile;
+import com.google.protoeditor.psi.ProtoMessageDefinition;
+import com.google.protoeditor.psi.ProtoNameElement;
+import com.google.protoeditor.psi.ProtoProperty;
+import com.google.protoeditor.psi.ProtoPropertyId;
+import com.google.protoeditor.psi.ProtoPsiTools;
+import com.google.protoeditor.psi.ProtoServiceDefinition;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiRecursiveElementVisitor;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.indexing.ScalarIndexExtension;
+import com.intellij.util.io.KeyDescriptor;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Indexes the symbols of proto files that must be unique across files: the fully qualified
+ * names of messages, enums and services, and the field numbers used by {@code extend} blocks
+ * for each extended message.
+ * <p>
+ * Looking up a key returns the files that define it, so a file can be checked for collisions
+ * with the rest of the project by looking up its own keys only.
+ */
+public class ProtoCollisionIndex extends ScalarIndexExtension<ProtoCollisionIndex.CollisionKey> {
+
+  public enum CollisionType {
+    DEFINITION,
+    EXTENSION_NUMBER
+  }
+
+  /**
+   * A symbol that must be unique across files. Definitions are identified by their fully
+   * qualified name, extension fields by the name of the extended message and their number.
+   */
+  public static class CollisionKey {
+
+    /**
+     * Deserializes CollisionKey from the given DataInput stream.
+     *
+     * @param in DataInput to read from
+     * @return Deserialized CollisionKey
+     * @throws IOException
+     */
+    public static CollisionKey readFrom(DataInput in) throws IOException {
+      CollisionType type = CollisionType.valueOf(in.readUTF());
+      String name = in.readUTF();
+      long number = in.readLong();
+      return new CollisionKey(type, name, number);
+    }
+
+    public static CollisionKey definition(String qualifiedName) {
+      return new CollisionKey(CollisionType.DEFINITION, qualifiedName, 0);
+    }
+
+    public static CollisionKey extensionNumber(String extendeeName, long number) {
+      return new CollisionKey(CollisionType.EXTENSION_NUMBER, extendeeName, number);
+    }
+
+    private final CollisionType type;
+    private final String name;
+    private final long number;
+
+    private CollisionKey(CollisionType type, String name, long number) {
+      this.type = type;
+      this.name = name;
+      this.number = number;
+    }
+
+    public CollisionType getType() {
+      return type;
+    }
+
+    /**
+     * Returns the qualified name of the definition, or of the extended message.
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Returns the extension field number, or {@code 0} for definitions.
+     */
+    public long getNumber() {
+      return number;
+    }
+
+    /**
+     * Serializes CollisionKey to the given DataOutput stream.
+     *
+     * @param out DataOutput, to write to
+     * @throws IOException
+     */
+    public void serialize(DataOutput out) throws IOException {
+      out.writeUTF(type.name());
+      out.writeUTF(name);
+      out.writeLong(number);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      CollisionKey that = (CollisionKey) o;
+      return type == that.type && number == that.number && name.equals(that.name);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = type.hashCode();
+      result = 31 * result + name.hashCode();
+      result = 31 * result + (int) (number ^ (number >>> 32));
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return "CollisionKey{" +
+          "type=" + type +
+          ", name='" + name + '\'' +
+          ", number=" + number +
+          '}';
+    }
+  }
+
+  /**
+   * Returns the collision keys of the given file, each with the elements defining it: the name
+   * elements of definitions and the ID literals of extension fields.
+   * Extended messages are identified by {@link ProtoExtendDefinition#getQualifiedExtendeeName()},
+   * since the index cannot resolve names against other files.
+   */
+  public static ListMultimap<CollisionKey, PsiElement> getCollisionKeys(ProtoFile protoFile) {
+    final ListMultimap<CollisionKey, PsiElement> keys = LinkedListMultimap.create();
+    protoFile.accept(new PsiRecursiveElementVisitor() {
+      @Override
+      public void visitElement(PsiElement element) {
+        super.visitElement(element);
+        if (element instanceof ProtoMessageDefinition || element instanceof ProtoEnumDefinition) {
+          addDefinition(keys, ((AbstractProtoDefinition) element).getNameElement(),
+              ProtoPsiTools.getQualifiedName((AbstractProtoDefinition) element));
+        } else if (element instanceof ProtoServiceDefinition) {
+          addDefinition(keys, ((ProtoServiceDefinition) element).getNameElement(),
+              ProtoPsiTools.getQualifiedName((ProtoServiceDefinition) element));
+        } else if (element instanceof ProtoExtendDefinition) {
+          addExtensionNumbers(keys, (ProtoExtendDefinition) element);
+        }
+      }
+    });
+    return keys;
+  }
+
+  private static void addDefinition(ListMultimap<CollisionKey, PsiElement> keys,
+      ProtoNameElement nameElement, String qualifiedName) {
+    if (nameElement != null && qualifiedName != null) {
+      keys.put(CollisionKey.definition(qualifiedName), nameElement);
+    }
+  }
+
+  private static void addExtensionNumbers(ListMultimap<CollisionKey, PsiElement> keys,
+      ProtoExtendDefinition extendDefinition) {
+    String extendeeName = extendDefinition.getQualifiedExtendeeName();
+    ProtoDefinitionBody body = extendDefinition.getDefinitionBody();
+    if (extendeeName == null || body == null) {
+      return;
+    }
+    for (ProtoProperty property : body.getProperties()) {
+      ProtoPropertyId idElement = property.getProtoIdElement();
+      ProtoAbstractIntegerLiteral idLiteral = idElement == null ? null : idElement.getIdLiteral();
+      if (idLiteral != null && idLiteral.hasValidValue()) {
+        keys.put(CollisionKey.extensionNumber(extendeeName, idLiteral.getIntValue()), idLiteral);
+      }
+    }
+  }
+
+  /**
+   * DataIndexer for proto files.
+   */
+  private static class CollisionKeyIndexer implements
+      DataIndexer<CollisionKey, Void, FileContent> {
+
+    @NotNull
+    @Override
+    public Map<CollisionKey, Void> map(FileContent inputData) {
+      PsiFile psiFile = PsiManager.getInstance(inputData.getProject())
+          .findFile(inputData.getFile());
+      if (!(psiFile instanceof ProtoFile)) {
+        throw new IllegalStateException(
+            "Proto Indexer should never be called for non-proto files.\n");
+      }
+      long start = ProtoMetrics.COLLISION_INDEX_MAP.start();
+      Map<CollisionKey, Void> keys = Maps.newHashMap();
+      for (CollisionKey key : getCollisionKeys((ProtoFile) psiFile).keySet()) {
+        keys.put(key, null);
+      }
+      ProtoMetrics.COLLISION_INDEX_MAP.stop(start);
+      return keys;
+    }
+  }
+
+  public static final ID<CollisionKey, Void> NAME = ID.create("ProtoCollisionIndex");
+
+  @Override
+  public ID<CollisionKey, Void> getName() {
+    return NAME;
+  }
+
+  @Override
+  public DataIndexer<CollisionKey, Void, FileContent> getIndexer() {
+    return new CollisionKeyIndexer();
+  }
+
+  @Override
+  public KeyDescriptor<CollisionKey> getKeyDescriptor() {
+    return new KeyDescriptor<CollisionKey>() {
+      @Override
+      public void save(DataOutput out, CollisionKey value) throws IOException {
+        value.serialize(out);
+      }
+
+      @Override
+      public CollisionKey read(DataInput in) throws IOException {
+        return CollisionKey.readFrom(in);
+      }
+
+      @Override
+      public int getHashCode(CollisionKey value) {
+        return value.hashCode();
+      }
+
+      @Override
+      public boolean isEqual(CollisionKey val1, CollisionKey val2) {
+        return val1.equals(val2);
+      }
+    };
+  }
+
+  @Override
+  public FileBasedIndex.InputFilter getInputFilter() {
+    return new FileBasedIndex.InputFilter() {
+      @Override
+      public boolean acceptInput(VirtualFile file) {
+        return file.getFileType() instanceof ProtoFileType;
+      }
+    };
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  @Override
+  public int getVersion() {
+    return 1;
+  }
+}
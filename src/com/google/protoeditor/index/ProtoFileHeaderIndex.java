@@ -0,0 +1,213 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.index;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.protoeditor.ProtoFileType;
+import com.google.protoeditor.psi.ProtoFile;
+import com.google.protoeditor.psi.ProtoImportStatement;
+import com.google.protoeditor.psi.ProtoPsiTools;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indexes the header of every proto file, i.e. its package and the paths it imports, under the
+ * name of the file, so that the header of a given file can be read without parsing it.
+ * <p>
+ * Only files with the same name share a key, so reading the header of a file is a single key
+ * lookup restricted to that file.
+ */
+public class ProtoFileHeaderIndex
+    extends FileBasedIndexExtension<String, ProtoFileHeaderIndex.Header> {
+
+  /**
+   * The indexed header of a proto file.
+   */
+  public static class Header {
+
+    @Nullable private final String packageName;
+    private final List<String> importedPaths;
+
+    public Header(@Nullable String packageName, List<String> importedPaths) {
+      this.packageName = packageName;
+      this.importedPaths = ImmutableList.copyOf(importedPaths);
+    }
+
+    /**
+     * Returns the package of the file, or {@code null} if it declares none.
+     */
+    @Nullable
+    public String getPackageName() {
+      return packageName;
+    }
+
+    /**
+     * Returns the paths imported by the file, in the order of the import statements.
+     */
+    public List<String> getImportedPaths() {
+      return importedPaths;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Header && Objects.equal(packageName, ((Header) o).packageName)
+          && importedPaths.equals(((Header) o).importedPaths);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(packageName, importedPaths);
+    }
+  }
+
+  /**
+   * Returns the indexed header of the given file, or {@code null} if the file is not indexed.
+   */
+  @Nullable
+  public static Header getHeader(Project project, VirtualFile file) {
+    List<Header> headers = FileBasedIndex.getInstance().getValues(NAME, file.getName(),
+        GlobalSearchScope.fileScope(project, file));
+    return headers.isEmpty() ? null : headers.get(0);
+  }
+
+  /**
+   * Returns the indexed package of the given file, or {@code null} if it declares none or is
+   * not indexed.
+   */
+  @Nullable
+  public static String getPackageName(Project project, VirtualFile file) {
+    Header header = getHeader(project, file);
+    return header == null ? null : header.getPackageName();
+  }
+
+  /**
+   * DataIndexer for proto files.
+   */
+  private static class HeaderIndexer implements DataIndexer<String, Header, FileContent> {
+
+    @NotNull
+    @Override
+    public Map<String, Header> map(FileContent inputData) {
+      PsiFile psiFile = PsiManager.getInstance(inputData.getProject())
+          .findFile(inputData.getFile());
+      if (!(psiFile instanceof ProtoFile)) {
+        throw new IllegalStateException(
+            "Proto Indexer should never be called for non-proto files.\n");
+      }
+      ProtoFile protoFile = (ProtoFile) psiFile;
+      ImmutableList.Builder<String> importedPaths = ImmutableList.builder();
+      for (ProtoImportStatement statement : protoFile.getImportStatements()) {
+        String path = statement.getImportedPath();
+        if (path != null) {
+          importedPaths.add(path);
+        }
+      }
+      return ImmutableMap.of(inputData.getFileName(),
+          new Header(ProtoPsiTools.getContainingPackage(protoFile), importedPaths.build()));
+    }
+  }
+
+  public static final ID<String, Header> NAME = ID.create("ProtoFileHeaderIndex");
+
+  @Override
+  public ID<String, Header> getName() {
+    return NAME;
+  }
+
+  @Override
+  public DataIndexer<String, Header, FileContent> getIndexer() {
+    return new HeaderIndexer();
+  }
+
+  @Override
+  public KeyDescriptor<String> getKeyDescriptor() {
+    return new EnumeratorStringDescriptor();
+  }
+
+  @Override
+  public DataExternalizer<Header> getValueExternalizer() {
+    return new DataExternalizer<Header>() {
+      @Override
+      public void save(DataOutput out, Header value) throws IOException {
+        String packageName = value.getPackageName();
+        out.writeBoolean(packageName != null);
+        if (packageName != null) {
+          out.writeUTF(packageName);
+        }
+        out.writeInt(value.getImportedPaths().size());
+        for (String path : value.getImportedPaths()) {
+          out.writeUTF(path);
+        }
+      }
+
+      @Override
+      public Header read(DataInput in) throws IOException {
+        String packageName = in.readBoolean() ? in.readUTF() : null;
+        int size = in.readInt();
+        List<String> importedPaths = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; i++) {
+          importedPaths.add(in.readUTF());
+        }
+        return new Header(packageName, importedPaths);
+      }
+    };
+  }
+
+  @Override
+  public FileBasedIndex.InputFilter getInputFilter() {
+    return new FileBasedIndex.InputFilter() {
+      @Override
+      public boolean acceptInput(VirtualFile file) {
+        return file.getFileType() instanceof ProtoFileType;
+      }
+    };
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  @Override
+  public int getVersion() {
+    return 2;
+  }
+}
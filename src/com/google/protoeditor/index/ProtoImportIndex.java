@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.index;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.protoeditor.ProtoFileType;
+import com.google.protoeditor.psi.ProtoFile;
+import com.google.protoeditor.psi.ProtoImportStatement;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.indexing.ScalarIndexExtension;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Indexes the paths imported by proto files, so that the files importing a given file can be
+ * found without parsing the project.
+ * <p>
+ * Import paths are relative to an import root that the plugin does not know, so the importers
+ * of a file are the files importing any suffix of its path that starts at a directory boundary.
+ */
+public class ProtoImportIndex extends ScalarIndexExtension<String> {
+
+  /**
+   * Returns the files in the given scope that import the given file directly.
+   */
+  public static Set<VirtualFile> getImportingFiles(VirtualFile file, GlobalSearchScope scope) {
+    Set<VirtualFile> importers = new HashSet<VirtualFile>();
+    FileBasedIndex index = FileBasedIndex.getInstance();
+    for (String importedPath : getImportPaths(file.getPath())) {
+      importers.addAll(index.getContainingFiles(NAME, importedPath, scope));
+    }
+    importers.remove(file);
+    return importers;
+  }
+
+  /**
+   * Returns the import paths that may refer to the file with the given path, shortest first:
+   * the suffixes of the path that start after a {@code '/'}.
+   */
+  static List<String> getImportPaths(String path) {
+    List<String> paths = Lists.newArrayList();
+    for (int i = path.lastIndexOf('/'); ; i = path.lastIndexOf('/', i - 1)) {
+      String suffix = path.substring(i + 1);
+      if (!suffix.isEmpty()) {
+        paths.add(suffix);
+      }
+      if (i <= 0) {
+        return paths;
+      }
+    }
+  }
+
+  /**
+   * DataIndexer for proto files.
+   */
+  private static class ImportIndexer implements DataIndexer<String, Void, FileContent> {
+
+    @NotNull
+    @Override
+    public Map<String, Void> map(FileContent inputData) {
+      PsiFile psiFile = PsiManager.getInstance(inputData.getProject())
+          .findFile(inputData.getFile());
+      if (!(psiFile instanceof ProtoFile)) {
+        throw new IllegalStateException(
+            "Proto Indexer should never be called for non-proto files.\n");
+      }
+      Map<String, Void> paths = Maps.newHashMap();
+      for (ProtoImportStatement statement : ((ProtoFile) psiFile).getImportStatements()) {
+        String path = statement.getImportedPath();
+        if (path != null) {
+          paths.put(path, null);
+        }
+      }
+      return paths;
+    }
+  }
+
+  public static final ID<String, Void> NAME = ID.create("ProtoImportIndex");
+
+  @Override
+  public ID<String, Void> getName() {
+    return NAME;
+  }
+
+  @Override
+  public DataIndexer<String, Void, FileContent> getIndexer() {
+    return new ImportIndexer();
+  }
+
+  @Override
+  public KeyDescriptor<String> getKeyDescriptor() {
+    return new EnumeratorStringDescriptor();
+  }
+
+  @Override
+  public FileBasedIndex.InputFilter getInputFilter() {
+    return new FileBasedIndex.InputFilter() {
+      @Override
+      public boolean acceptInput(VirtualFile file) {
+        return file.getFileType() instanceof ProtoFileType;
+      }
+    };
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  @Override
+  public int getVersion() {
+    return 1;
+  }
+}
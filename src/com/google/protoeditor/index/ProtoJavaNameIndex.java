@@ -0,0 +1,260 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.index;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.protoeditor.ProtoFileType;
+import com.google.protoeditor.psi.ProtoElementWithName;
+import com.google.protoeditor.psi.ProtoFile;
+import com.google.protoeditor.psi.ProtoJavaNames;
+import com.google.protoeditor.psi.ProtoPsiTools;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiRecursiveElementVisitor;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the Java classes that protoc generates to the messages, groups, enums and services of
+ * proto files they are generated for.
+ * <p>
+ * Every definition is indexed under the fully qualified name of its generated class, so
+ * navigating from a class to its definition is a single key lookup. The other direction needs
+ * no index: the name of the generated class is computed from the definition itself.
+ */
+public class ProtoJavaNameIndex
+    extends FileBasedIndexExtension<String, ProtoJavaNameIndex.JavaNameMapping> {
+
+  /**
+   * The proto and Java names of a definition, and the path to the definition from the root of
+   * its file.
+   */
+  public static class JavaNameMapping {
+
+    private final String protoName;
+    private final String javaName;
+    private final List<Integer> pathFromRoot;
+
+    public JavaNameMapping(String protoName, String javaName, List<Integer> pathFromRoot) {
+      this.protoName = protoName;
+      this.javaName = javaName;
+      this.pathFromRoot = pathFromRoot;
+    }
+
+    public String getProtoName() {
+      return protoName;
+    }
+
+    public String getJavaName() {
+      return javaName;
+    }
+
+    public List<Integer> getPathFromRoot() {
+      return pathFromRoot;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      JavaNameMapping that = (JavaNameMapping) o;
+      return protoName.equals(that.protoName) && javaName.equals(that.javaName)
+          && pathFromRoot.equals(that.pathFromRoot);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = protoName.hashCode();
+      result = 31 * result + javaName.hashCode();
+      result = 31 * result + pathFromRoot.hashCode();
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return "JavaNameMapping{" +
+          "protoName='" + protoName + '\'' +
+          ", javaName='" + javaName + '\'' +
+          ", pathFromRoot=" + pathFromRoot +
+          '}';
+    }
+  }
+
+  /**
+   * Returns the proto definitions in the given scope that protoc generates the Java class with
+   * the given fully qualified name for.
+   */
+  public static List<ProtoElementWithName> findProtoDefinitions(String javaQualifiedName,
+      GlobalSearchScope scope) {
+    final PsiManager psiManager = PsiManager.getInstance(scope.getProject());
+    final List<ProtoElementWithName> definitions = Lists.newArrayList();
+    FileBasedIndex.getInstance().processValues(NAME, javaQualifiedName,
+        null, new FileBasedIndex.ValueProcessor<JavaNameMapping>() {
+          @Override
+          public boolean process(VirtualFile file, JavaNameMapping value) {
+            ProgressManager.checkCanceled();
+            PsiFile psiFile = psiManager.findFile(file);
+            PsiElement element = psiFile == null
+                ? null : ProtoSymbolIndexLookup.findElement(psiFile, value.getPathFromRoot());
+            if (ProtoJavaNames.hasJavaClass(element)) {
+              definitions.add((ProtoElementWithName) element);
+            }
+            return true;
+          }
+        }, scope);
+    return definitions;
+  }
+
+  /**
+   * Returns the name mappings of all definitions in the given file that have a generated
+   * Java class.
+   */
+  static List<JavaNameMapping> getMappings(final ProtoFile protoFile) {
+    final List<JavaNameMapping> mappings = Lists.newArrayList();
+    protoFile.accept(new PsiRecursiveElementVisitor() {
+      @Override
+      public void visitElement(PsiElement element) {
+        super.visitElement(element);
+        if (!ProtoJavaNames.hasJavaClass(element)) {
+          return;
+        }
+        ProtoElementWithName definition = (ProtoElementWithName) element;
+        String protoName = ProtoPsiTools.getQualifiedName(definition);
+        String javaName = ProtoJavaNames.getJavaClassName(definition);
+        if (protoName != null && javaName != null) {
+          mappings.add(new JavaNameMapping(protoName, javaName,
+              ProtoSymbolIndex.makePathFromRoot(protoFile, element)));
+        }
+      }
+    });
+    return mappings;
+  }
+
+  /**
+   * DataIndexer for proto files.
+   */
+  private static class JavaNameIndexer
+      implements DataIndexer<String, JavaNameMapping, FileContent> {
+
+    @NotNull
+    @Override
+    public Map<String, JavaNameMapping> map(FileContent inputData) {
+      PsiFile psiFile = PsiManager.getInstance(inputData.getProject())
+          .findFile(inputData.getFile());
+      if (!(psiFile instanceof ProtoFile)) {
+        throw new IllegalStateException(
+            "Proto Indexer should never be called for non-proto files.\n");
+      }
+      Map<String, JavaNameMapping> keys = Maps.newHashMap();
+      for (JavaNameMapping mapping : getMappings((ProtoFile) psiFile)) {
+        keys.put(mapping.getJavaName(), mapping);
+      }
+      return keys;
+    }
+  }
+
+  public static final ID<String, JavaNameMapping> NAME = ID.create("ProtoJavaNameIndex");
+
+  @Override
+  public ID<String, JavaNameMapping> getName() {
+    return NAME;
+  }
+
+  @Override
+  public DataIndexer<String, JavaNameMapping, FileContent> getIndexer() {
+    return new JavaNameIndexer();
+  }
+
+  @Override
+  public KeyDescriptor<String> getKeyDescriptor() {
+    return new EnumeratorStringDescriptor();
+  }
+
+  @Override
+  public DataExternalizer<JavaNameMapping> getValueExternalizer() {
+    return new DataExternalizer<JavaNameMapping>() {
+      @Override
+      public void save(DataOutput out, JavaNameMapping value) throws IOException {
+        out.writeUTF(value.getProtoName());
+        out.writeUTF(value.getJavaName());
+        List<Integer> path = value.getPathFromRoot();
+        out.writeInt(path.size());
+        for (Integer index : path) {
+          out.writeInt(index);
+        }
+      }
+
+      @Override
+      public JavaNameMapping read(DataInput in) throws IOException {
+        String protoName = in.readUTF();
+        String javaName = in.readUTF();
+        int size = in.readInt();
+        List<Integer> path = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; i++) {
+          path.add(in.readInt());
+        }
+        return new JavaNameMapping(protoName, javaName, Collections.unmodifiableList(path));
+      }
+    };
+  }
+
+  @Override
+  public FileBasedIndex.InputFilter getInputFilter() {
+    return new FileBasedIndex.InputFilter() {
+      @Override
+      public boolean acceptInput(VirtualFile file) {
+        return file.getFileType() instanceof ProtoFileType;
+      }
+    };
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  @Override
+  public int getVersion() {
+    return 2;
+  }
+}
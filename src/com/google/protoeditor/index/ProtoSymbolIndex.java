@@ -20,8 +20,13 @@ import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.protoeditor.ProtoFileType;
+import com.google.protoeditor.metrics.ProtoMetrics;
+import com.google.protoeditor.psi.ProtoEnumDefinition;
 import com.google.protoeditor.psi.ProtoFile;
+import com.google.protoeditor.psi.ProtoGroupDefinition;
+import com.google.protoeditor.psi.ProtoMessageDefinition;
 import com.google.protoeditor.psi.ProtoNamedElement;
+import com.google.protoeditor.psi.ProtoPsiTools;
 import com.google.protoeditor.psi.ProtoToplevelDefinition;
 
 import com.intellij.openapi.project.Project;
@@ -52,8 +57,8 @@ import java.util.Map;
  * named elements in proto files to IntelliJ's index
  */
 // TODO: Need to change this from FileBasedIndex to StubBasedIndex, since PsiFile is used here.
-public class ProtoSymbolIndex extends
-    FileBasedIndexExtension<ProtoSymbolIndex.ProtoIndexKey, ProtoSymbolIndex.ProtoIndexValue> {
+public class ProtoSymbolIndex extends FileBasedIndexExtension<ProtoSymbolIndex.ProtoIndexKey,
+    List<ProtoSymbolIndex.ProtoIndexValue>> {
 
   public enum ProtoSymbolType {
     TOP_LEVEL_DEFINTION,
@@ -61,8 +66,11 @@ public class ProtoSymbolIndex extends
   }
 
   /**
-   * Key for storing an entry in the index. Proto symbol type, name and file name uniquely identify
-   * a proto index entry.
+   * Key for storing an entry in the index. Proto symbol type and name identify a proto index
+   * entry; the index itself keeps the files that define it, so every name is stored once no
+   * matter how many files define it, and the entries of a name are found with a single lookup.
+   * A file may define several symbols with the same name, e.g. {@code A.Status} and
+   * {@code B.Status}, so the value of a key is the list of all of them.
    */
   public static class ProtoIndexKey {
 
@@ -77,18 +85,15 @@ public class ProtoSymbolIndex extends
       String typeName = in.readUTF();
       ProtoSymbolType symbolType = ProtoSymbolType.valueOf(typeName);
       String symbolName = in.readUTF();
-      String filePath = in.readUTF();
-      return new ProtoIndexKey(symbolType, symbolName, filePath);
+      return new ProtoIndexKey(symbolType, symbolName);
     }
 
     private final ProtoSymbolType type;
     private final String symbolName;
-    private final String filePath;
 
-    public ProtoIndexKey(ProtoSymbolType type, String symbolName, String filePath) {
+    public ProtoIndexKey(ProtoSymbolType type, String symbolName) {
       this.type = type;
       this.symbolName = symbolName;
-      this.filePath = filePath;
     }
 
     public ProtoSymbolType getType() {
@@ -99,10 +104,6 @@ public class ProtoSymbolIndex extends
       return symbolName;
     }
 
-    public String getFilePath() {
-      return filePath;
-    }
-
     /**
      * Serializes ProtoIndexKey to the given DataOutput stream.
      *
@@ -112,7 +113,6 @@ public class ProtoSymbolIndex extends
     public void serialize(DataOutput out) throws IOException {
       out.writeUTF(type.name());
       out.writeUTF(symbolName);
-      out.writeUTF(filePath);
     }
 
     @Override
@@ -126,9 +126,6 @@ public class ProtoSymbolIndex extends
 
       ProtoIndexKey that = (ProtoIndexKey) o;
 
-      if (filePath != null ? !filePath.equals(that.filePath) : that.filePath != null) {
-        return false;
-      }
       if (symbolName != null ? !symbolName.equals(that.symbolName) : that.symbolName != null) {
         return false;
       }
@@ -142,7 +139,6 @@ public class ProtoSymbolIndex extends
     public int hashCode() {
       int result = type != null ? type.hashCode() : 0;
       result = 31 * result + (symbolName != null ? symbolName.hashCode() : 0);
-      result = 31 * result + (filePath != null ? filePath.hashCode() : 0);
       return result;
     }
 
@@ -151,7 +147,6 @@ public class ProtoSymbolIndex extends
       return "ProtoIndexKey{" +
           "type=" + type +
           ", symbolName='" + symbolName + '\'' +
-          ", filePath='" + filePath + '\'' +
           '}';
     }
   }
@@ -159,7 +154,9 @@ public class ProtoSymbolIndex extends
   /**
    * Information about a proto symbol saved in index.
    * <p>
-   * Saves the path from the root PsiFile to the proto symbol
+   * Saves the path from the root PsiFile to the proto symbol, the package of its file and
+   * whether it defines a type that fields can refer to, so that completion can rank and filter
+   * symbols without loading the PSI of their files.
    */
   public static class ProtoIndexValue {
 
@@ -176,19 +173,45 @@ public class ProtoSymbolIndex extends
       for (int i = 0; i < size; i++) {
         nodePath.add(in.readInt());
       }
-      return new ProtoIndexValue(nodePath);
+      String packageName = in.readUTF();
+      boolean typeDefinition = in.readBoolean();
+      return new ProtoIndexValue(nodePath, packageName, typeDefinition);
     }
 
     private final List<Integer> pathFromRoot;
+    private final String packageName;
+    private final boolean typeDefinition;
 
     public ProtoIndexValue(List<Integer> pathFromRoot) {
+      this(pathFromRoot, "", false);
+    }
+
+    public ProtoIndexValue(List<Integer> pathFromRoot, String packageName,
+        boolean typeDefinition) {
       this.pathFromRoot = pathFromRoot;
+      this.packageName = packageName;
+      this.typeDefinition = typeDefinition;
     }
 
     public List<Integer> getPathFromRoot() {
       return pathFromRoot;
     }
 
+    /**
+     * Returns the package of the file defining the symbol, or an empty string if the file has no
+     * package statement.
+     */
+    public String getPackageName() {
+      return packageName;
+    }
+
+    /**
+     * Returns {@code true} if the symbol is a message, group or enum.
+     */
+    public boolean isTypeDefinition() {
+      return typeDefinition;
+    }
+
     /**
      * Serializes ProtoIndexValue to the given DataOutput stream.
      *
@@ -200,6 +223,8 @@ public class ProtoSymbolIndex extends
       for (Integer nodeOffset : pathFromRoot) {
         out.writeInt(nodeOffset);
       }
+      out.writeUTF(packageName);
+      out.writeBoolean(typeDefinition);
     }
 
     @Override
@@ -213,19 +238,27 @@ public class ProtoSymbolIndex extends
 
       ProtoIndexValue that = (ProtoIndexValue) o;
 
+      if (typeDefinition != that.typeDefinition || !packageName.equals(that.packageName)) {
+        return false;
+      }
       return (pathFromRoot == null && that.pathFromRoot == null)
           || pathFromRoot.equals(that.pathFromRoot);
     }
 
     @Override
     public int hashCode() {
-      return (pathFromRoot != null ? pathFromRoot.hashCode() : 0);
+      int result = pathFromRoot != null ? pathFromRoot.hashCode() : 0;
+      result = 31 * result + packageName.hashCode();
+      result = 31 * result + (typeDefinition ? 1 : 0);
+      return result;
     }
 
     @Override
     public String toString() {
       return "ProtoIndexValue{" +
           ", pathFromRoot=" + pathFromRoot +
+          ", packageName='" + packageName + '\'' +
+          ", typeDefinition=" + typeDefinition +
           '}';
     }
   }
@@ -234,7 +267,7 @@ public class ProtoSymbolIndex extends
    * DataIndexer for proto files.
    */
   private static class ProtoDataIndexer implements
-      DataIndexer<ProtoIndexKey, ProtoIndexValue, FileContent> {
+      DataIndexer<ProtoIndexKey, List<ProtoIndexValue>, FileContent> {
 
     /**
      * Returns a map containing all the named elements in a proto file.
@@ -243,8 +276,9 @@ public class ProtoSymbolIndex extends
      */
     @NotNull
     @Override
-    public Map<ProtoIndexKey, ProtoIndexValue> map(FileContent inputData) {
-      Map<ProtoIndexKey, ProtoIndexValue> protoSymbols = Maps.newHashMap();
+    public Map<ProtoIndexKey, List<ProtoIndexValue>> map(FileContent inputData) {
+      long start = ProtoMetrics.SYMBOL_INDEX_MAP.start();
+      Map<ProtoIndexKey, List<ProtoIndexValue>> protoSymbols = Maps.newHashMap();
       Project project = inputData.getProject();
       VirtualFile vFile = inputData.getFile();
       PsiFile psiFile = PsiManager.getInstance(project).findFile(vFile);
@@ -255,62 +289,79 @@ public class ProtoSymbolIndex extends
         ProtoFile protoFile = (ProtoFile) psiFile;
         addAllProtoSymbols(protoFile, protoSymbols);
       }
+      ProtoMetrics.SYMBOL_INDEX_MAP.stop(start);
       return protoSymbols;
     }
 
     private void addAllProtoSymbols(final ProtoFile protoFile,
-        final Map<ProtoIndexKey, ProtoIndexValue> protoSymbols) {
+        final Map<ProtoIndexKey, List<ProtoIndexValue>> protoSymbols) {
+      final String packageName = Strings.nullToEmpty(ProtoPsiTools.getContainingPackage(protoFile));
 
       PsiRecursiveElementVisitor visitor = new PsiRecursiveElementVisitor() {
         public void visitElement(PsiElement element) {
           super.visitElement(element);
 
           if (element instanceof ProtoNamedElement) {
-            addProtoSymbol(element, protoFile, ProtoSymbolType.NAMED_ELEMENT, protoSymbols);
+            addProtoSymbol(element, protoFile, packageName, ProtoSymbolType.NAMED_ELEMENT,
+                protoSymbols);
           }
           if (element instanceof ProtoToplevelDefinition) {
-            addProtoSymbol(element, protoFile, ProtoSymbolType.TOP_LEVEL_DEFINTION, protoSymbols);
+            addProtoSymbol(element, protoFile, packageName, ProtoSymbolType.TOP_LEVEL_DEFINTION,
+                protoSymbols);
           }
         }
       };
       protoFile.accept(visitor);
     }
 
-    private void addProtoSymbol(PsiElement element, ProtoFile protoFile,
-        ProtoSymbolType symbolType, Map<ProtoIndexKey, ProtoIndexValue> protoSymbols) {
+    private void addProtoSymbol(PsiElement element, ProtoFile protoFile, String packageName,
+        ProtoSymbolType symbolType, Map<ProtoIndexKey, List<ProtoIndexValue>> protoSymbols) {
       ProtoNamedElement namedElement = (ProtoNamedElement) element;
       String name = namedElement.getName();
       if (Strings.isNullOrEmpty(name)) {
         return;
       }
-      protoSymbols.put(new ProtoIndexKey(symbolType, name, protoFile.getVirtualFile().getPath()),
-          new ProtoIndexValue(makePathFromRoot(protoFile, element)));
+      boolean typeDefinition = element instanceof ProtoMessageDefinition
+          || element instanceof ProtoGroupDefinition || element instanceof ProtoEnumDefinition;
+      ProtoIndexKey key = new ProtoIndexKey(symbolType, name);
+      List<ProtoIndexValue> values = protoSymbols.get(key);
+      if (values == null) {
+        values = Lists.newArrayListWithCapacity(1);
+        protoSymbols.put(key, values);
+      }
+      values.add(
+          new ProtoIndexValue(makePathFromRoot(protoFile, element), packageName, typeDefinition));
     }
+  }
 
-    private List<Integer> makePathFromRoot(ProtoFile protoFile, PsiElement element) {
-      List<Integer> path = Lists.newArrayList();
-      PsiElement child = element;
-      PsiElement parent;
-      while (child != protoFile) {
-        parent = child.getParent();
-        int childIndex = Arrays.<PsiElement>asList(parent.getChildren()).indexOf(child);
-        path.add(0, childIndex);
-        child = parent;
-      }
+  /**
+   * Returns the child indexes leading from the file to the given element, as stored in the
+   * values of the proto indexes.
+   */
+  static List<Integer> makePathFromRoot(ProtoFile protoFile, PsiElement element) {
+    List<Integer> path = Lists.newArrayList();
+    PsiElement child = element;
+    PsiElement parent;
+    while (child != protoFile) {
+      parent = child.getParent();
+      int childIndex = Arrays.<PsiElement>asList(parent.getChildren()).indexOf(child);
+      path.add(0, childIndex);
+      child = parent;
+    }
 
-      PsiElement root = protoFile;
-      for (Integer i : path) {
-        root = root.getChildren()[i];
-      }
-      assert root == element;
-      return path;
+    PsiElement root = protoFile;
+    for (Integer i : path) {
+      root = root.getChildren()[i];
     }
+    assert root == element;
+    return path;
   }
 
-  public static final ID<ProtoIndexKey, ProtoIndexValue> NAME = ID.create("ProtoSymbolIndex");
+  public static final ID<ProtoIndexKey, List<ProtoIndexValue>> NAME =
+      ID.create("ProtoSymbolIndex");
 
   @Override
-  public ID<ProtoIndexKey, ProtoIndexValue> getName() {
+  public ID<ProtoIndexKey, List<ProtoIndexValue>> getName() {
     return NAME;
   }
 
@@ -321,7 +372,7 @@ public class ProtoSymbolIndex extends
    * in the PSI tree for fast retrieval.
    */
   @Override
-  public DataIndexer<ProtoIndexKey, ProtoIndexValue, FileContent> getIndexer() {
+  public DataIndexer<ProtoIndexKey, List<ProtoIndexValue>, FileContent> getIndexer() {
     return new ProtoDataIndexer();
   }
 
@@ -358,19 +409,27 @@ public class ProtoSymbolIndex extends
   /**
    * {@inheritDoc}
    * <p>
-   * Returns DataExternalizer that saves and reads ProtoIndexValue.
+   * Returns DataExternalizer that saves and reads the ProtoIndexValues of a key in a file.
    */
   @Override
-  public DataExternalizer<ProtoIndexValue> getValueExternalizer() {
-    return new DataExternalizer<ProtoIndexValue>() {
+  public DataExternalizer<List<ProtoIndexValue>> getValueExternalizer() {
+    return new DataExternalizer<List<ProtoIndexValue>>() {
       @Override
-      public void save(DataOutput out, ProtoIndexValue value) throws IOException {
-        value.serialize(out);
+      public void save(DataOutput out, List<ProtoIndexValue> values) throws IOException {
+        out.writeInt(values.size());
+        for (ProtoIndexValue value : values) {
+          value.serialize(out);
+        }
       }
 
       @Override
-      public ProtoIndexValue read(DataInput in) throws IOException {
-        return ProtoIndexValue.readFrom(in);
+      public List<ProtoIndexValue> read(DataInput in) throws IOException {
+        int size = in.readInt();
+        List<ProtoIndexValue> values = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; i++) {
+          values.add(ProtoIndexValue.readFrom(in));
+        }
+        return values;
       }
     };
   }
@@ -392,6 +451,6 @@ public class ProtoSymbolIndex extends
 
   @Override
   public int getVersion() {
-    return 1;
+    return 4;
   }
 }
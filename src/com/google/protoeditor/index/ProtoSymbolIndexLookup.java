@@ -17,24 +17,33 @@
 package com.google.protoeditor.index;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.Lists;
+import com.google.protoeditor.metrics.ProtoMetrics;
 import com.google.protoeditor.psi.ProtoElement;
 import com.google.protoeditor.psi.ProtoFile;
 
 import com.intellij.navigation.NavigationItem;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWithId;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.CommonProcessors;
+import com.intellij.util.Processor;
 import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.IdFilter;
+
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Collection;
 import java.util.List;
 
 /**
  * Provides utility methods for looking up sumbols in proto index.
+ * <p>
+ * The processor-based methods stream names and elements straight from the index; the
+ * array-returning methods collect them for callers that need all results at once.
  */
 public class ProtoSymbolIndexLookup {
 
@@ -46,16 +55,34 @@ public class ProtoSymbolIndexLookup {
    * @return Array of proto symbol names that match the criteria.
    */
   public String[] getProtoNames(ProtoSymbolIndex.ProtoSymbolType symbolType, Project project) {
-    List<String> topLevelNames = Lists.newArrayList();
-    FileBasedIndex index = FileBasedIndex.getInstance();
-    Collection<ProtoSymbolIndex.ProtoIndexKey> allKeys = index.getAllKeys(
-        ProtoSymbolIndex.NAME, project);
-    for (ProtoSymbolIndex.ProtoIndexKey key : allKeys) {
-      if (key.getType() == symbolType) {
-         topLevelNames.add(key.getSymbolName());
-      }
+    CommonProcessors.CollectProcessor<String> names =
+        new CommonProcessors.CollectProcessor<String>();
+    processNames(symbolType, names, GlobalSearchScope.allScope(project), null);
+    return names.toArray(new String[] {});
+  }
+
+  /**
+   * Feeds the distinct names of the proto symbols of the given type in the given scope to the
+   * processor, until it returns {@code false}.
+   *
+   * @param filter optional filter of the files to consider, as passed in by the platform
+   */
+  public boolean processNames(final ProtoSymbolIndex.ProtoSymbolType symbolType,
+      final Processor<String> processor, GlobalSearchScope scope, @Nullable IdFilter filter) {
+    long start = ProtoMetrics.LOOKUP_NAMES.start();
+    try {
+      return FileBasedIndex.getInstance().processAllKeys(ProtoSymbolIndex.NAME,
+          new Processor<ProtoSymbolIndex.ProtoIndexKey>() {
+            @Override
+            public boolean process(ProtoSymbolIndex.ProtoIndexKey key) {
+              ProgressManager.checkCanceled();
+              ProtoMetrics.LOOKUP_KEYS_SCANNED.increment();
+              return key.getType() != symbolType || processor.process(key.getSymbolName());
+            }
+          }, scope, filter);
+    } finally {
+      ProtoMetrics.LOOKUP_NAMES.stop(start);
     }
-    return topLevelNames.toArray(new String[] {});
   }
 
   /**
@@ -76,42 +103,83 @@ public class ProtoSymbolIndexLookup {
   NavigationItem[] getProtoItemsByName(String name, Project project,
       boolean includeNonProjectItems, final ProtoSymbolIndex.ProtoSymbolType symbolType,
       final VirtualFile vFile) {
-    final List<NavigationItem> topLevelElements = Lists.newArrayList();
-    final GlobalSearchScope scope = includeNonProjectItems ? GlobalSearchScope.allScope(project)
+    GlobalSearchScope scope = includeNonProjectItems ? GlobalSearchScope.allScope(project)
         : GlobalSearchScope.projectScope(project);
-    final PsiManager psiManager = PsiManager.getInstance(project);
+    CommonProcessors.CollectProcessor<NavigationItem> items =
+        new CommonProcessors.CollectProcessor<NavigationItem>();
+    processElementsWithName(name, symbolType, items, scope, null, vFile);
+    return items.toArray(new NavigationItem[] {});
+  }
 
-    FileBasedIndex.ValueProcessor<ProtoSymbolIndex.ProtoIndexValue> indexEntryValueProcessor =
-        new FileBasedIndex.ValueProcessor<ProtoSymbolIndex.ProtoIndexValue>() {
+  /**
+   * Feeds the proto elements of the given type and name in the given scope to the processor,
+   * until it returns {@code false}.
+   *
+   * @param filter optional filter of the files to consider, as passed in by the platform
+   */
+  public boolean processElementsWithName(String name,
+      ProtoSymbolIndex.ProtoSymbolType symbolType, Processor<NavigationItem> processor,
+      GlobalSearchScope scope, @Nullable IdFilter filter) {
+    return processElementsWithName(name, symbolType, processor, scope, filter, null);
+  }
+
+  private boolean processElementsWithName(String name,
+      ProtoSymbolIndex.ProtoSymbolType symbolType, final Processor<NavigationItem> processor,
+      final GlobalSearchScope scope, @Nullable final IdFilter filter,
+      @Nullable final VirtualFile vFile) {
+    long start = ProtoMetrics.LOOKUP_ITEMS.start();
+    final PsiManager psiManager = PsiManager.getInstance(scope.getProject());
+    // The index is keyed by type and name, so this is a single lookup, not a scan of all keys.
+    ProtoSymbolIndex.ProtoIndexKey key = new ProtoSymbolIndex.ProtoIndexKey(symbolType, name);
+    FileBasedIndex.ValueProcessor<List<ProtoSymbolIndex.ProtoIndexValue>>
+        indexEntryValueProcessor =
+        new FileBasedIndex.ValueProcessor<List<ProtoSymbolIndex.ProtoIndexValue>>() {
           @Override
-          public boolean process(VirtualFile file, ProtoSymbolIndex.ProtoIndexValue value) {
+          public boolean process(VirtualFile file, List<ProtoSymbolIndex.ProtoIndexValue> values) {
+            ProgressManager.checkCanceled();
             if (!scope.contains(file) && vFile != file) {
               return true;
             }
+            if (filter != null && file instanceof VirtualFileWithId
+                && !filter.containsFileId(((VirtualFileWithId) file).getId())) {
+              return true;
+            }
             final PsiFile psiFile = psiManager.findFile(file);
             if (!(psiFile instanceof ProtoFile)) {
               return true;
             }
 
-            PsiElement element = psiFile;
-            for (Integer path : value.getPathFromRoot()) {
-              element = element.getChildren()[path];
+            for (ProtoSymbolIndex.ProtoIndexValue value : values) {
+              PsiElement element = findElement(psiFile, value.getPathFromRoot());
+              if (element != null && !processor.process((ProtoElement) element)) {
+                return false;
+              }
             }
-            topLevelElements.add((ProtoElement) element);
             return true;
           }
         };
+    try {
+      return FileBasedIndex.getInstance().processValues(ProtoSymbolIndex.NAME, key, vFile,
+          indexEntryValueProcessor, scope);
+    } finally {
+      ProtoMetrics.LOOKUP_ITEMS.stop(start);
+    }
+  }
 
-    FileBasedIndex index = FileBasedIndex.getInstance();
-    Collection<ProtoSymbolIndex.ProtoIndexKey> allKeys = index.getAllKeys(
-        ProtoSymbolIndex.NAME, project);
-    for (ProtoSymbolIndex.ProtoIndexKey key : allKeys) {
-      if (key.getType() == symbolType && key.getSymbolName().equals(name)) {
-        FileBasedIndex.getInstance().processValues(ProtoSymbolIndex.NAME, key, vFile,
-            indexEntryValueProcessor, scope);
+  /**
+   * Returns the element at the given path from the root of the file, or {@code null} if the
+   * path does not match the file.
+   */
+  @Nullable
+  static PsiElement findElement(PsiFile psiFile, List<Integer> pathFromRoot) {
+    PsiElement element = psiFile;
+    for (Integer path : pathFromRoot) {
+      PsiElement[] children = element.getChildren();
+      if (path >= children.length) {
+        return null;
       }
+      element = children[path];
     }
-    return topLevelElements.toArray(new NavigationItem[] {});
+    return element;
   }
-
 }
@@ -0,0 +1,399 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.metrics;
+
+import com.google.common.collect.Lists;
+
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Plugin-wide registry of performance metrics: timers with latency histograms, plain counters
+ * and cache hit ratios.
+ * <p>
+ * Collection is off by default. While it is off, {@link Timer#start()} returns a marker that
+ * makes {@link Timer#stop(long)} a no-op, and counters return after reading a volatile flag, so
+ * the instrumented code paths pay no measurable cost. The metrics are shared by all projects,
+ * since the instrumented parser, indexers and formatter are not tied to one.
+ */
+public final class ProtoMetrics {
+
+  private static final Logger LOG = Logger.getInstance(ProtoMetrics.class.getName());
+
+  private static final List<Metric> METRICS = new CopyOnWriteArrayList<Metric>();
+
+  private static volatile boolean enabled;
+
+  public static final Timer PARSE = timer("ProtoParser.parse");
+  public static final Timer SYMBOL_INDEX_MAP = timer("ProtoSymbolIndex.map");
+  public static final Timer COLLISION_INDEX_MAP = timer("ProtoCollisionIndex.map");
+  public static final Timer RESOLVE = timer("ProtoMessageTypeReference.resolve");
+  public static final Timer LOOKUP_NAMES = timer("ProtoSymbolIndexLookup.getProtoNames");
+  public static final Timer LOOKUP_ITEMS = timer("ProtoSymbolIndexLookup.getProtoItemsByName");
+  public static final Counter LOOKUP_KEYS_SCANNED = counter("ProtoSymbolIndexLookup.keysScanned");
+  public static final Counter BLOCKS_CREATED = counter("ProtoBlock.created");
+  public static final Timer BUILD_SUB_BLOCKS = timer("ProtoBlock.buildSubBlocks");
+  public static final Timer LINE_MARKERS = timer("ProtoLineMarkerProvider.collectSlow");
+  public static final CacheMetric NAME_CACHE = cache("ProtoPsiTools.names");
+  public static final CacheMetric DEPENDENCY_GRAPH_CACHE = cache("MessageDependencyGraph");
+  public static final CacheMetric EXTENSION_RANGES_CACHE = cache("ExtensionRanges");
+  public static final CacheMetric NAME_CLASHES_CACHE = cache("ProtoValidator.nameClashes");
+
+  private ProtoMetrics() {
+  }
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  public static void setEnabled(boolean enabled) {
+    ProtoMetrics.enabled = enabled;
+  }
+
+  public static Timer timer(String name) {
+    return register(new Timer(name));
+  }
+
+  public static Counter counter(String name) {
+    return register(new Counter(name));
+  }
+
+  public static CacheMetric cache(String name) {
+    return register(new CacheMetric(name));
+  }
+
+  private static <T extends Metric> T register(T metric) {
+    METRICS.add(metric);
+    return metric;
+  }
+
+  /**
+   * Returns all registered metrics, sorted by name.
+   */
+  public static List<Metric> getMetrics() {
+    List<Metric> metrics = Lists.newArrayList(METRICS);
+    Collections.sort(metrics, new Comparator<Metric>() {
+      @Override
+      public int compare(Metric a, Metric b) {
+        return a.getName().compareTo(b.getName());
+      }
+    });
+    return metrics;
+  }
+
+  public static void reset() {
+    for (Metric metric : METRICS) {
+      metric.reset();
+    }
+  }
+
+  /**
+   * Returns a plain text report of all metrics that recorded anything.
+   */
+  public static String getTextReport() {
+    StringBuilder report = new StringBuilder();
+    for (Metric metric : getMetrics()) {
+      if (!metric.isEmpty()) {
+        metric.appendText(report);
+      }
+    }
+    return report.length() == 0 ? "No metrics recorded.\n" : report.toString();
+  }
+
+  /**
+   * Returns a JSON object mapping the name of every metric to its values.
+   */
+  public static String getJsonReport() {
+    StringBuilder report = new StringBuilder("{");
+    for (Metric metric : getMetrics()) {
+      if (report.length() > 1) {
+        report.append(',');
+      }
+      report.append('"').append(metric.getName()).append("\":{");
+      metric.appendJson(report);
+      report.append('}');
+    }
+    return report.append('}').toString();
+  }
+
+  /**
+   * Writes the text and JSON reports to the IDE log.
+   */
+  public static void dumpToLog() {
+    LOG.info("Proto performance report:\n" + getTextReport() + "\n" + getJsonReport());
+  }
+
+  /**
+   * A named metric.
+   */
+  public abstract static class Metric {
+
+    private final String name;
+
+    Metric(String name) {
+      this.name = name;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    abstract boolean isEmpty();
+
+    abstract void reset();
+
+    abstract void appendText(StringBuilder report);
+
+    abstract void appendJson(StringBuilder report);
+  }
+
+  /**
+   * Measures the duration of an operation. Durations are also counted in a histogram with one
+   * bucket per decade, from under 10 microseconds to one second and more.
+   */
+  public static class Timer extends Metric {
+
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+    private static final long[] BUCKET_LIMITS_NANOS =
+        {10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L};
+    private static final String[] BUCKET_NAMES =
+        {"<10us", "<100us", "<1ms", "<10ms", "<100ms", "<1s", ">=1s"};
+
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_NAMES.length);
+
+    Timer(String name) {
+      super(name);
+    }
+
+    /**
+     * Returns the value to pass to {@link #stop(long)} when the operation completes.
+     */
+    public long start() {
+      return enabled ? System.nanoTime() : NOT_STARTED;
+    }
+
+    public void stop(long start) {
+      if (start != NOT_STARTED) {
+        record(System.nanoTime() - start);
+      }
+    }
+
+    void record(long nanos) {
+      count.incrementAndGet();
+      totalNanos.addAndGet(nanos);
+      long max = maxNanos.get();
+      while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+        max = maxNanos.get();
+      }
+      int bucket = 0;
+      while (bucket < BUCKET_LIMITS_NANOS.length && nanos >= BUCKET_LIMITS_NANOS[bucket]) {
+        bucket++;
+      }
+      buckets.incrementAndGet(bucket);
+    }
+
+    public long getCount() {
+      return count.get();
+    }
+
+    public long getTotalNanos() {
+      return totalNanos.get();
+    }
+
+    public long getMaxNanos() {
+      return maxNanos.get();
+    }
+
+    /**
+     * Returns the number of durations in each histogram bucket, shortest first.
+     */
+    public long[] getHistogram() {
+      long[] histogram = new long[buckets.length()];
+      for (int i = 0; i < histogram.length; i++) {
+        histogram[i] = buckets.get(i);
+      }
+      return histogram;
+    }
+
+    @Override
+    boolean isEmpty() {
+      return count.get() == 0;
+    }
+
+    @Override
+    void reset() {
+      count.set(0);
+      totalNanos.set(0);
+      maxNanos.set(0);
+      for (int i = 0; i < buckets.length(); i++) {
+        buckets.set(i, 0);
+      }
+    }
+
+    @Override
+    void appendText(StringBuilder report) {
+      report.append(String.format("%-48s count %d, total %.2f ms, max %.2f ms%n",
+          getName(), getCount(), getTotalNanos() / 1e6, getMaxNanos() / 1e6));
+      report.append(String.format("%-48s", ""));
+      long[] histogram = getHistogram();
+      for (int i = 0; i < histogram.length; i++) {
+        report.append(' ').append(BUCKET_NAMES[i]).append(": ").append(histogram[i]);
+      }
+      report.append(String.format("%n"));
+    }
+
+    @Override
+    void appendJson(StringBuilder report) {
+      report.append("\"count\":").append(getCount())
+          .append(",\"totalNanos\":").append(getTotalNanos())
+          .append(",\"maxNanos\":").append(getMaxNanos())
+          .append(",\"histogram\":{");
+      long[] histogram = getHistogram();
+      for (int i = 0; i < histogram.length; i++) {
+        if (i > 0) {
+          report.append(',');
+        }
+        report.append('"').append(BUCKET_NAMES[i]).append("\":").append(histogram[i]);
+      }
+      report.append('}');
+    }
+  }
+
+  /**
+   * Counts events.
+   */
+  public static class Counter extends Metric {
+
+    private final AtomicLong value = new AtomicLong();
+
+    Counter(String name) {
+      super(name);
+    }
+
+    public void increment() {
+      add(1);
+    }
+
+    public void add(long delta) {
+      if (enabled) {
+        value.addAndGet(delta);
+      }
+    }
+
+    public long getValue() {
+      return value.get();
+    }
+
+    @Override
+    boolean isEmpty() {
+      return value.get() == 0;
+    }
+
+    @Override
+    void reset() {
+      value.set(0);
+    }
+
+    @Override
+    void appendText(StringBuilder report) {
+      report.append(String.format("%-48s %d%n", getName(), getValue()));
+    }
+
+    @Override
+    void appendJson(StringBuilder report) {
+      report.append("\"value\":").append(getValue());
+    }
+  }
+
+  /**
+   * Counts the requests to a cache and the requests that had to compute the value.
+   */
+  public static class CacheMetric extends Metric {
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    CacheMetric(String name) {
+      super(name);
+    }
+
+    /**
+     * Records a request to the cache. Call {@link #miss()} as well if the value is computed.
+     */
+    public void request() {
+      if (enabled) {
+        requests.incrementAndGet();
+      }
+    }
+
+    public void miss() {
+      if (enabled) {
+        misses.incrementAndGet();
+      }
+    }
+
+    public long getRequests() {
+      return requests.get();
+    }
+
+    public long getMisses() {
+      return misses.get();
+    }
+
+    /**
+     * Returns the fraction of requests served from the cache, or {@code 0} if there were none.
+     */
+    public double getHitRatio() {
+      long total = requests.get();
+      return total == 0 ? 0 : Math.max(0, total - misses.get()) / (double) total;
+    }
+
+    @Override
+    boolean isEmpty() {
+      return requests.get() == 0;
+    }
+
+    @Override
+    void reset() {
+      requests.set(0);
+      misses.set(0);
+    }
+
+    @Override
+    void appendText(StringBuilder report) {
+      report.append(String.format("%-48s requests %d, misses %d, hit ratio %.1f%%%n",
+          getName(), getRequests(), getMisses(), getHitRatio() * 100));
+    }
+
+    @Override
+    void appendJson(StringBuilder report) {
+      report.append("\"requests\":").append(getRequests())
+          .append(",\"misses\":").append(getMisses())
+          .append(",\"hitRatio\":").append(String.format(Locale.ROOT, "%.4f", getHitRatio()));
+    }
+  }
+}
@@ -272,7 +272,8 @@ public class MessageParser extends AbstractProtoParser {
   private boolean parseExtensionsLowerBound(PsiBuilder builder) {
     IElementType expectedLiteral = builder.getTokenType();
     String expectedLiteralText = builder.getTokenText();
-    if (expectedLiteral != ProtoTokenTypes.INTEGER_LITERAL) {
+    if (expectedLiteral != ProtoTokenTypes.INTEGER_LITERAL
+        && expectedLiteral != ProtoTokenTypes.HEX_LITERAL) {
       builder.error("expected integer, lower bound for extensions");
       return false;
     }
@@ -287,9 +288,10 @@ public class MessageParser extends AbstractProtoParser {
       PsiBuilder.Marker upperBoundMarker = builder.mark();
       parseKeyword(builder, ProtoKeywords.MAX);
       upperBoundMarker.done(ProtoElementTypes.EXTENSIONS_UPPER_BOUND);
-    } else if (builder.getTokenType() == ProtoTokenTypes.INTEGER_LITERAL) {
+    } else if (builder.getTokenType() == ProtoTokenTypes.INTEGER_LITERAL
+        || builder.getTokenType() == ProtoTokenTypes.HEX_LITERAL) {
       PsiBuilder.Marker upperBoundMarker = builder.mark();
-      parseLiteral(builder, ProtoTokenTypes.INTEGER_LITERAL, builder.getTokenText());
+      parseLiteral(builder, builder.getTokenType(), builder.getTokenText());
       upperBoundMarker.done(ProtoElementTypes.EXTENSIONS_UPPER_BOUND);
     } else {
       builder.error("expected integer, upper bound for extensions");
@@ -395,7 +397,9 @@ public class MessageParser extends AbstractProtoParser {
         propertyType = ProtoElementTypes.ENUM_PROPERTY;
       } else if (isUserDefinedType(builder, currentMsgName)) {
         PsiBuilder.Marker marker = builder.mark();
+        PsiBuilder.Marker referenceMarker = builder.mark();
         parseUserDefinedType(builder);
+        referenceMarker.done(ProtoElementTypes.MESSAGE_TYPE_REFERENCE);
         marker.done(ProtoElementTypes.USER_DEFINED_PROPERTY_TYPE);
         propertyType = ProtoElementTypes.USER_DEFINED_PROPERTY;
       } else {
@@ -19,6 +19,7 @@ package com.google.protoeditor.parsing;
 import com.google.common.collect.Maps;
 import com.google.protoeditor.lex.ProtoElementTypes;
 import com.google.protoeditor.lex.ProtoTokenTypes;
+import com.google.protoeditor.metrics.ProtoMetrics;
 
 import com.intellij.lang.ASTNode;
 import com.intellij.lang.PsiBuilder;
@@ -44,6 +45,16 @@ public class ProtoParser extends AbstractProtoParser implements PsiParser {
   @NotNull
   @Override
   public ASTNode parse(IElementType root, PsiBuilder builder) {
+    long start = ProtoMetrics.PARSE.start();
+    try {
+      parseFile(root, builder);
+      return builder.getTreeBuilt();
+    } finally {
+      ProtoMetrics.PARSE.stop(start);
+    }
+  }
+
+  private void parseFile(IElementType root, PsiBuilder builder) {
     Set<String> parsedMessageNames = new HashSet();
     Map<String, Set<String>> parsedEnums = Maps.newHashMap();
     PsiBuilder.Marker rootMarker = builder.mark();
@@ -87,7 +98,6 @@ public class ProtoParser extends AbstractProtoParser implements PsiParser {
       }
     }
     rootMarker.done(root);
-    return builder.getTreeBuilt();
   }
 
   private void parseLanguageLiteral(PsiBuilder builder) {
@@ -50,6 +50,11 @@ public abstract class AbstractProtoDefinition extends AbstractProtoElement
     return nameNode == null ? null : nameNode.getText();
   }
 
+  @Override @Nullable
+  public String getQualifiedName() {
+    return ProtoPsiTools.getQualifiedName(this);
+  }
+
   @Nullable
   private ASTNode getNameNode() {
     ProtoNameElement element = getNameElement();
@@ -57,10 +62,11 @@ public abstract class AbstractProtoDefinition extends AbstractProtoElement
   }
 
   public PsiElement setName(String name) throws IncorrectOperationException {
-    ASTNode oldNode = getNameNode();
-
-    oldNode.getTreeParent().replaceChild(
-        oldNode, ProtoChangeTools.createIdentifierFromText(getProject(), name));
+    ProtoNameElement nameElement = getNameElement();
+    if (nameElement == null) {
+      throw new IncorrectOperationException("no name element");
+    }
+    nameElement.setName(name);
     return this;
   }
 
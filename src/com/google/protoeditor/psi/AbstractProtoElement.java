@@ -19,7 +19,11 @@ package com.google.protoeditor.psi;
 import com.intellij.extapi.psi.ASTWrapperPsiElement;
 import com.intellij.lang.ASTNode;
 import com.intellij.psi.PsiErrorElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.SearchScope;
 
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public abstract class AbstractProtoElement extends ASTWrapperPsiElement implements ProtoElement {
@@ -38,4 +42,17 @@ public abstract class AbstractProtoElement extends ASTWrapperPsiElement implemen
     PsiErrorElement errorElement = getErrorElement();
     return errorElement == null ? null : errorElement.getErrorDescription();
   }
+
+  /**
+   * Proto definitions can only be used by the files importing them, so usages are searched in
+   * the defining file and its transitive importers.
+   */
+  @NotNull
+  @Override
+  public SearchScope getUseScope() {
+    PsiFile file = getContainingFile();
+    GlobalSearchScope scope = file instanceof ProtoFile
+        ? ProtoUseScope.getUseScope((ProtoFile) file) : null;
+    return scope == null ? super.getUseScope() : scope;
+  }
 }
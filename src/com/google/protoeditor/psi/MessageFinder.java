@@ -20,6 +20,7 @@ import com.google.protoeditor.ProtoFileType;
 
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.roots.ContentIterator;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiDocumentManager;
@@ -44,6 +45,7 @@ public abstract class MessageFinder implements ContentIterator {
   }
 
   public boolean processFile(VirtualFile fileOrDir) {
+    ProgressManager.checkCanceled();
     if (!(fileOrDir.getFileType() instanceof ProtoFileType)) {
       return true;
     }
@@ -69,6 +71,7 @@ public abstract class MessageFinder implements ContentIterator {
       if (pkgNames.contains(referencedPackageName)) {
         for (ProtoMessageDefinition def : protoFile
             .getMessageDefinitions()) {
+          ProgressManager.checkCanceled();
           if (!handleMessage(def)) {
             return false;
           }
@@ -79,6 +82,7 @@ public abstract class MessageFinder implements ContentIterator {
       } else {
         for (ProtoMessageDefinition def : protoFile
             .getMessageDefinitions()) {
+          ProgressManager.checkCanceled();
           if (clsNames.contains(referencedPackageName + "." + def.getName())) {
             if (!handleMessage(def)) {
               return false;
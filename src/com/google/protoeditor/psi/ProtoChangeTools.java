@@ -17,15 +17,33 @@
 package com.google.protoeditor.psi;
 
 import com.google.protoeditor.ProtoFileType;
+import com.google.protoeditor.lex.ProtoTokenTypes;
 import com.intellij.lang.ASTNode;
 import com.intellij.lang.Language;
 import com.intellij.lang.LanguageParserDefinitions;
 import com.intellij.lang.ParserDefinition;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.impl.source.tree.LeafElement;
+import com.intellij.util.IncorrectOperationException;
+
+import java.util.regex.Pattern;
 
 public class ProtoChangeTools {
 
+  private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+  private static final Pattern QUALIFIED_IDENTIFIER =
+      Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)*");
+
+  /**
+   * Returns {@code true} if the given text is a simple proto identifier, i.e. a valid name for a
+   * definition.
+   */
+  public static boolean isIdentifier(String text) {
+    return IDENTIFIER.matcher(text).matches();
+  }
+
   public static ASTNode createMessageFromText(Project project, String text) {
     ProtoMessageDefinition def = getDummyFile(project, text).getMessageDefinitions().get(0);
     return def.getNode();
@@ -55,4 +73,29 @@ public class ProtoChangeTools {
                                   "parsed message " + identifierText + " { }");
     return file.getMessageDefinitions().get(0).getNameElement().getNode();
   }
+
+  /**
+   * Returns a new identifier token with the given text, which may be a dotted name.
+   */
+  public static ASTNode createIdentifierTokenFromText(Project project, String identifierText) {
+    return createIdentifierFromText(project, identifierText)
+        .findChildByType(ProtoTokenTypes.IDENTIFIER);
+  }
+
+  /**
+   * Replaces the text of the given identifier token in place. Unlike the factory methods above,
+   * this does not parse a dummy file, so it is cheap enough to be called for every usage of a
+   * renamed definition. The text may be a dotted name, but must still lex as one identifier.
+   */
+  public static void replaceIdentifierText(ASTNode identifier, String identifierText)
+      throws IncorrectOperationException {
+    if (!(identifier instanceof LeafElement)
+        || identifier.getElementType() != ProtoTokenTypes.IDENTIFIER) {
+      throw new IncorrectOperationException("not an identifier token: " + identifier);
+    }
+    if (!QUALIFIED_IDENTIFIER.matcher(identifierText).matches()) {
+      throw new IncorrectOperationException("not a valid identifier: " + identifierText);
+    }
+    ((LeafElement) identifier).replaceWithText(identifierText);
+  }
 }
@@ -16,7 +16,10 @@
 
 package com.google.protoeditor.psi;
 
+import com.google.protoeditor.lex.ProtoTokenTypes;
+
 import com.intellij.lang.ASTNode;
+import com.intellij.psi.PsiReference;
 import com.intellij.psi.util.PsiTreeUtil;
 
 import org.jetbrains.annotations.Nullable;
@@ -38,4 +41,17 @@ public class ProtoDefaultValue extends AbstractProtoElement {
   ProtoNameElement getEnumNameElement() {
     return PsiTreeUtil.getChildOfType(this, ProtoNameElement.class);
   }
+
+  /**
+   * Returns the reference to the enum constant named by this default value, or {@code null}
+   * if the default value is a literal.
+   */
+  @Override
+  public PsiReference getReference() {
+    ProtoNameElement enumNameElement = getEnumNameElement();
+    ASTNode identifier = enumNameElement == null
+        ? getNode().findChildByType(ProtoTokenTypes.IDENTIFIER)
+        : enumNameElement.getIdentifierNode();
+    return ProtoEnumConstantReference.create(this, identifier);
+  }
 }
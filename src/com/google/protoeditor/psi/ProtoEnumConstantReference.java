@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.psi;
+
+import com.intellij.lang.ASTNode;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiReference;
+import com.intellij.psi.PsiReferenceBase;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.IncorrectOperationException;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * A reference from the default value of an enum field to the enum constant it names. The enum
+ * is found by resolving the type of the field.
+ */
+public class ProtoEnumConstantReference extends PsiReferenceBase<ProtoDefaultValue> {
+
+  /**
+   * Returns a reference for the given identifier node of the given default value, or
+   * {@code null} if the identifier is missing.
+   */
+  @Nullable
+  static ProtoEnumConstantReference create(ProtoDefaultValue element,
+      @Nullable ASTNode identifier) {
+    if (identifier == null) {
+      return null;
+    }
+    return new ProtoEnumConstantReference(element, identifier.getTextRange()
+        .shiftRight(-element.getTextRange().getStartOffset()));
+  }
+
+  private ProtoEnumConstantReference(ProtoDefaultValue element, TextRange rangeInElement) {
+    super(element, rangeInElement);
+  }
+
+  @Nullable
+  @Override
+  public PsiElement resolve() {
+    ProtoEnumDefinition enumDefinition = getEnumDefinition();
+    if (enumDefinition == null || enumDefinition.getEnumBody() == null) {
+      return null;
+    }
+    String name = getValue();
+    for (ProtoEnumConstant constant : enumDefinition.getConstants()) {
+      if (name.equals(constant.getName())) {
+        return constant;
+      }
+    }
+    return null;
+  }
+
+  @NotNull
+  @Override
+  public Object[] getVariants() {
+    ProtoEnumDefinition enumDefinition = getEnumDefinition();
+    if (enumDefinition == null || enumDefinition.getEnumBody() == null) {
+      return ArrayUtil.EMPTY_OBJECT_ARRAY;
+    }
+    List<ProtoEnumConstant> constants = enumDefinition.getConstants();
+    return constants.toArray(new Object[constants.size()]);
+  }
+
+  @Override
+  public PsiElement handleElementRename(String newElementName)
+      throws IncorrectOperationException {
+    ProtoTypeNameReference.replaceIdentifier(getElement(), getRangeInElement(), newElementName);
+    return getElement();
+  }
+
+  /**
+   * Returns the enum the field of this default value is declared with, if it resolves.
+   */
+  @Nullable
+  private ProtoEnumDefinition getEnumDefinition() {
+    ProtoProperty property = PsiTreeUtil.getParentOfType(getElement(), ProtoProperty.class);
+    PsiReference typeReference = null;
+    if (property instanceof ProtoEnumProperty) {
+      ProtoEnumPropertyType typeElement = ((ProtoEnumProperty) property).getTypeElement();
+      typeReference = typeElement == null ? null : typeElement.getReference();
+    } else if (property instanceof ProtoUserDefinedProperty) {
+      // Enums of other files are parsed as user-defined types.
+      ProtoUserDefinedPropertyType typeElement = ProtoPsiTools.findDirectChildOfType(property,
+          ProtoUserDefinedPropertyType.class);
+      typeReference = typeElement == null ? null : typeElement.getTypeReferenceElement();
+    }
+    PsiElement resolved = typeReference == null ? null : typeReference.resolve();
+    return resolved instanceof ProtoEnumDefinition ? (ProtoEnumDefinition) resolved : null;
+  }
+}
@@ -17,17 +17,20 @@
 package com.google.protoeditor.psi;
 
 import com.intellij.lang.ASTNode;
+import com.intellij.psi.PsiReference;
 
 public class ProtoEnumPropertyType extends AbstractProtoElement implements ProtoElement {
 
-  private String type;
-
   public ProtoEnumPropertyType(ASTNode astNode) {
     super(astNode);
-    type = astNode.getText();
   }
 
   public String getType() {
-    return type;
+    return getText();
+  }
+
+  @Override
+  public PsiReference getReference() {
+    return ProtoTypeNameReference.getReference(this);
   }
 }
\ No newline at end of file
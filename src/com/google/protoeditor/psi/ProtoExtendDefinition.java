@@ -16,11 +16,57 @@
 
 package com.google.protoeditor.psi;
 
+import com.google.protoeditor.lex.ProtoTokenTypes;
+
 import com.intellij.lang.ASTNode;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiReference;
+
+import org.jetbrains.annotations.Nullable;
 
 public class ProtoExtendDefinition extends AbstractProtoDefinition {
 
   public ProtoExtendDefinition(ASTNode astNode) {
     super(astNode);
   }
+
+  /**
+   * Returns the name of the extended message as written in the definition, or {@code null} if
+   * it is missing.
+   */
+  @Nullable
+  public String getExtendeeName() {
+    ASTNode node = getNode().findChildByType(ProtoTokenTypes.IDENTIFIER);
+    return node == null ? null : node.getText();
+  }
+
+  /**
+   * Returns the qualified name of the extended message. Names that are not qualified are
+   * assumed to be in the package of the file; names are not resolved against other files.
+   */
+  @Nullable
+  public String getQualifiedExtendeeName() {
+    String extendeeName = getExtendeeName();
+    if (extendeeName == null || extendeeName.length() == 0) {
+      return null;
+    }
+    if (extendeeName.startsWith(".")) {
+      return extendeeName.substring(1);
+    }
+    PsiFile psiFile = getContainingFile();
+    String packageName = psiFile instanceof ProtoFile
+        ? ProtoPsiTools.getContainingPackage((ProtoFile) psiFile) : null;
+    if (extendeeName.indexOf('.') >= 0 || packageName == null) {
+      return extendeeName;
+    }
+    return packageName + "." + extendeeName;
+  }
+
+  /**
+   * Returns the reference from the name of the extended message to its definition.
+   */
+  @Override
+  public PsiReference getReference() {
+    return ProtoTypeNameReference.getReference(this);
+  }
 }
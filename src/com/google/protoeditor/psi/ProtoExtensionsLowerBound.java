@@ -17,6 +17,9 @@
 package com.google.protoeditor.psi;
 
 import com.intellij.lang.ASTNode;
+import com.intellij.psi.util.PsiTreeUtil;
+
+import org.jetbrains.annotations.Nullable;
 
 /**
  * ProtoElement that encapsulates the lower bound value in an extensions statement. For instance,
@@ -29,4 +32,19 @@ public class ProtoExtensionsLowerBound extends AbstractProtoElement {
   public ProtoExtensionsLowerBound(ASTNode astNode) {
     super(astNode);
   }
+
+  public
+  @Nullable
+  ProtoAbstractIntegerLiteral getLiteral() {
+    return PsiTreeUtil.getChildOfType(this, ProtoAbstractIntegerLiteral.class);
+  }
+
+  public boolean hasValidValue() {
+    ProtoAbstractIntegerLiteral literal = getLiteral();
+    return literal != null && literal.hasValidValue();
+  }
+
+  public long getValue() {
+    return getLiteral().getIntValue();
+  }
 }
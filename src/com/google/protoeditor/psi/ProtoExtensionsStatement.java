@@ -18,6 +18,8 @@ package com.google.protoeditor.psi;
 
 import com.intellij.lang.ASTNode;
 
+import org.jetbrains.annotations.Nullable;
+
 /**
  * ProtoElement that encapsulates an extensions statement. For instance,
  *
@@ -37,4 +39,26 @@ public class ProtoExtensionsStatement extends AbstractProtoElement {
   public String getType() {
     return type;
   }
+
+  public
+  @Nullable
+  ProtoExtensionsLowerBound getLowerBound() {
+    return ProtoPsiTools.findDirectChildOfType(this, ProtoExtensionsLowerBound.class);
+  }
+
+  public
+  @Nullable
+  ProtoExtensionsUpperBound getUpperBound() {
+    return ProtoPsiTools.findDirectChildOfType(this, ProtoExtensionsUpperBound.class);
+  }
+
+  /**
+   * Returns {@code true} if both bounds are present and have a valid value.
+   */
+  public boolean hasValidBounds() {
+    ProtoExtensionsLowerBound lowerBound = getLowerBound();
+    ProtoExtensionsUpperBound upperBound = getUpperBound();
+    return lowerBound != null && lowerBound.hasValidValue()
+        && upperBound != null && upperBound.hasValidValue();
+  }
 }
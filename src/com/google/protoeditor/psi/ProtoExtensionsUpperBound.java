@@ -16,17 +16,49 @@
 
 package com.google.protoeditor.psi;
 
+import com.google.protoeditor.parsing.ProtoKeywords;
+
 import com.intellij.lang.ASTNode;
+import com.intellij.psi.util.PsiTreeUtil;
+
+import org.jetbrains.annotations.Nullable;
 
 /**
  * ProtoElement that encapsulates the upper bound value in an extensions statement. For instance,
  * the value "199" in the following example :-
  *
  * extensions 100 to 199;
+ *
+ * The upper bound may also be the keyword "max", standing for the largest field number.
  */
 public class ProtoExtensionsUpperBound extends AbstractProtoElement {
 
+  /**
+   * The largest field number, used for the upper bound "max".
+   */
+  public static final long MAX_FIELD_NUMBER = 536870911;
+
   public ProtoExtensionsUpperBound(ASTNode astNode) {
     super(astNode);
   }
+
+  public
+  @Nullable
+  ProtoAbstractIntegerLiteral getLiteral() {
+    return PsiTreeUtil.getChildOfType(this, ProtoAbstractIntegerLiteral.class);
+  }
+
+  public boolean isMax() {
+    return getLiteral() == null && ProtoKeywords.MAX == ProtoKeywords.from(getText().trim());
+  }
+
+  public boolean hasValidValue() {
+    ProtoAbstractIntegerLiteral literal = getLiteral();
+    return literal == null ? isMax() : literal.hasValidValue();
+  }
+
+  public long getValue() {
+    ProtoAbstractIntegerLiteral literal = getLiteral();
+    return literal == null ? MAX_FIELD_NUMBER : literal.getIntValue();
+  }
 }
@@ -20,11 +20,13 @@ import com.google.protoeditor.ProtoFileType;
 
 import com.intellij.extapi.psi.PsiFileBase;
 import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.psi.FileViewProvider;
 import com.intellij.psi.PsiErrorElement;
 import com.intellij.psi.PsiImportList;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -61,6 +63,21 @@ public class ProtoFile extends PsiFileBase implements ProtoElement {
     return ProtoPsiTools.findDirectChildrenOfType(this, ProtoFileOptionStatement.class);
   }
 
+  /**
+   * Returns the last statement setting the file option with the given name, or {@code null}
+   * if the option is not set.
+   */
+  @Nullable
+  public ProtoFileOptionStatement getFileOption(String name) {
+    ProtoFileOptionStatement result = null;
+    for (ProtoFileOptionStatement statement : getFileOptionStatements()) {
+      if (name.equals(statement.getName())) {
+        result = statement;
+      }
+    }
+    return result;
+  }
+
   public List<ProtoMessageDefinition> getMessageDefinitions() {
     return ProtoPsiTools.findDirectChildrenOfType(this, ProtoMessageDefinition.class);
   }
@@ -75,6 +92,7 @@ public class ProtoFile extends PsiFileBase implements ProtoElement {
 
   public ProtoMessageDefinition getMessageDefinition(String referencedName) {
     for (ProtoMessageDefinition def : getMessageDefinitions()) {
+      ProgressManager.checkCanceled();
       String name = def.getName();
       if (name == null) {
         continue;
@@ -17,6 +17,9 @@
 package com.google.protoeditor.psi;
 
 import com.intellij.lang.ASTNode;
+import com.intellij.openapi.util.text.StringUtil;
+
+import org.jetbrains.annotations.Nullable;
 
 public class ProtoImportStatement extends AbstractProtoElement implements ProtoElement {
 
@@ -27,4 +30,17 @@ public class ProtoImportStatement extends AbstractProtoElement implements ProtoE
   public ProtoImportValue getProtoImportValue() {
     return ProtoPsiTools.findDirectChildOfType(this, ProtoImportValue.class);
   }
+
+  /**
+   * Returns the imported path without the surrounding quotes, or {@code null} if it is missing.
+   */
+  @Nullable
+  public String getImportedPath() {
+    ProtoImportValue value = getProtoImportValue();
+    if (value == null) {
+      return null;
+    }
+    String path = StringUtil.stripQuotesAroundValue(value.getText());
+    return path.isEmpty() ? null : path;
+  }
 }
\ No newline at end of file
@@ -17,7 +17,6 @@
 package com.google.protoeditor.psi;
 
 import com.intellij.ide.structureView.impl.common.PsiTreeElementBase;
-import com.intellij.psi.util.PsiTreeUtil;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -36,33 +35,13 @@ class ProtoItemPresentation extends PsiTreeElementBase {
   }
 
   public String getLocationString() {
-    StringBuffer buf = new StringBuffer(20);
-    if (!(protoElement instanceof ProtoToplevelDefinition)) {
-      ProtoElement owner = getParentDefBodyOwner(protoElement);
-      if (owner != null) {
-        buf.append(owner.getName());
-        ProtoElement parent = getParentDefBodyOwner(owner);
-        while (parent != null) {
-          buf.insert(0, ".");
-          buf.insert(0, parent.getName());
-          parent = getParentDefBodyOwner(parent);
-        }
-        buf.insert(0, "in ");
-      }
+    String fileName = protoElement.getContainingFile().getName();
+    ProtoElementWithName scope = ProtoPsiTools.getNameScope(protoElement);
+    String scopeName = scope == null ? null : ProtoPsiTools.getNestedName(scope);
+    if (scopeName == null || protoElement instanceof ProtoToplevelDefinition) {
+      return "(" + fileName + ")";
     }
-    boolean hadSomething = buf.length() != 0;
-    buf.insert(0, "(");
-    if (hadSomething) {
-      buf.append(" in ");
-    }
-    buf.append(protoElement.getContainingFile().getName());
-    buf.append(")");
-    return buf.toString();
-  }
-
-  private ProtoElement getParentDefBodyOwner(ProtoElement el) {
-    return PsiTreeUtil.getParentOfType(el, ProtoDefinitionBodyOwner.class,
-                                       ProtoEnumDefinition.class);
+    return "(in " + scopeName + " in " + fileName + ")";
   }
 
   public String getPresentableText() {
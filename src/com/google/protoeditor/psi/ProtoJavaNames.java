@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.psi;
+
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiTreeUtil;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Names of the Java classes that protoc generates for the definitions of a proto file.
+ * <p>
+ * The names follow the {@code java_package}, {@code java_outer_classname} and
+ * {@code java_multiple_files} file options: definitions are nested in the outer class of the
+ * file unless multiple files are requested, in which case top-level definitions become
+ * top-level classes. The outer class defaults to the camel-cased name of the file.
+ */
+public class ProtoJavaNames {
+
+  private static final Key<CachedValue<String>> JAVA_NAME_KEY = Key.create("PROTO_JAVA_NAME");
+
+  /**
+   * Returns {@code true} if protoc generates a Java class for the given element, i.e. if it is
+   * a message, group, enum or service.
+   */
+  public static boolean hasJavaClass(Object element) {
+    return element instanceof ProtoMessageDefinition || element instanceof ProtoGroupDefinition
+        || element instanceof ProtoEnumDefinition || element instanceof ProtoServiceDefinition;
+  }
+
+  /**
+   * Returns the innermost message, group, enum or service containing the given element, or the
+   * element itself if it is one.
+   */
+  @Nullable
+  public static ProtoElementWithName getEnclosingDefinition(@Nullable PsiElement element) {
+    return (ProtoElementWithName) PsiTreeUtil.getNonStrictParentOfType(element,
+        ProtoMessageDefinition.class, ProtoGroupDefinition.class, ProtoEnumDefinition.class,
+        ProtoServiceDefinition.class);
+  }
+
+  /**
+   * Returns the fully qualified name of the Java class generated for the given message, group,
+   * enum or service, or {@code null} if it has no name. The result is cached until the
+   * containing file changes.
+   */
+  @Nullable
+  public static String getJavaClassName(final ProtoElementWithName element) {
+    return CachedValuesManager.getManager(element.getProject()).getCachedValue(element,
+        JAVA_NAME_KEY, new CachedValueProvider<String>() {
+          @Override
+          public Result<String> compute() {
+            return Result.create(computeJavaClassName(element), element.getContainingFile());
+          }
+        }, false);
+  }
+
+  @Nullable
+  private static String computeJavaClassName(ProtoElementWithName element) {
+    String nestedName = ProtoPsiTools.getNestedName(element);
+    PsiFile psiFile = element.getContainingFile();
+    if (nestedName == null || !(psiFile instanceof ProtoFile)) {
+      return null;
+    }
+    ProtoFile file = (ProtoFile) psiFile;
+    String prefix = getJavaPackage(file);
+    if (!isMultipleFiles(file)) {
+      String outerClassName = getOuterClassName(file);
+      prefix = prefix.isEmpty() ? outerClassName : prefix + "." + outerClassName;
+    }
+    return prefix.isEmpty() ? nestedName : prefix + "." + nestedName;
+  }
+
+  /**
+   * Returns the Java package of the classes generated for the given file: the
+   * {@code java_package} option, or else the proto package, or else the empty string.
+   */
+  public static String getJavaPackage(ProtoFile file) {
+    String javaPackage = getStringOption(file, "java_package");
+    if (javaPackage != null) {
+      return javaPackage;
+    }
+    String protoPackage = ProtoPsiTools.getContainingPackage(file);
+    return protoPackage == null ? "" : protoPackage;
+  }
+
+  /**
+   * Returns the simple name of the outer class generated for the given file.
+   */
+  public static String getOuterClassName(ProtoFile file) {
+    String outerClassName = getStringOption(file, "java_outer_classname");
+    if (outerClassName != null) {
+      return outerClassName;
+    }
+    return toCamelCase(FileUtil.getNameWithoutExtension(file.getName()));
+  }
+
+  public static boolean isMultipleFiles(ProtoFile file) {
+    ProtoFileOptionStatement option = file.getFileOption("java_multiple_files");
+    ProtoLiteral value = option == null ? null : option.getValueLiteral();
+    return value instanceof ProtoBooleanLiteral && "true".equals(value.getText());
+  }
+
+  /**
+   * Converts a file name to a class name the way protoc does: letters following anything
+   * but a letter are capitalized, and everything but letters and digits is dropped.
+   */
+  static String toCamelCase(String name) {
+    StringBuilder result = new StringBuilder(name.length());
+    boolean capitalizeNext = true;
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c >= 'a' && c <= 'z') {
+        result.append(capitalizeNext ? Character.toUpperCase(c) : c);
+        capitalizeNext = false;
+      } else if (c >= 'A' && c <= 'Z') {
+        result.append(c);
+        capitalizeNext = false;
+      } else if (c >= '0' && c <= '9') {
+        result.append(c);
+        capitalizeNext = true;
+      } else {
+        capitalizeNext = true;
+      }
+    }
+    return result.toString();
+  }
+
+  @Nullable
+  private static String getStringOption(ProtoFile file, String name) {
+    ProtoFileOptionStatement option = file.getFileOption(name);
+    ProtoLiteral value = option == null ? null : option.getValueLiteral();
+    if (value instanceof ProtoStringLiteral) {
+      String stringValue = ((ProtoStringLiteral) value).getStringValue();
+      return stringValue.isEmpty() ? null : stringValue;
+    }
+    return null;
+  }
+}
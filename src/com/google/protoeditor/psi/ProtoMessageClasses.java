@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.psi;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.UserDataHolder;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.searches.ClassInheritorsSearch;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.util.Processor;
+
+import java.util.Collection;
+
+/**
+ * The Java classes generated from proto messages that are visible from a module, indexed by
+ * short name.
+ * <p>
+ * The classes are found with one inheritors search per message base class and cached until
+ * the Java structure or the roots of the project change, so resolving a Java-backed message
+ * type is a map lookup instead of a walk up the superclasses of every class in the candidate
+ * packages.
+ * Files outside of any module use a project-wide set.
+ */
+public class ProtoMessageClasses {
+
+  /**
+   * Base classes of generated message classes: the legacy protocol message and protobuf's
+   * generated message.
+   */
+  static final String[] MESSAGE_BASE_CLASSES = {
+      "com.google.io.protocol.ProtocolMessage",
+      "com.google.protobuf.GeneratedMessage"
+  };
+
+  private static final Key<CachedValue<ProtoMessageClasses>> CLASSES_KEY =
+      Key.create("PROTO_MESSAGE_CLASSES");
+
+  /**
+   * Returns the message classes visible from the module of the given element.
+   */
+  public static ProtoMessageClasses getInstance(PsiElement context) {
+    final Project project = context.getProject();
+    final Module module = ModuleUtilCore.findModuleForPsiElement(context);
+    UserDataHolder holder = module != null ? module : project;
+    return CachedValuesManager.getManager(project).getCachedValue(holder, CLASSES_KEY,
+        new CachedValueProvider<ProtoMessageClasses>() {
+          @Override
+          public Result<ProtoMessageClasses> compute() {
+            GlobalSearchScope scope = module != null
+                ? GlobalSearchScope.moduleWithDependenciesAndLibrariesScope(module)
+                : GlobalSearchScope.allScope(project);
+            return Result.create(build(project, scope),
+                PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT,
+                ProjectRootManager.getInstance(project));
+          }
+        }, false);
+  }
+
+  private static ProtoMessageClasses build(Project project, GlobalSearchScope scope) {
+    final ImmutableListMultimap.Builder<String, PsiClass> byName =
+        ImmutableListMultimap.builder();
+    JavaPsiFacade facade = JavaPsiFacade.getInstance(project);
+    for (String baseClassName : MESSAGE_BASE_CLASSES) {
+      PsiClass baseClass = facade.findClass(baseClassName, scope);
+      if (baseClass == null) {
+        continue;
+      }
+      ClassInheritorsSearch.search(baseClass, scope, true).forEach(new Processor<PsiClass>() {
+        @Override
+        public boolean process(PsiClass cls) {
+          ProgressManager.checkCanceled();
+          String name = cls.getName();
+          if (name != null && cls.getQualifiedName() != null) {
+            byName.put(name, cls);
+          }
+          return true;
+        }
+      });
+    }
+    return new ProtoMessageClasses(byName.build());
+  }
+
+  private final ImmutableListMultimap<String, PsiClass> byName;
+
+  private ProtoMessageClasses(ImmutableListMultimap<String, PsiClass> byName) {
+    this.byName = byName;
+  }
+
+  /**
+   * Returns the message classes with the given short name.
+   */
+  public ImmutableList<PsiClass> getClassesByName(String name) {
+    return byName.get(name);
+  }
+
+  /**
+   * Returns all message classes.
+   */
+  public Collection<PsiClass> getAllClasses() {
+    return byName.values();
+  }
+}
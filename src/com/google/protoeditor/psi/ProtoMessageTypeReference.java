@@ -18,17 +18,19 @@ package com.google.protoeditor.psi;
 
 import com.google.protoeditor.ProtoFileType;
 import com.google.protoeditor.lex.ProtoTokenTypes;
+import com.google.protoeditor.metrics.ProtoMetrics;
 
 import com.intellij.lang.ASTNode;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.roots.ContentIterator;
 import com.intellij.openapi.roots.ModuleRootManager;
 import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.psi.JavaPsiFacade;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiElement;
@@ -36,15 +38,15 @@ import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiImportList;
 import com.intellij.psi.PsiImportStatement;
 import com.intellij.psi.PsiManager;
-import com.intellij.psi.PsiPackage;
+import com.intellij.psi.PsiNamedElement;
 import com.intellij.psi.PsiReference;
-import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.IncorrectOperationException;
 
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -53,9 +55,6 @@ import java.util.Set;
 public class ProtoMessageTypeReference extends AbstractProtoElement
     implements ProtoElement, PsiReference {
 
-  private static final String PROTOCOL_MESSAGE_FQN
-      = "com.google.io.protocol.ProtocolMessage";
-
   public ProtoMessageTypeReference(ASTNode astNode) {
     super(astNode);
   }
@@ -92,16 +91,40 @@ public class ProtoMessageTypeReference extends AbstractProtoElement
       return null;
     }
 
-    SingleElementResolver resolver = new SingleElementResolver(
-        referencedName);
-    resolver.find();
-    return resolver.getElement();
+    long start = ProtoMetrics.RESOLVE.start();
+    try {
+      // Proto types are resolved with the scoping rules of protoc, through the symbol index;
+      // only names that are not proto types fall back to scanning for message classes.
+      PsiElement element = ProtoTypeResolver.resolve(this, referencedName);
+      if (element != null) {
+        return element;
+      }
+      SingleElementResolver resolver = new SingleElementResolver(
+          referencedName);
+      resolver.find(PsiTreeUtil.getParentOfType(this, ProtoFile.class));
+      return resolver.getElement();
+    } finally {
+      ProtoMetrics.RESOLVE.stop(start);
+    }
   }
 
   //TODO: Investigate if Safe Delete will correctly find usages.
   public Object[] getVariants() {
+    PsiFile file = getContainingFile().getOriginalFile();
+    if (!(file instanceof ProtoFile)) {
+      return computeVariants(PsiTreeUtil.getParentOfType(this, ProtoFile.class));
+    }
+    return ProtoVariantsCache.getInstance((ProtoFile) file).getVariants(this);
+  }
+
+  /**
+   * Returns the messages and message classes visible from the message type references of the
+   * given file. This iterates all modules and the imported Java packages, so
+   * {@link #getVariants()} runs it in the background through {@link ProtoVariantsCache}.
+   */
+  static Object[] computeVariants(@Nullable ProtoFile file) {
     PossibleResolutionsFinder finder = new PossibleResolutionsFinder();
-    finder.find();
+    finder.find(file);
     Set<ProtoMessageDefinition> defs = finder.getDefResolutions();
     Set<PsiClass> classes = finder.getClassResolutions();
     List<PsiElement> els = new ArrayList<PsiElement>(defs.size() + classes.size());
@@ -120,17 +143,14 @@ public class ProtoMessageTypeReference extends AbstractProtoElement
     return els.toArray(new Object[els.size()]);
   }
 
-  private boolean isProtoMessageSubclass(PsiClass cls) {
-    return cls != null && ProtoPsiTools.isSuperclass(cls, PROTOCOL_MESSAGE_FQN);
-  }
-
   public String getCanonicalText() {
     return getReferencedName();
   }
 
   public PsiElement handleElementRename(String newElementName)
       throws IncorrectOperationException {
-    setReferencedName(newElementName);
+    String name = getReferencedName();
+    setReferencedName(name.substring(0, name.lastIndexOf('.') + 1) + newElementName);
     return this;
   }
 
@@ -155,13 +175,17 @@ public class ProtoMessageTypeReference extends AbstractProtoElement
     if (oldNode == null) {
       throw new IncorrectOperationException("no identifier node");
     }
-    ASTNode newNode = ProtoChangeTools.createIdentifierFromText(
-        getProject(), name);
-    oldNode.getTreeParent().replaceChild(oldNode, newNode);
+    ProtoChangeTools.replaceIdentifierText(oldNode, name);
   }
 
   @SuppressWarnings({"SimplifiableConditionalExpression"})
   public boolean isReferenceTo(PsiElement element) {
+    // Rename and find usages check every occurrence of the word; skip resolving those that
+    // cannot refer to the element because the last segment of the name differs.
+    if (element instanceof PsiNamedElement && !StringUtil.getShortName(getReferencedName())
+        .equals(((PsiNamedElement) element).getName())) {
+      return false;
+    }
     PsiElement resolved = resolve();
     return resolved == null ? false : resolved.equals(element);
   }
@@ -170,22 +194,21 @@ public class ProtoMessageTypeReference extends AbstractProtoElement
     return false;
   }
 
-  private abstract class ResolutionFinder {
+  private abstract static class ResolutionFinder {
 
-    public void find() {
-      ProtoFile protoFile = PsiTreeUtil.getParentOfType(
-          ProtoMessageTypeReference.this, ProtoFile.class);
+    public void find(@Nullable ProtoFile protoFile) {
       if (protoFile == null) {
         return;
       }
       for (ProtoMessageDefinition def : protoFile
           .getMessageDefinitions()) {
+        ProgressManager.checkCanceled();
         if (!handleDef(def)) {
           return;
         }
       }
 
-      PsiManager mgr = getManager();
+      PsiManager mgr = protoFile.getManager();
       final String ourPkgName = ProtoPsiTools.getContainingPackage(protoFile);
       final Set<String> pkgNames = new LinkedHashSet<String>();
       final Set<String> clsNames = new LinkedHashSet<String>();
@@ -206,10 +229,11 @@ public class ProtoMessageTypeReference extends AbstractProtoElement
       }
 
       final FileDocumentManager docMgr = FileDocumentManager.getInstance();
-      final PsiDocumentManager psiMgr = PsiDocumentManager.getInstance(getProject());
+      final PsiDocumentManager psiMgr = PsiDocumentManager.getInstance(protoFile.getProject());
 
-      for (Module module : ModuleManager.getInstance(getProject())
+      for (Module module : ModuleManager.getInstance(protoFile.getProject())
           .getModules()) {
+        ProgressManager.checkCanceled();
         ModuleRootManager mrm = ModuleRootManager.getInstance(module);
         MyContentIterator iterator = new MyContentIterator(
             docMgr, psiMgr, pkgNames, clsNames);
@@ -219,47 +243,25 @@ public class ProtoMessageTypeReference extends AbstractProtoElement
         }
       }
 
-      final JavaPsiFacade javaPsiMgr = JavaPsiFacade.getInstance(getProject());
-      GlobalSearchScope scope = getResolveScope();
-      if (ourPkgName != null) {
-        PsiPackage psiPackage = javaPsiMgr.findPackage(ourPkgName);
-        if (psiPackage != null) {
-          for (PsiClass cls : psiPackage.getClasses(scope)) {
-            if (isProtoMessageSubclass(cls)) {
-              if (!handleClass(cls)) {
-                return;
-              }
-            }
+      for (PsiClass cls : getCandidateClasses(ProtoMessageClasses.getInstance(protoFile))) {
+        ProgressManager.checkCanceled();
+        String qualifiedName = cls.getQualifiedName();
+        if (qualifiedName != null
+            && (pkgNames.contains(StringUtil.getPackageName(qualifiedName))
+                || clsNames.contains(qualifiedName))) {
+          if (!handleClass(cls)) {
+            return;
           }
         }
       }
+    }
 
-      for (PsiImportList list : protoFile.getImports()) {
-        for (PsiImportStatement statement : list
-            .getImportStatements()) {
-          PsiElement resolved = statement.resolve();
-          if (resolved instanceof PsiPackage) {
-            PsiPackage psiPackage = (PsiPackage) resolved;
-
-            for (PsiClass cls : psiPackage.getClasses(scope)) {
-              if (isProtoMessageSubclass(cls)) {
-                if (!handleClass(cls)) {
-                  return;
-                }
-              }
-            }
-          } else if (resolved instanceof PsiClass) {
-            PsiClass psiClass = (PsiClass) resolved;
-
-            clsNames.add(psiClass.getQualifiedName());
-            if (isProtoMessageSubclass(psiClass)) {
-              if (!handleClass(psiClass)) {
-                return;
-              }
-            }
-          }
-        }
-      }
+    /**
+     * Returns the message classes that may be handled; only those in the package of the file
+     * or imported by it are passed to {@link #handleClass(PsiClass)}.
+     */
+    protected Collection<PsiClass> getCandidateClasses(ProtoMessageClasses messageClasses) {
+      return messageClasses.getAllClasses();
     }
 
     protected abstract boolean handleDef(ProtoMessageDefinition def);
@@ -284,6 +286,7 @@ public class ProtoMessageTypeReference extends AbstractProtoElement
       }
 
       public boolean processFile(VirtualFile fileOrDir) {
+        ProgressManager.checkCanceled();
         if (!(fileOrDir.getFileType() instanceof ProtoFileType)) {
           return true;
         }
@@ -309,6 +312,7 @@ public class ProtoMessageTypeReference extends AbstractProtoElement
           if (pkgNames.contains(referencedPackageName)) {
             for (ProtoMessageDefinition def : protoFile
                 .getMessageDefinitions()) {
+              ProgressManager.checkCanceled();
               if (!handleDef(def)) {
                 stopped = true;
                 return false;
@@ -317,6 +321,7 @@ public class ProtoMessageTypeReference extends AbstractProtoElement
           } else {
             for (ProtoMessageDefinition def : protoFile
                 .getMessageDefinitions()) {
+              ProgressManager.checkCanceled();
               if (clsNames.contains(referencedPackageName + "."
                                     + def.getName())) {
                 if (!handleDef(def)) {
@@ -336,7 +341,7 @@ public class ProtoMessageTypeReference extends AbstractProtoElement
     }
   }
 
-  private class PossibleResolutionsFinder extends ResolutionFinder {
+  private static class PossibleResolutionsFinder extends ResolutionFinder {
 
     private Set<ProtoMessageDefinition> defResolutions
         = new LinkedHashSet<ProtoMessageDefinition>();
@@ -361,7 +366,7 @@ public class ProtoMessageTypeReference extends AbstractProtoElement
     }
   }
 
-  private class SingleElementResolver extends ResolutionFinder {
+  private static class SingleElementResolver extends ResolutionFinder {
 
     private String name;
     private PsiElement element = null;
@@ -384,6 +389,11 @@ public class ProtoMessageTypeReference extends AbstractProtoElement
       }
     }
 
+    @Override
+    protected Collection<PsiClass> getCandidateClasses(ProtoMessageClasses messageClasses) {
+      return messageClasses.getClassesByName(name);
+    }
+
     protected boolean handleClass(PsiClass cls) {
       String name = cls.getName();
       if (name != null && name.equals(this.name)) {
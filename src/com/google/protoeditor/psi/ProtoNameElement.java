@@ -43,8 +43,7 @@ public class ProtoNameElement
       throw new IncorrectOperationException("no name element");
     }
 
-    nameNode.getTreeParent().replaceChild(nameNode, ProtoChangeTools
-        .createIdentifierFromText(getProject(), name));
+    ProtoChangeTools.replaceIdentifierText(nameNode, name);
   }
 
   @Nullable
@@ -27,4 +27,10 @@ public interface ProtoNamedElement extends ProtoElement, PsiNamedElement, ProtoE
 
   @Nullable
   ProtoNameElement getNameElement();
+
+  /**
+   * Returns the fully qualified name of this element, e.g. {@code foo.bar.Outer.Inner.field}.
+   */
+  @Nullable
+  String getQualifiedName();
 }
@@ -50,6 +50,11 @@ public class ProtoNamedElementImpl extends AbstractProtoElement implements
     return this;
   }
 
+  @Nullable
+  public String getQualifiedName() {
+    return ProtoPsiTools.getQualifiedName(this);
+  }
+
   public ItemPresentation getPresentation() {
     return new ProtoItemPresentation(this);
   }
@@ -16,9 +16,16 @@
 
 package com.google.protoeditor.psi;
 
+import com.google.protoeditor.metrics.ProtoMetrics;
+
+import com.intellij.openapi.util.Key;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiTreeUtil;
 
 import org.jetbrains.annotations.Nullable;
 
@@ -27,6 +34,11 @@ import java.util.List;
 
 public class ProtoPsiTools {
 
+  private static final Key<CachedValue<String>> NESTED_NAME_KEY
+      = Key.create("PROTO_NESTED_NAME");
+  private static final Key<CachedValue<String>> QUALIFIED_NAME_KEY
+      = Key.create("PROTO_QUALIFIED_NAME");
+
   /**
    * Checks if element belongs to a proto file with proto2 syntax.
    *
@@ -90,4 +102,73 @@ public class ProtoPsiTools {
     }
     return false;
   }
+
+  /**
+   * Returns the closest enclosing definition that contributes a segment to the qualified name
+   * of the given element, i.e. a message, group, enum or service. Extend blocks are skipped: as
+   * in protoc, extension fields are named in the scope in which the block is declared.
+   */
+  @Nullable
+  public static ProtoElementWithName getNameScope(PsiElement element) {
+    PsiElement scope = element;
+    do {
+      scope = PsiTreeUtil.getParentOfType(scope, ProtoDefinitionBodyOwner.class,
+          ProtoEnumDefinition.class, ProtoServiceDefinition.class);
+    } while (scope instanceof ProtoExtendDefinition);
+    return (ProtoElementWithName) scope;
+  }
+
+  /**
+   * Returns the dotted name of the given element relative to its file's package, for instance
+   * {@code Outer.Inner.field}. The result is cached until the containing file changes, so
+   * nested elements reuse the names already computed for their enclosing definitions.
+   */
+  @Nullable
+  public static String getNestedName(final ProtoElementWithName element) {
+    return getCachedName(element, NESTED_NAME_KEY, new CachedValueProvider<String>() {
+      @Override
+      public Result<String> compute() {
+        ProtoMetrics.NAME_CACHE.miss();
+        String name = element.getName();
+        if (name != null) {
+          ProtoElementWithName scope = getNameScope(element);
+          String scopeName = scope == null ? null : getNestedName(scope);
+          if (scopeName != null) {
+            name = scopeName + "." + name;
+          }
+        }
+        return Result.create(name, element.getContainingFile());
+      }
+    });
+  }
+
+  /**
+   * Returns the fully qualified name of the given element, i.e. its nested name prefixed with
+   * the package of the containing file, if any.
+   */
+  @Nullable
+  public static String getQualifiedName(final ProtoElementWithName element) {
+    return getCachedName(element, QUALIFIED_NAME_KEY, new CachedValueProvider<String>() {
+      @Override
+      public Result<String> compute() {
+        ProtoMetrics.NAME_CACHE.miss();
+        String name = getNestedName(element);
+        PsiFile psiFile = element.getContainingFile();
+        if (name != null && psiFile instanceof ProtoFile) {
+          String pkgName = getContainingPackage((ProtoFile) psiFile);
+          if (pkgName != null) {
+            name = pkgName + "." + name;
+          }
+        }
+        return Result.create(name, psiFile);
+      }
+    });
+  }
+
+  private static String getCachedName(ProtoElementWithName element,
+      Key<CachedValue<String>> key, CachedValueProvider<String> provider) {
+    ProtoMetrics.NAME_CACHE.request();
+    return CachedValuesManager.getManager(element.getProject())
+        .getCachedValue(element, key, provider, false);
+  }
 }
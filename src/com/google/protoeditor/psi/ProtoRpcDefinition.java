@@ -17,10 +17,13 @@
 package com.google.protoeditor.psi;
 
 import com.intellij.lang.ASTNode;
+import com.intellij.navigation.ItemPresentation;
 import com.intellij.psi.PsiElement;
 import com.intellij.util.Icons;
 import com.intellij.util.IncorrectOperationException;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.util.List;
 
 import javax.swing.*;
@@ -42,6 +45,11 @@ public class ProtoRpcDefinition extends AbstractProtoElement
     return this;
   }
 
+  @Nullable
+  public String getQualifiedName() {
+    return ProtoPsiTools.getQualifiedName(this);
+  }
+
   public int getTextOffset() {
     ProtoNameElement nameElement = getNameElement();
     return nameElement == null ? super.getTextOffset() : nameElement.getTextOffset();
@@ -67,6 +75,10 @@ public class ProtoRpcDefinition extends AbstractProtoElement
     return Icons.METHOD_ICON;
   }
 
+  public ItemPresentation getPresentation() {
+    return new ProtoItemPresentation(this);
+  }
+
   public List<ProtoOption> getOptions() {
     return getRpcBody().getOptions();
   }
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.psi;
+
+import com.google.protoeditor.lex.ProtoTokenTypes;
+
+import com.intellij.lang.ASTNode;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiNamedElement;
+import com.intellij.psi.PsiReferenceBase;
+import com.intellij.psi.impl.source.resolve.ResolveCache;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.IncorrectOperationException;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A reference from a type name, e.g. the type of a field or the target of an {@code extend}
+ * block, to the message, group or enum it names. Names may be qualified; renaming the target
+ * only replaces the last segment of the name.
+ * <p>
+ * Results are kept in the {@link ResolveCache}, so highlighting and find usages resolve each
+ * reference once per modification. The cache is keyed on the reference object, so the reference
+ * of an element is itself cached until its file changes.
+ */
+public class ProtoTypeNameReference extends PsiReferenceBase<PsiElement> {
+
+  private static final ResolveCache.AbstractResolver<ProtoTypeNameReference, PsiElement>
+      RESOLVER = new ResolveCache.AbstractResolver<ProtoTypeNameReference, PsiElement>() {
+        @Override
+        public PsiElement resolve(ProtoTypeNameReference reference, boolean incompleteCode) {
+          return ProtoTypeResolver.resolve(reference.getElement(), reference.getValue());
+        }
+      };
+
+  private static final Key<CachedValue<ProtoTypeNameReference>> REFERENCE_KEY =
+      Key.create("PROTO_TYPE_NAME_REFERENCE");
+
+  /**
+   * Returns the reference for the identifier child of the given element, or {@code null} if the
+   * identifier is missing.
+   */
+  @Nullable
+  static ProtoTypeNameReference getReference(final PsiElement element) {
+    return CachedValuesManager.getManager(element.getProject()).getCachedValue(element,
+        REFERENCE_KEY, new CachedValueProvider<ProtoTypeNameReference>() {
+          @Override
+          public Result<ProtoTypeNameReference> compute() {
+            return Result.create(create(element), element.getContainingFile());
+          }
+        }, false);
+  }
+
+  @Nullable
+  private static ProtoTypeNameReference create(PsiElement element) {
+    ASTNode identifier = element.getNode().findChildByType(ProtoTokenTypes.IDENTIFIER);
+    if (identifier == null) {
+      return null;
+    }
+    return new ProtoTypeNameReference(element, identifier.getTextRange()
+        .shiftRight(-element.getTextRange().getStartOffset()));
+  }
+
+  private ProtoTypeNameReference(PsiElement element, TextRange rangeInElement) {
+    super(element, rangeInElement);
+  }
+
+  @Nullable
+  @Override
+  public PsiElement resolve() {
+    return ResolveCache.getInstance(getElement().getProject())
+        .resolveWithCaching(this, RESOLVER, false, false);
+  }
+
+  @NotNull
+  @Override
+  public Object[] getVariants() {
+    // Type names are completed by ProtoCompletionContributor from the symbol index.
+    return ArrayUtil.EMPTY_OBJECT_ARRAY;
+  }
+
+  @Override
+  public boolean isReferenceTo(PsiElement element) {
+    if (element instanceof PsiNamedElement && !StringUtil.getShortName(getValue())
+        .equals(((PsiNamedElement) element).getName())) {
+      return false;
+    }
+    return super.isReferenceTo(element);
+  }
+
+  @Override
+  public PsiElement handleElementRename(String newElementName)
+      throws IncorrectOperationException {
+    String name = getValue();
+    replaceIdentifier(getElement(), getRangeInElement(),
+        name.substring(0, name.lastIndexOf('.') + 1) + newElementName);
+    return getElement();
+  }
+
+  /**
+   * Replaces the identifier at the given range of the element with the given text.
+   */
+  static void replaceIdentifier(PsiElement element, TextRange rangeInElement, String text)
+      throws IncorrectOperationException {
+    PsiElement identifier = element.findElementAt(rangeInElement.getStartOffset());
+    if (identifier == null) {
+      throw new IncorrectOperationException("no identifier node");
+    }
+    ProtoChangeTools.replaceIdentifierText(identifier.getNode(), text);
+  }
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.psi;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.protoeditor.index.ProtoSymbolIndex;
+import com.google.protoeditor.index.ProtoSymbolIndexLookup;
+
+import com.intellij.navigation.NavigationItem;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.Processor;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves type names used in proto files to the messages, groups and enums they refer to,
+ * following the scoping rules of protoc.
+ * <p>
+ * The first segment of a relative name is looked up in the enclosing definitions, innermost
+ * first, and then at the top level of the file; the remaining segments must then name nested
+ * definitions. Names not defined in the file are looked up in the symbol index by their
+ * simple name, and matched against the qualified names obtained by prefixing the name with the
+ * package of the file and each of its parent packages, longest first. Only the definitions
+ * visible from the file are considered: those of the files it imports, directly or
+ * transitively, and of its package and its parent packages, as given by {@link ProtoUseScope}.
+ * The files of other definitions are skipped before they are parsed.
+ */
+class ProtoTypeResolver {
+
+  /**
+   * Returns the message, group or enum the given type name refers to when used at the given
+   * element, or {@code null} if it cannot be resolved.
+   */
+  @Nullable
+  static PsiElement resolve(PsiElement context, String typeName) {
+    if (typeName.isEmpty()) {
+      return null;
+    }
+    PsiFile psiFile = context.getContainingFile();
+    if (!(psiFile instanceof ProtoFile)) {
+      return null;
+    }
+    ProtoFile file = (ProtoFile) psiFile;
+    String packageName = ProtoPsiTools.getContainingPackage(file);
+    if (typeName.startsWith(".")) {
+      return findQualified(file, packageName, ImmutableList.of(typeName.substring(1)));
+    }
+    List<String> segments = StringUtil.split(typeName, ".");
+    if (segments.isEmpty()) {
+      return null;
+    }
+    for (PsiElement scope = ProtoPsiTools.getNameScope(context); scope != null;
+        scope = ProtoPsiTools.getNameScope(scope)) {
+      PsiElement first = findTypeDefinition(scope, segments.get(0));
+      if (first != null) {
+        return findNested(first, segments);
+      }
+    }
+    PsiElement first = findTypeDefinition(file, segments.get(0));
+    if (first != null) {
+      return findNested(first, segments);
+    }
+    List<String> candidates = Lists.newArrayList();
+    for (String prefix = packageName; prefix != null;
+        prefix = prefix.indexOf('.') < 0 ? null : StringUtil.getPackageName(prefix)) {
+      candidates.add(prefix + "." + typeName);
+    }
+    candidates.add(typeName);
+    return findQualified(file, packageName, candidates);
+  }
+
+  /**
+   * Returns the type whose qualified name comes first in the candidates, looking in the given
+   * file before other files.
+   */
+  @Nullable
+  private static PsiElement findQualified(ProtoFile file, @Nullable String packageName,
+      List<String> candidates) {
+    String packagePrefix = packageName == null ? "" : packageName + ".";
+    for (String candidate : candidates) {
+      if (candidate.startsWith(packagePrefix)) {
+        List<String> segments =
+            StringUtil.split(candidate.substring(packagePrefix.length()), ".");
+        PsiElement first = segments.isEmpty() ? null : findTypeDefinition(file, segments.get(0));
+        PsiElement element = first == null ? null : findNested(first, segments);
+        if (element != null) {
+          return element;
+        }
+      }
+    }
+    return findInIndex(file, candidates);
+  }
+
+  /**
+   * Returns {@code true} if the given element defines a type, i.e. if it is a message, group
+   * or enum.
+   */
+  static boolean isTypeDefinition(PsiElement element) {
+    return element instanceof ProtoMessageDefinition || element instanceof ProtoGroupDefinition
+        || element instanceof ProtoEnumDefinition;
+  }
+
+  @Nullable
+  private static PsiElement findNested(PsiElement definition, List<String> segments) {
+    PsiElement current = definition;
+    for (int i = 1; i < segments.size() && current != null; i++) {
+      current = findTypeDefinition(current, segments.get(i));
+    }
+    return current;
+  }
+
+  /**
+   * Returns the type defined directly in the given file or definition with the given name.
+   */
+  @Nullable
+  private static PsiElement findTypeDefinition(PsiElement scope, String name) {
+    PsiElement container = scope;
+    if (scope instanceof ProtoDefinitionBodyOwner) {
+      container = ((ProtoDefinitionBodyOwner) scope).getDefinitionBody();
+    } else if (!(scope instanceof ProtoFile)) {
+      return null;
+    }
+    if (container == null) {
+      return null;
+    }
+    for (PsiElement child : container.getChildren()) {
+      ProgressManager.checkCanceled();
+      if (isTypeDefinition(child) && name.equals(((ProtoNamedElement) child).getName())) {
+        return child;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Looks up the types named like the last segment of the candidates and returns the one whose
+   * qualified name comes first in the candidates.
+   */
+  @Nullable
+  private static PsiElement findInIndex(ProtoFile file, List<String> candidates) {
+    if (DumbService.isDumb(file.getProject())) {
+      return null;
+    }
+    final Map<String, PsiElement> byQualifiedName = Maps.newHashMap();
+    String simpleName = StringUtil.getShortName(candidates.get(0));
+    new ProtoSymbolIndexLookup().processElementsWithName(simpleName,
+        ProtoSymbolIndex.ProtoSymbolType.NAMED_ELEMENT, new Processor<NavigationItem>() {
+          @Override
+          public boolean process(NavigationItem item) {
+            if (isTypeDefinition((PsiElement) item)) {
+              String qualifiedName = ((ProtoNamedElement) item).getQualifiedName();
+              if (qualifiedName != null && !byQualifiedName.containsKey(qualifiedName)) {
+                byQualifiedName.put(qualifiedName, (PsiElement) item);
+              }
+            }
+            return true;
+          }
+        }, ProtoUseScope.getReferableScope(file), null);
+    for (String candidate : candidates) {
+      PsiElement element = byQualifiedName.get(candidate);
+      if (element != null) {
+        return element;
+      }
+    }
+    return null;
+  }
+}
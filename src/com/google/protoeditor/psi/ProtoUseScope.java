@@ -0,0 +1,222 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.psi;
+
+import com.google.common.base.Objects;
+import com.google.protoeditor.ProtoFileType;
+import com.google.protoeditor.index.ProtoFileHeaderIndex;
+import com.google.protoeditor.index.ProtoImportIndex;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.DelegatingGlobalSearchScope;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.util.containers.ConcurrentFactoryMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The files that can refer to the definitions of a proto file: the file itself, the files
+ * importing it, directly or transitively, and the proto files of its package and of the
+ * packages nested in it, which see its definitions by their relative names.
+ * <p>
+ * Importers are found through {@link ProtoImportIndex} and packages through
+ * {@link ProtoFileHeaderIndex}, so the scope is built without parsing any file, at the cost of
+ * one index lookup per importing file, and is cached until any PSI changes. The package of a
+ * file is only checked for the files that the search asks about, i.e. those containing the
+ * name. Find usages and rename search only this scope instead of every file of the project
+ * containing the name, and {@link ProtoTypeResolver} only resolves a name to a definition whose
+ * use scope contains the referring file, so the two agree.
+ */
+class ProtoUseScope {
+
+  /**
+   * The number of files above which the scope is considered too large to be worth narrowing.
+   */
+  static final int MAX_FILES = 2000;
+
+  private static final Key<CachedValue<Map<VirtualFile, GlobalSearchScope>>> USE_SCOPES_KEY =
+      Key.create("PROTO_USE_SCOPES");
+
+  /**
+   * Returns the use scope of the definitions of the given file, or {@code null} if it cannot
+   * be narrowed, i.e. if the file is not physical, the indexes are being updated or the file
+   * has too many importers.
+   */
+  @Nullable
+  static GlobalSearchScope getUseScope(ProtoFile file) {
+    VirtualFile virtualFile = file.getOriginalFile().getVirtualFile();
+    return virtualFile == null ? null : getUseScope(file.getProject(), virtualFile);
+  }
+
+  /**
+   * Returns the use scope of the definitions of the given proto file, like
+   * {@link #getUseScope(ProtoFile)}, without loading the PSI of the file.
+   */
+  @Nullable
+  static GlobalSearchScope getUseScope(final Project project, VirtualFile file) {
+    if (DumbService.isDumb(project)) {
+      return null;
+    }
+    return CachedValuesManager.getManager(project).getCachedValue(project, USE_SCOPES_KEY,
+        new CachedValueProvider<Map<VirtualFile, GlobalSearchScope>>() {
+          @Override
+          public Result<Map<VirtualFile, GlobalSearchScope>> compute() {
+            Map<VirtualFile, GlobalSearchScope> scopes =
+                new ConcurrentFactoryMap<VirtualFile, GlobalSearchScope>() {
+                  @Nullable
+                  @Override
+                  protected GlobalSearchScope create(VirtualFile key) {
+                    return build(project, key);
+                  }
+                };
+            return Result.create(scopes, PsiModificationTracker.MODIFICATION_COUNT);
+          }
+        }, false).get(file);
+  }
+
+  /**
+   * Returns the scope of the files whose definitions can be referred to from the given file,
+   * i.e. the files whose use scope contains it. The scope only reads indexes, so files can be
+   * filtered with it before their PSI is loaded.
+   */
+  static GlobalSearchScope getReferableScope(ProtoFile referringFile) {
+    Project project = referringFile.getProject();
+    VirtualFile virtualFile = referringFile.getOriginalFile().getVirtualFile();
+    if (virtualFile == null) {
+      return GlobalSearchScope.allScope(project);
+    }
+    return new ReferableScope(project, virtualFile);
+  }
+
+  /**
+   * Returns {@code true} if the definitions of the given package can be referred to by
+   * relative names from the given package, i.e. if it is the same package or one of its
+   * parents.
+   */
+  static boolean isPackageVisible(@Nullable String definingPackage,
+      @Nullable String referringPackage) {
+    return definingPackage == null || definingPackage.equals(referringPackage)
+        || (referringPackage != null && referringPackage.startsWith(definingPackage + "."));
+  }
+
+  @Nullable
+  private static GlobalSearchScope build(Project project, VirtualFile file) {
+    GlobalSearchScope allScope = GlobalSearchScope.allScope(project);
+    Set<VirtualFile> files = new HashSet<VirtualFile>();
+    files.add(file);
+    Deque<VirtualFile> worklist = new ArrayDeque<VirtualFile>();
+    worklist.add(file);
+    while (!worklist.isEmpty()) {
+      ProgressManager.checkCanceled();
+      for (VirtualFile importer : ProtoImportIndex.getImportingFiles(worklist.poll(), allScope)) {
+        if (files.add(importer)) {
+          if (files.size() > MAX_FILES) {
+            return null;
+          }
+          worklist.add(importer);
+        }
+      }
+    }
+    return GlobalSearchScope.filesScope(project, files).union(new PackageScope(project,
+        ProtoFileHeaderIndex.getPackageName(project, file)));
+  }
+
+  /**
+   * The files of the project whose definitions can be referred to from a given file.
+   */
+  private static class ReferableScope extends DelegatingGlobalSearchScope {
+
+    private final Project project;
+    private final VirtualFile referringFile;
+
+    ReferableScope(Project project, VirtualFile referringFile) {
+      super(GlobalSearchScope.allScope(project));
+      this.project = project;
+      this.referringFile = referringFile;
+    }
+
+    @Override
+    public boolean contains(@NotNull VirtualFile file) {
+      if (!super.contains(file)) {
+        return false;
+      }
+      GlobalSearchScope useScope = getUseScope(project, file);
+      return useScope == null || useScope.contains(referringFile);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof ReferableScope && super.equals(o)
+          && referringFile.equals(((ReferableScope) o).referringFile);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * super.hashCode() + referringFile.hashCode();
+    }
+  }
+
+  /**
+   * The proto files of the project that see the definitions of the given package by their
+   * relative names.
+   */
+  private static class PackageScope extends DelegatingGlobalSearchScope {
+
+    private final Project project;
+    @Nullable private final String packageName;
+
+    PackageScope(Project project, @Nullable String packageName) {
+      super(GlobalSearchScope.allScope(project));
+      this.project = project;
+      this.packageName = packageName;
+    }
+
+    @Override
+    public boolean contains(@NotNull VirtualFile file) {
+      if (!(file.getFileType() instanceof ProtoFileType) || !super.contains(file)) {
+        return false;
+      }
+      return isPackageVisible(packageName, ProtoFileHeaderIndex.getPackageName(project, file));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof PackageScope && super.equals(o)
+          && Objects.equal(packageName, ((PackageScope) o).packageName);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * super.hashCode() + Objects.hashCode(packageName);
+    }
+  }
+}
@@ -18,19 +18,26 @@ package com.google.protoeditor.psi;
 
 import com.intellij.lang.ASTNode;
 
+import org.jetbrains.annotations.Nullable;
+
 /**
  * ProtoElement that signifies that the declared type of field is a user defined message type.   
  */
 public class ProtoUserDefinedPropertyType extends AbstractProtoElement {
 
-  private String type;
-
   public ProtoUserDefinedPropertyType(ASTNode astNode) {
     super(astNode);
-    type = astNode.getText();
   }
 
   public String getType() {
-    return type;
+    return getText();
+  }
+
+  /**
+   * Returns the reference to the message or enum type of the field.
+   */
+  @Nullable
+  public ProtoMessageTypeReference getTypeReferenceElement() {
+    return ProtoPsiTools.findDirectChildOfType(this, ProtoMessageTypeReference.class);
   }
 }
@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.psi;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.progress.util.ReadTask;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiNamedElement;
+import com.intellij.psi.util.PsiModificationTracker;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Completion variants of the message type references of a proto file, computed in the
+ * background.
+ * <p>
+ * Collecting all variants iterates every module and the imported Java packages, which can
+ * take long enough in large projects to freeze completion and to starve write actions. The
+ * variants are therefore never collected in the caller's read action. If neither the file nor
+ * the structure of Java classes changed since the last computation its result is returned;
+ * otherwise the caller gets the messages of the file itself together with the still valid
+ * results of the last computation, and a new computation is scheduled in a read action that
+ * yields to write actions. A computation that is interrupted by a write action is restarted
+ * once the write action has finished, and the next completion request picks up its result.
+ */
+class ProtoVariantsCache {
+
+  private static final Key<ProtoVariantsCache> CACHE_KEY = Key.create("PROTO_VARIANTS_CACHE");
+
+  static ProtoVariantsCache getInstance(ProtoFile file) {
+    ProtoVariantsCache cache = file.getUserData(CACHE_KEY);
+    if (cache == null) {
+      cache = file.putUserDataIfAbsent(CACHE_KEY, new ProtoVariantsCache(file));
+    }
+    return cache;
+  }
+
+  private final ProtoFile file;
+  private final PsiModificationTracker modificationTracker;
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private volatile Snapshot snapshot;
+
+  private ProtoVariantsCache(ProtoFile file) {
+    this.file = file;
+    modificationTracker = PsiManager.getInstance(file.getProject()).getModificationTracker();
+  }
+
+  /**
+   * Returns the variants for the given reference of the file, or of a completion copy of the
+   * file, without collecting the variants of other files in the current thread.
+   */
+  Object[] getVariants(ProtoMessageTypeReference reference) {
+    Snapshot current = snapshot;
+    if (isUpToDate(current)) {
+      return current.variants;
+    }
+    schedule();
+    return getLocalVariants(reference, current);
+  }
+
+  /**
+   * Returns whether the stored variants reflect the current file and Java classes.
+   */
+  boolean isUpToDate() {
+    return isUpToDate(snapshot);
+  }
+
+  private boolean isUpToDate(Snapshot current) {
+    return current != null && current.fileStamp == file.getModificationStamp()
+           && current.javaStructureCount == modificationTracker.getJavaStructureModificationCount();
+  }
+
+  /**
+   * Collects the variants of the file in the current thread and stores them.
+   */
+  void update() {
+    long fileStamp = file.getModificationStamp();
+    long javaStructureCount = modificationTracker.getJavaStructureModificationCount();
+    snapshot = new Snapshot(fileStamp, javaStructureCount,
+                            ProtoMessageTypeReference.computeVariants(file));
+  }
+
+  private void schedule() {
+    if (!scheduled.compareAndSet(false, true)) {
+      return;
+    }
+    ProgressIndicatorUtils.scheduleWithWriteActionPriority(new ReadTask() {
+      @Override
+      public void computeInReadAction(@NotNull ProgressIndicator indicator) {
+        // Not cleared in a finally block: a canceled computation stays scheduled until
+        // onCanceled has restarted it, so that no second task is started meanwhile.
+        try {
+          if (file.isValid()) {
+            update();
+          }
+        } catch (RuntimeException e) {
+          if (!(e instanceof ProcessCanceledException)) {
+            scheduled.set(false);
+          }
+          throw e;
+        }
+        scheduled.set(false);
+      }
+
+      @Override
+      public void onCanceled(@NotNull ProgressIndicator indicator) {
+        final ReadTask task = this;
+        ApplicationManager.getApplication().invokeLater(new Runnable() {
+          @Override
+          public void run() {
+            if (file.isValid()) {
+              ProgressIndicatorUtils.scheduleWithWriteActionPriority(task);
+            } else {
+              scheduled.set(false);
+            }
+          }
+        });
+      }
+    });
+  }
+
+  private Object[] getLocalVariants(ProtoMessageTypeReference reference, Snapshot stale) {
+    List<Object> variants = new ArrayList<Object>();
+    Set<String> usedNames = new HashSet<String>();
+    ProtoFile localFile = (ProtoFile) reference.getContainingFile();
+    for (ProtoMessageDefinition definition : localFile.getMessageDefinitions()) {
+      ProgressManager.checkCanceled();
+      if (usedNames.add(definition.getName())) {
+        variants.add(definition);
+      }
+    }
+    if (stale != null) {
+      for (Object variant : stale.variants) {
+        ProgressManager.checkCanceled();
+        PsiElement element = (PsiElement) variant;
+        if (element.isValid() && element.getContainingFile() != file
+            && element.getContainingFile() != localFile
+            && usedNames.add(((PsiNamedElement) element).getName())) {
+          variants.add(element);
+        }
+      }
+    }
+    return variants.toArray();
+  }
+
+  private static class Snapshot {
+
+    final long fileStamp;
+    final long javaStructureCount;
+    final Object[] variants;
+
+    Snapshot(long fileStamp, long javaStructureCount, Object[] variants) {
+      this.fileStamp = fileStamp;
+      this.javaStructureCount = javaStructureCount;
+      this.variants = variants;
+    }
+  }
+}
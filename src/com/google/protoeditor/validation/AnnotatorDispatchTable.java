@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.validation;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import com.intellij.lang.annotation.AnnotationHolder;
+import com.intellij.openapi.util.Pair;
+import com.intellij.psi.PsiElement;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps PSI element classes to the {@link ProtoElementAnnotator}s that apply to them.
+ * <p>
+ * The annotators for a concrete element class are resolved against the registered classes
+ * once and then cached, so annotating an element for which no checks are registered costs
+ * a single map lookup. When {@link ProtoCheckStatistics} are enabled, every annotator is
+ * measured as a check named after the table and the class it is registered for.
+ */
+class AnnotatorDispatchTable {
+
+  private static final ProtoElementAnnotator[] NO_ANNOTATORS = new ProtoElementAnnotator[0];
+
+  private final List<Pair<Class, ProtoElementAnnotator>> registered;
+  private final Map<ProtoElementAnnotator, String> checkNames;
+  private final ConcurrentMap<Class, ProtoElementAnnotator[]> resolved
+      = new ConcurrentHashMap<Class, ProtoElementAnnotator[]>();
+
+  AnnotatorDispatchTable(String name, Iterable<Map<Class, ProtoElementAnnotator>> tables) {
+    ImmutableList.Builder<Pair<Class, ProtoElementAnnotator>> builder = ImmutableList.builder();
+    Map<ProtoElementAnnotator, String> names =
+        new IdentityHashMap<ProtoElementAnnotator, String>();
+    for (Map<Class, ProtoElementAnnotator> table : tables) {
+      for (Map.Entry<Class, ProtoElementAnnotator> entry : table.entrySet()) {
+        builder.add(Pair.create(entry.getKey(), entry.getValue()));
+        names.put(entry.getValue(), name + ":" + entry.getKey().getSimpleName());
+      }
+    }
+    registered = builder.build();
+    checkNames = names;
+  }
+
+  /**
+   * Runs all annotators registered for the class of the given element or its superclasses.
+   */
+  @SuppressWarnings("unchecked")
+  void annotate(Object element, AnnotationHolder annotationHolder) {
+    ProtoElementAnnotator[] annotators = getAnnotators(element.getClass());
+    ProtoCheckStatistics statistics = annotators.length > 0 && element instanceof PsiElement
+        ? ProtoCheckStatistics.getInstanceIfEnabled((PsiElement) element) : null;
+    for (ProtoElementAnnotator annotator : annotators) {
+      if (statistics == null) {
+        annotator.annotate(element, annotationHolder);
+      } else {
+        long startNanos = System.nanoTime();
+        long startAllocatedBytes = statistics.getAllocatedBytes();
+        try {
+          annotator.annotate(element, annotationHolder);
+        } finally {
+          statistics.record(checkNames.get(annotator), startNanos, startAllocatedBytes);
+        }
+      }
+    }
+  }
+
+  ProtoElementAnnotator[] getAnnotators(Class elementClass) {
+    ProtoElementAnnotator[] annotators = resolved.get(elementClass);
+    if (annotators == null) {
+      annotators = resolve(elementClass);
+      resolved.putIfAbsent(elementClass, annotators);
+    }
+    return annotators;
+  }
+
+  @SuppressWarnings("unchecked")
+  private ProtoElementAnnotator[] resolve(Class elementClass) {
+    List<ProtoElementAnnotator> annotators = Lists.newArrayList();
+    for (Pair<Class, ProtoElementAnnotator> entry : registered) {
+      if (entry.getFirst().isAssignableFrom(elementClass)) {
+        annotators.add(entry.getSecond());
+      }
+    }
+    return annotators.isEmpty()
+        ? NO_ANNOTATORS : annotators.toArray(new ProtoElementAnnotator[annotators.size()]);
+  }
+}
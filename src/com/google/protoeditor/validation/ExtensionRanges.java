@@ -0,0 +1,215 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.validation;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protoeditor.index.ProtoSymbolIndex;
+import com.google.protoeditor.index.ProtoSymbolIndexLookup;
+import com.google.protoeditor.metrics.ProtoMetrics;
+import com.google.protoeditor.psi.ProtoDefinitionBody;
+import com.google.protoeditor.psi.ProtoExtendDefinition;
+import com.google.protoeditor.psi.ProtoExtensionsStatement;
+import com.google.protoeditor.psi.ProtoMessageDefinition;
+import com.google.protoeditor.psi.ProtoPsiTools;
+
+import com.intellij.navigation.NavigationItem;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiTreeUtil;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The extension ranges declared by a message.
+ * <p>
+ * The ranges are kept sorted by lower bound, together with the running maximum of the upper
+ * bounds, which is a flattened static interval tree: the ranges that may contain a number all
+ * start at or before it, and one of them does if and only if the running maximum at the last
+ * such range reaches the number. Membership is therefore answered with one binary search, and
+ * overlapping ranges are found while building the model.
+ */
+public class ExtensionRanges {
+
+  private static final Key<CachedValue<ExtensionRanges>> RANGES_KEY
+      = Key.create("PROTO_EXTENSION_RANGES");
+
+  private static final ExtensionRanges EMPTY =
+      new ExtensionRanges(new ProtoExtensionsStatement[0], new long[0], new long[0]);
+
+  /**
+   * Returns the extension ranges of the given message, building them if the file of the message
+   * changed since the last call.
+   */
+  public static ExtensionRanges getInstance(final ProtoMessageDefinition message) {
+    ProtoMetrics.EXTENSION_RANGES_CACHE.request();
+    return CachedValuesManager.getManager(message.getProject()).getCachedValue(message,
+        RANGES_KEY, new CachedValueProvider<ExtensionRanges>() {
+          @Override
+          public Result<ExtensionRanges> compute() {
+            ProtoMetrics.EXTENSION_RANGES_CACHE.miss();
+            return Result.create(build(message), message.getContainingFile());
+          }
+        }, false);
+  }
+
+  static ExtensionRanges build(ProtoMessageDefinition message) {
+    ProtoDefinitionBody body = message.getDefinitionBody();
+    if (body == null) {
+      return EMPTY;
+    }
+    ProtoExtensionsStatement[] statements = validRangesOf(body.getExtensionsDeclarations());
+    if (statements.length == 0) {
+      return EMPTY;
+    }
+    Arrays.sort(statements, new Comparator<ProtoExtensionsStatement>() {
+      @Override
+      public int compare(ProtoExtensionsStatement a, ProtoExtensionsStatement b) {
+        long lowerA = a.getLowerBound().getValue();
+        long lowerB = b.getLowerBound().getValue();
+        return lowerA < lowerB ? -1 : (lowerA == lowerB ? 0 : 1);
+      }
+    });
+    long[] lowers = new long[statements.length];
+    long[] uppers = new long[statements.length];
+    for (int i = 0; i < statements.length; i++) {
+      lowers[i] = statements[i].getLowerBound().getValue();
+      uppers[i] = statements[i].getUpperBound().getValue();
+    }
+    return new ExtensionRanges(statements, lowers, uppers);
+  }
+
+  private static ProtoExtensionsStatement[] validRangesOf(
+      List<ProtoExtensionsStatement> declarations) {
+    ImmutableList.Builder<ProtoExtensionsStatement> valid = ImmutableList.builder();
+    for (ProtoExtensionsStatement statement : declarations) {
+      if (statement.hasValidBounds()
+          && statement.getLowerBound().getValue() <= statement.getUpperBound().getValue()) {
+        valid.add(statement);
+      }
+    }
+    List<ProtoExtensionsStatement> list = valid.build();
+    return list.toArray(new ProtoExtensionsStatement[list.size()]);
+  }
+
+  /**
+   * Returns the message extended by the given definition, looking in the same file first and
+   * then in the index, or {@code null} if it cannot be found.
+   */
+  @Nullable
+  public static ProtoMessageDefinition findExtendee(ProtoExtendDefinition extendDefinition) {
+    String qualifiedName = extendDefinition.getQualifiedExtendeeName();
+    if (qualifiedName == null) {
+      return null;
+    }
+    PsiFile file = extendDefinition.getContainingFile();
+    for (ProtoMessageDefinition message
+        : PsiTreeUtil.findChildrenOfType(file, ProtoMessageDefinition.class)) {
+      ProgressManager.checkCanceled();
+      if (qualifiedName.equals(ProtoPsiTools.getQualifiedName(message))) {
+        return message;
+      }
+    }
+    String simpleName = qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+    NavigationItem[] candidates = new ProtoSymbolIndexLookup().getProtoItemsByName(simpleName,
+        extendDefinition.getProject(), false, ProtoSymbolIndex.ProtoSymbolType.NAMED_ELEMENT);
+    for (NavigationItem candidate : candidates) {
+      ProgressManager.checkCanceled();
+      if (candidate instanceof ProtoMessageDefinition && qualifiedName.equals(
+          ProtoPsiTools.getQualifiedName((ProtoMessageDefinition) candidate))) {
+        return (ProtoMessageDefinition) candidate;
+      }
+    }
+    return null;
+  }
+
+  private final ProtoExtensionsStatement[] statements;
+  private final long[] lowers;
+  private final long[] uppers;
+  private final long[] maxUppers;
+  private final List<ProtoExtensionsStatement> overlapping;
+
+  private ExtensionRanges(ProtoExtensionsStatement[] statements, long[] lowers, long[] uppers) {
+    this.statements = statements;
+    this.lowers = lowers;
+    this.uppers = uppers;
+    this.maxUppers = new long[uppers.length];
+    ImmutableList.Builder<ProtoExtensionsStatement> overlapping = ImmutableList.builder();
+    for (int i = 0; i < uppers.length; i++) {
+      if (i > 0 && lowers[i] <= maxUppers[i - 1]) {
+        overlapping.add(statements[i]);
+      }
+      maxUppers[i] = i == 0 ? uppers[i] : Math.max(maxUppers[i - 1], uppers[i]);
+    }
+    this.overlapping = overlapping.build();
+  }
+
+  /**
+   * Returns {@code true} if the message declares no valid extension range.
+   */
+  public boolean isEmpty() {
+    return statements.length == 0;
+  }
+
+  /**
+   * Returns {@code true} if the given field number is in one of the extension ranges.
+   */
+  public boolean contains(long number) {
+    int index = lastStartingAtOrBefore(number);
+    return index >= 0 && maxUppers[index] >= number;
+  }
+
+  /**
+   * Returns an extension range containing the given field number, or {@code null} if there is
+   * none.
+   */
+  @Nullable
+  public ProtoExtensionsStatement findRange(long number) {
+    for (int i = lastStartingAtOrBefore(number); i >= 0 && maxUppers[i] >= number; i--) {
+      if (uppers[i] >= number) {
+        return statements[i];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the ranges that overlap a range with a smaller or equal lower bound.
+   */
+  public List<ProtoExtensionsStatement> getOverlappingRanges() {
+    return overlapping;
+  }
+
+  private int lastStartingAtOrBefore(long number) {
+    int index = Arrays.binarySearch(lowers, number);
+    if (index < 0) {
+      return -index - 2;
+    }
+    // Several ranges may start at the number; take the last of them.
+    while (index + 1 < lowers.length && lowers[index + 1] == number) {
+      index++;
+    }
+    return index;
+  }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.validation;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.protoeditor.metrics.ProtoMetrics;
+import com.google.protoeditor.psi.ProtoFile;
+import com.google.protoeditor.psi.ProtoMessageDefinition;
+import com.google.protoeditor.psi.ProtoMessageTypeReference;
+import com.google.protoeditor.psi.ProtoServiceDefinition;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiRecursiveElementVisitor;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Type dependencies between the top-level messages of a proto file.
+ * <p>
+ * Every message points to the type names referenced anywhere inside it, and the services of
+ * the file are the roots of the graph. The graph is built with a single pass over the file and
+ * cached until the file changes; reachability is then computed with one worklist traversal.
+ */
+public class MessageDependencyGraph {
+
+  private static final Key<CachedValue<MessageDependencyGraph>> GRAPH_KEY
+      = Key.create("PROTO_MESSAGE_DEPENDENCY_GRAPH");
+
+  /**
+   * Returns the dependency graph of the given file, building it if the file changed since the
+   * last call.
+   */
+  public static MessageDependencyGraph getInstance(final ProtoFile file) {
+    ProtoMetrics.DEPENDENCY_GRAPH_CACHE.request();
+    return CachedValuesManager.getManager(file.getProject()).getCachedValue(file, GRAPH_KEY,
+        new CachedValueProvider<MessageDependencyGraph>() {
+          @Override
+          public Result<MessageDependencyGraph> compute() {
+            ProtoMetrics.DEPENDENCY_GRAPH_CACHE.miss();
+            return Result.create(build(file), file);
+          }
+        }, false);
+  }
+
+  static MessageDependencyGraph build(ProtoFile file) {
+    ImmutableSetMultimap.Builder<String, String> edges = ImmutableSetMultimap.builder();
+    ImmutableSet.Builder<String> messageNames = ImmutableSet.builder();
+    for (ProtoMessageDefinition messageDefinition : file.getMessageDefinitions()) {
+      ProgressManager.checkCanceled();
+      String name = messageDefinition.getName();
+      if (name != null) {
+        messageNames.add(name);
+        edges.putAll(name, collectReferencedNames(messageDefinition));
+      }
+    }
+    List<ProtoServiceDefinition> serviceDefinitions = file.getServiceDefinitions();
+    ImmutableSet.Builder<String> roots = ImmutableSet.builder();
+    for (ProtoServiceDefinition serviceDefinition : serviceDefinitions) {
+      ProgressManager.checkCanceled();
+      roots.addAll(collectReferencedNames(serviceDefinition));
+    }
+    return new MessageDependencyGraph(messageNames.build(), edges.build(), roots.build(),
+                                      !serviceDefinitions.isEmpty());
+  }
+
+  private static Set<String> collectReferencedNames(PsiElement element) {
+    final Set<String> names = new HashSet<String>();
+    element.accept(new PsiRecursiveElementVisitor() {
+      @Override
+      public void visitElement(PsiElement psiElement) {
+        super.visitElement(psiElement);
+        if (psiElement instanceof ProtoMessageTypeReference) {
+          names.add(((ProtoMessageTypeReference) psiElement).getReferencedName());
+        }
+      }
+    });
+    return names;
+  }
+
+  // Messages without references have no edges, so their names are kept separately.
+  private final ImmutableSet<String> messageNames;
+  private final ImmutableSetMultimap<String, String> edges;
+  private final ImmutableSet<String> roots;
+  private final boolean hasServices;
+  private volatile Set<String> reachableFromServices;
+
+  private MessageDependencyGraph(ImmutableSet<String> messageNames,
+      ImmutableSetMultimap<String, String> edges, ImmutableSet<String> roots,
+      boolean hasServices) {
+    this.messageNames = messageNames;
+    this.edges = edges;
+    this.roots = roots;
+    this.hasServices = hasServices;
+  }
+
+  /**
+   * Returns {@code true} if the file defines at least one service.
+   */
+  public boolean hasServices() {
+    return hasServices;
+  }
+
+  /**
+   * Returns the names of the top-level messages of the file.
+   */
+  public Set<String> getMessageNames() {
+    return messageNames;
+  }
+
+  /**
+   * Returns the type names referenced by the services of the file.
+   */
+  public Set<String> getRoots() {
+    return roots;
+  }
+
+  /**
+   * Returns the type names referenced anywhere inside the given top-level message.
+   */
+  public Set<String> getReferencedNames(String messageName) {
+    return edges.get(messageName);
+  }
+
+  /**
+   * Returns all type names used by the services of the file, directly or through the messages
+   * they use.
+   */
+  public Set<String> getReachableFromServices() {
+    Set<String> reachable = reachableFromServices;
+    if (reachable == null) {
+      reachable = getReachable(roots);
+      reachableFromServices = reachable;
+    }
+    return reachable;
+  }
+
+  /**
+   * Returns all type names reachable from the given names, including the names themselves.
+   * Callers reporting dead messages across files can seed this with the names used by other
+   * files.
+   */
+  public Set<String> getReachable(Iterable<String> startNames) {
+    Set<String> reachable = new HashSet<String>();
+    Deque<String> worklist = new ArrayDeque<String>();
+    for (String name : startNames) {
+      if (reachable.add(name)) {
+        worklist.add(name);
+      }
+    }
+    while (!worklist.isEmpty()) {
+      ProgressManager.checkCanceled();
+      for (String referenced : edges.get(worklist.poll())) {
+        if (reachable.add(referenced)) {
+          worklist.add(referenced);
+        }
+      }
+    }
+    return ImmutableSet.copyOf(reachable);
+  }
+}
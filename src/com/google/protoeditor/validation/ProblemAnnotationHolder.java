@@ -0,0 +1,217 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.validation;
+
+import com.intellij.codeInspection.IntentionWrapper;
+import com.intellij.codeInspection.LocalQuickFix;
+import com.intellij.codeInspection.ProblemHighlightType;
+import com.intellij.codeInspection.ProblemsHolder;
+import com.intellij.lang.ASTNode;
+import com.intellij.lang.annotation.Annotation;
+import com.intellij.lang.annotation.AnnotationHolder;
+import com.intellij.lang.annotation.AnnotationSession;
+import com.intellij.lang.annotation.HighlightSeverity;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reports the annotations of {@link ProtoElementAnnotator}s as problems of a
+ * {@link ProblemsHolder}.
+ * <p>
+ * Annotators register quick fixes and highlight types on an annotation after creating it, so
+ * the annotations of an element are kept until {@link #flush()} turns them into problem
+ * descriptors.
+ */
+class ProblemAnnotationHolder implements AnnotationHolder {
+
+  private final ProblemsHolder holder;
+  private final AnnotationSession session;
+  private final List<Pair<PsiElement, Annotation>> pending =
+      new ArrayList<Pair<PsiElement, Annotation>>();
+
+  ProblemAnnotationHolder(ProblemsHolder holder) {
+    this.holder = holder;
+    session = new AnnotationSession(holder.getFile());
+  }
+
+  @Override
+  public Annotation createErrorAnnotation(@NotNull PsiElement elt, String message) {
+    return create(elt, HighlightSeverity.ERROR, message);
+  }
+
+  @Override
+  public Annotation createErrorAnnotation(@NotNull ASTNode node, String message) {
+    return create(node.getPsi(), HighlightSeverity.ERROR, message);
+  }
+
+  @Override
+  public Annotation createErrorAnnotation(@NotNull TextRange range, String message) {
+    return create(range, HighlightSeverity.ERROR, message);
+  }
+
+  @Override
+  public Annotation createWarningAnnotation(@NotNull PsiElement elt, String message) {
+    return create(elt, HighlightSeverity.WARNING, message);
+  }
+
+  @Override
+  public Annotation createWarningAnnotation(@NotNull ASTNode node, String message) {
+    return create(node.getPsi(), HighlightSeverity.WARNING, message);
+  }
+
+  @Override
+  public Annotation createWarningAnnotation(@NotNull TextRange range, String message) {
+    return create(range, HighlightSeverity.WARNING, message);
+  }
+
+  @Override
+  public Annotation createWeakWarningAnnotation(@NotNull PsiElement elt, String message) {
+    return create(elt, HighlightSeverity.WEAK_WARNING, message);
+  }
+
+  @Override
+  public Annotation createWeakWarningAnnotation(@NotNull ASTNode node, String message) {
+    return create(node.getPsi(), HighlightSeverity.WEAK_WARNING, message);
+  }
+
+  @Override
+  public Annotation createWeakWarningAnnotation(@NotNull TextRange range, String message) {
+    return create(range, HighlightSeverity.WEAK_WARNING, message);
+  }
+
+  @Override
+  public Annotation createInfoAnnotation(@NotNull PsiElement elt, String message) {
+    return create(elt, HighlightSeverity.INFORMATION, message);
+  }
+
+  @Override
+  public Annotation createInfoAnnotation(@NotNull ASTNode node, String message) {
+    return create(node.getPsi(), HighlightSeverity.INFORMATION, message);
+  }
+
+  @Override
+  public Annotation createInfoAnnotation(@NotNull TextRange range, String message) {
+    return create(range, HighlightSeverity.INFORMATION, message);
+  }
+
+  @Override
+  public Annotation createInformationAnnotation(@NotNull PsiElement elt, String message) {
+    return create(elt, HighlightSeverity.INFORMATION, message);
+  }
+
+  @Override
+  public Annotation createInformationAnnotation(@NotNull ASTNode node, String message) {
+    return create(node.getPsi(), HighlightSeverity.INFORMATION, message);
+  }
+
+  @Override
+  public Annotation createInformationAnnotation(@NotNull TextRange range, String message) {
+    return create(range, HighlightSeverity.INFORMATION, message);
+  }
+
+  @NotNull
+  @Override
+  public AnnotationSession getCurrentAnnotationSession() {
+    return session;
+  }
+
+  @Override
+  public boolean isBatchMode() {
+    return !holder.isOnTheFly();
+  }
+
+  /**
+   * Registers the annotations created since the last call as problems. Annotations without a
+   * message only carry text attributes and are dropped.
+   */
+  void flush() {
+    for (Pair<PsiElement, Annotation> entry : pending) {
+      Annotation annotation = entry.getSecond();
+      if (annotation.getMessage() != null) {
+        registerProblem(entry.getFirst(), annotation);
+      }
+    }
+    pending.clear();
+  }
+
+  private Annotation create(TextRange range, HighlightSeverity severity, String message) {
+    return create(findElementCovering(holder.getFile(), range), range, severity, message);
+  }
+
+  private Annotation create(PsiElement element, HighlightSeverity severity, String message) {
+    return create(element, element.getTextRange(), severity, message);
+  }
+
+  private Annotation create(PsiElement element, TextRange range, HighlightSeverity severity,
+                            String message) {
+    Annotation annotation = new Annotation(range.getStartOffset(), range.getEndOffset(),
+                                           severity, message, message);
+    pending.add(Pair.create(element, annotation));
+    return annotation;
+  }
+
+  private void registerProblem(PsiElement element, Annotation annotation) {
+    TextRange range = new TextRange(annotation.getStartOffset(), annotation.getEndOffset());
+    TextRange rangeInElement = range.shiftRight(-element.getTextRange().getStartOffset());
+    holder.registerProblem(holder.getManager().createProblemDescriptor(
+        element, rangeInElement, annotation.getMessage(), getHighlightType(annotation),
+        holder.isOnTheFly(), getFixes(element.getContainingFile(), annotation)));
+  }
+
+  private static PsiElement findElementCovering(PsiFile file, TextRange range) {
+    PsiElement first = file.findElementAt(range.getStartOffset());
+    PsiElement last = file.findElementAt(Math.max(range.getStartOffset(),
+                                                  range.getEndOffset() - 1));
+    if (first == null || last == null) {
+      return file;
+    }
+    PsiElement common = PsiTreeUtil.findCommonParent(first, last);
+    return common == null ? file : common;
+  }
+
+  private static ProblemHighlightType getHighlightType(Annotation annotation) {
+    HighlightSeverity severity = annotation.getSeverity();
+    if (severity == HighlightSeverity.ERROR) {
+      return ProblemHighlightType.GENERIC_ERROR;
+    }
+    if (severity == HighlightSeverity.WEAK_WARNING
+        && annotation.getHighlightType() == ProblemHighlightType.GENERIC_ERROR_OR_WARNING) {
+      return ProblemHighlightType.WEAK_WARNING;
+    }
+    return annotation.getHighlightType();
+  }
+
+  private static LocalQuickFix[] getFixes(PsiFile file, Annotation annotation) {
+    List<Annotation.QuickFixInfo> quickFixes = annotation.getQuickFixes();
+    if (quickFixes == null) {
+      return LocalQuickFix.EMPTY_ARRAY;
+    }
+    LocalQuickFix[] fixes = new LocalQuickFix[quickFixes.size()];
+    for (int i = 0; i < fixes.length; i++) {
+      fixes[i] = new IntentionWrapper(quickFixes.get(i).quickFix, file);
+    }
+    return fixes;
+  }
+}
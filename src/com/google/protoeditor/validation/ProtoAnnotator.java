@@ -16,30 +16,23 @@
 
 package com.google.protoeditor.validation;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.protoeditor.highlighting.ProtoSyntaxHighlighter;
 import com.google.protoeditor.lex.ProtoTextAttributes;
-import com.google.protoeditor.psi.ProtoAbstractIntegerLiteral;
-import com.google.protoeditor.psi.ProtoDefinitionBody;
 import com.google.protoeditor.psi.ProtoElement;
 import com.google.protoeditor.psi.ProtoElementWithName;
 import com.google.protoeditor.psi.ProtoEnumConstant;
 import com.google.protoeditor.psi.ProtoEnumDefinition;
-import com.google.protoeditor.psi.ProtoFile;
-import com.google.protoeditor.psi.ProtoFileOptionStatement;
 import com.google.protoeditor.psi.ProtoGroupDefinition;
-import com.google.protoeditor.psi.ProtoHexLiteral;
-import com.google.protoeditor.psi.ProtoIntegerLiteral;
 import com.google.protoeditor.psi.ProtoKeyword;
 import com.google.protoeditor.psi.ProtoMessageDefinition;
 import com.google.protoeditor.psi.ProtoMessageProperty;
-import com.google.protoeditor.psi.ProtoMessageTypeReference;
 import com.google.protoeditor.psi.ProtoNamedElement;
-import com.google.protoeditor.psi.ProtoPackageStatement;
 import com.google.protoeditor.psi.ProtoProperty;
 import com.google.protoeditor.psi.ProtoRpcDefinition;
 import com.google.protoeditor.psi.ProtoServiceDefinition;
 import com.google.protoeditor.psi.ProtoSimpleProperty;
-import com.google.protoeditor.psi.ProtoSyntaxStatement;
 
 import com.intellij.lang.annotation.Annotation;
 import com.intellij.lang.annotation.AnnotationHolder;
@@ -47,11 +40,11 @@ import com.intellij.lang.annotation.Annotator;
 import com.intellij.openapi.editor.colors.TextAttributesKey;
 import com.intellij.openapi.extensions.Extensions;
 import com.intellij.psi.PsiElement;
-import com.intellij.psi.impl.source.tree.LeafPsiElement;
 
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -59,18 +52,15 @@ import java.util.Map;
 // Fix old comments, and implement old TODOs.
 public class ProtoAnnotator implements Annotator {
 
-  //TODO: show gutter marker for classes generated from proto classes
   //TODO: add completion for keywords
   //TODO: resolve message names from other proto-files and from classpath
   //TODO: move members refactoring (to move elements between files)
   //TODO: show "reassign ID" as intention
-  //TODO: convert some warnings to inspections
   //TODO: add intention for assigning id when missing id or =id for property and enum constant
   //TODO: accept "," in constant list, provide intention to convert to ";"
   //TODO: add refactoring: convert group to message
 
-  private final Map<Class, ProtoElementAnnotator> annotators;
-  private final ProtoValidator validator;
+  private final AnnotatorDispatchTable dispatchTable;
   private static final List<String> JAVA_KEYWORDS = Arrays.asList("abstract",
       "continue", "for", "new",
       "switch",
@@ -93,146 +83,118 @@ public class ProtoAnnotator implements Annotator {
 
   public ProtoAnnotator() {
     super();
-    validator = getProtoValidator();
-    annotators = validator.getAnnotators();
+    List<Map<Class, ProtoElementAnnotator>> tables = Lists.newArrayList();
+    tables.add(getHighlightingAnnotators());
+    for (ProtoValidatorExtn extension : getValidatorExtensions()) {
+      tables.add(extension.getAnnotators());
+    }
+    dispatchTable = new AnnotatorDispatchTable("annotator", tables);
   }
 
-  private ProtoValidator getProtoValidator() {
+  /**
+   * Returns the registered validator extensions, or the default {@link ProtoValidator} if there
+   * are none.
+   */
+  static List<ProtoValidatorExtn> getValidatorExtensions() {
     final ProtoValidatorExtn[] extensions = Extensions.getExtensions(ProtoValidatorExtn.EP_NAME);
     if (extensions.length == 0) {
-      return new ProtoValidator();
+      return Collections.<ProtoValidatorExtn>singletonList(new ProtoValidator());
     }
-    return (ProtoValidator) extensions[0];
-  }
-
-  @SuppressWarnings("unchecked")
-  private <E> void annotateElement(
-      Class<E> clazz, PsiElement element, AnnotationHolder annotationHolder) {
-    E e = clazz.cast(element);
-    ((ProtoElementAnnotator<E>) annotators.get(clazz)).annotate(e, annotationHolder);
+    return Arrays.asList(extensions);
   }
 
   @Override
   public void annotate(@NotNull PsiElement psiElement,
                        AnnotationHolder annotationHolder) {
-    if (psiElement instanceof ProtoSyntaxStatement) {
-      annotateElement(ProtoSyntaxStatement.class, psiElement, annotationHolder);
-    } else if (psiElement instanceof ProtoFileOptionStatement) {
-      annotateElement(ProtoFileOptionStatement.class, psiElement, annotationHolder);
-    }
-    if (psiElement instanceof ProtoKeyword) {
-      ProtoKeyword keyword = (ProtoKeyword) psiElement;
-
-      highlightKeyword(keyword, annotationHolder);
-    }
-    if (psiElement instanceof ProtoEnumConstant) {
-      ProtoEnumConstant constant = (ProtoEnumConstant) psiElement;
-      annotateName(constant, annotationHolder,
-                   ProtoTextAttributes.ATTR_ENUM_CONSTANT_NAME);
-      checkName(constant.getNameElement(), annotationHolder, true);
-    }
-    if (psiElement instanceof ProtoEnumDefinition) {
-      ProtoEnumDefinition enumDefinition = (ProtoEnumDefinition) psiElement;
-      annotateName(enumDefinition, annotationHolder, ProtoTextAttributes.ATTR_ENUM_NAME);
-      //TODO: Find out if enumDefinition names cannot be java keywords and handle it accordingly.
-    }
-    if (psiElement instanceof ProtoGroupDefinition) {
-      ProtoGroupDefinition groupDefinition = (ProtoGroupDefinition) psiElement;
-      validator.checkGroupNameCase(groupDefinition, annotationHolder);
-      annotateName(groupDefinition, annotationHolder,
-                   ProtoTextAttributes.ATTR_GROUP_NAME);
-    }
-    if (psiElement instanceof ProtoSimpleProperty) {
-      ProtoSimpleProperty property = (ProtoSimpleProperty) psiElement;
-
-      validator.checkDefaultValueType(property, annotationHolder);
-      checkName(property.getNameElement(), annotationHolder, false);
-    }
-    if (psiElement instanceof ProtoMessageProperty) {
-      ProtoMessageProperty messageProperty = (ProtoMessageProperty) psiElement;
-
-      checkName(messageProperty.getNameElement(), annotationHolder, false);
-    }
-    if (psiElement instanceof ProtoMessageDefinition) {
-      ProtoMessageDefinition messageDefinition = (ProtoMessageDefinition) psiElement;
-
-      if (messageDefinition.getDefinitionBody() != null) {
-        validator.checkPropertyIds(messageDefinition, annotationHolder);
-      }
-      PsiElement nameElement = messageDefinition.getNameElement();
-      if (nameElement != null) {
-        checkName(nameElement, annotationHolder, true,
-                  messageDefinition.getName());
-        Annotation anno = annotationHolder
-            .createInfoAnnotation(nameElement, null);
-        anno.setTextAttributes(ProtoTextAttributes.ATTR_MESSAGE_NAME);
-      }
-    }
-    if (psiElement instanceof ProtoDefinitionBody) {
-      ProtoDefinitionBody def = (ProtoDefinitionBody) psiElement;
-
-      validator.checkProperties(def, annotationHolder);
-      validator.checkEnums(def, annotationHolder);
-    }
-    if (psiElement instanceof ProtoFile) {
-      ProtoFile protoFile = (ProtoFile) psiElement;
-
-      validator.checkDuplicateNames(protoFile, annotationHolder);
-      validator.checkUnusedMessages(protoFile, annotationHolder);
-      validator.checkDuplicatePackageStatements(protoFile, annotationHolder);
-    }
-    if (psiElement instanceof ProtoMessageTypeReference) {
-      ProtoMessageTypeReference ref = (ProtoMessageTypeReference) psiElement;
-
-      validator.checkMessageTypeReference(ref, annotationHolder);
-    }
-    if (psiElement instanceof ProtoServiceDefinition) {
-      ProtoServiceDefinition serviceDefinition = (ProtoServiceDefinition) psiElement;
-
-      validator.checkServiceDefinition(serviceDefinition, annotationHolder);
-      checkName(serviceDefinition.getNameElement(), annotationHolder, true);
-      annotateName(serviceDefinition, annotationHolder,
-          ProtoTextAttributes.ATTR_SERVICE_NAME);
-
-    }
-    if (psiElement instanceof ProtoRpcDefinition) {
-      ProtoRpcDefinition rpcDefinition = (ProtoRpcDefinition) psiElement;
-
-      validator.checkRpcDefinition(rpcDefinition, annotationHolder);
-      annotateName(rpcDefinition, annotationHolder,
-          ProtoTextAttributes.ATTR_RPC_NAME);
-      checkName(rpcDefinition.getNameElement(), annotationHolder, false);
-    }
-    if (psiElement instanceof ProtoIntegerLiteral) {
-      ProtoAbstractIntegerLiteral literal = (ProtoAbstractIntegerLiteral) psiElement;
-
-      validator.checkIntegerLiteralValue(literal, annotationHolder);
-    }
-    if (psiElement instanceof ProtoProperty) {
-      ProtoProperty property = (ProtoProperty) psiElement;
-
-      validator.checkPropertyId(property, annotationHolder);
-      validator.checkParentNameClash(property, annotationHolder);
-      annotateName(property, annotationHolder,
-                   ProtoTextAttributes.ATTR_PROPERTY_NAME);
-    }
-    if (psiElement instanceof ProtoPackageStatement) {
-      ProtoPackageStatement packageStatement = (ProtoPackageStatement) psiElement;
-
-      validator.checkPackageStatement(packageStatement, annotationHolder);
-    }
-    if (psiElement instanceof ProtoHexLiteral) {
-      final ProtoHexLiteral hexLiteral = (ProtoHexLiteral) psiElement;
-
-      validator.checkHexLiteral(hexLiteral, annotationHolder);
-    }
-    if (psiElement instanceof LeafPsiElement) {
-      LeafPsiElement leaf = (LeafPsiElement) psiElement;
+    dispatchTable.annotate(psiElement, annotationHolder);
+  }
 
-      validator.checkLeafs(leaf, annotationHolder);
-    }
-    // TODO: Add check for checking if extensions lower bound  is less than extensions
-    // upper bound.
+  private Map<Class, ProtoElementAnnotator> getHighlightingAnnotators() {
+    return ImmutableMap.<Class, ProtoElementAnnotator>builder()
+        .put(ProtoKeyword.class, new ProtoElementAnnotator<ProtoKeyword>() {
+          @Override
+          public void annotate(ProtoKeyword keyword, AnnotationHolder annotationHolder) {
+            highlightKeyword(keyword, annotationHolder);
+          }
+        })
+        .put(ProtoEnumConstant.class, new ProtoElementAnnotator<ProtoEnumConstant>() {
+          @Override
+          public void annotate(ProtoEnumConstant constant, AnnotationHolder annotationHolder) {
+            annotateName(constant, annotationHolder,
+                         ProtoTextAttributes.ATTR_ENUM_CONSTANT_NAME);
+            checkName(constant.getNameElement(), annotationHolder, true);
+          }
+        })
+        .put(ProtoEnumDefinition.class, new ProtoElementAnnotator<ProtoEnumDefinition>() {
+          @Override
+          public void annotate(ProtoEnumDefinition enumDefinition,
+                               AnnotationHolder annotationHolder) {
+            annotateName(enumDefinition, annotationHolder, ProtoTextAttributes.ATTR_ENUM_NAME);
+            //TODO: Find out if enumDefinition names cannot be java keywords and handle it
+            // accordingly.
+          }
+        })
+        .put(ProtoGroupDefinition.class, new ProtoElementAnnotator<ProtoGroupDefinition>() {
+          @Override
+          public void annotate(ProtoGroupDefinition groupDefinition,
+                               AnnotationHolder annotationHolder) {
+            annotateName(groupDefinition, annotationHolder,
+                         ProtoTextAttributes.ATTR_GROUP_NAME);
+          }
+        })
+        .put(ProtoSimpleProperty.class, new ProtoElementAnnotator<ProtoSimpleProperty>() {
+          @Override
+          public void annotate(ProtoSimpleProperty property, AnnotationHolder annotationHolder) {
+            checkName(property.getNameElement(), annotationHolder, false);
+          }
+        })
+        .put(ProtoMessageProperty.class, new ProtoElementAnnotator<ProtoMessageProperty>() {
+          @Override
+          public void annotate(ProtoMessageProperty messageProperty,
+                               AnnotationHolder annotationHolder) {
+            checkName(messageProperty.getNameElement(), annotationHolder, false);
+          }
+        })
+        .put(ProtoMessageDefinition.class, new ProtoElementAnnotator<ProtoMessageDefinition>() {
+          @Override
+          public void annotate(ProtoMessageDefinition messageDefinition,
+                               AnnotationHolder annotationHolder) {
+            PsiElement nameElement = messageDefinition.getNameElement();
+            if (nameElement != null) {
+              checkName(nameElement, annotationHolder, true,
+                        messageDefinition.getName());
+              Annotation anno = annotationHolder
+                  .createInfoAnnotation(nameElement, null);
+              anno.setTextAttributes(ProtoTextAttributes.ATTR_MESSAGE_NAME);
+            }
+          }
+        })
+        .put(ProtoServiceDefinition.class, new ProtoElementAnnotator<ProtoServiceDefinition>() {
+          @Override
+          public void annotate(ProtoServiceDefinition serviceDefinition,
+                               AnnotationHolder annotationHolder) {
+            checkName(serviceDefinition.getNameElement(), annotationHolder, true);
+            annotateName(serviceDefinition, annotationHolder,
+                ProtoTextAttributes.ATTR_SERVICE_NAME);
+          }
+        })
+        .put(ProtoRpcDefinition.class, new ProtoElementAnnotator<ProtoRpcDefinition>() {
+          @Override
+          public void annotate(ProtoRpcDefinition rpcDefinition,
+                               AnnotationHolder annotationHolder) {
+            annotateName(rpcDefinition, annotationHolder,
+                ProtoTextAttributes.ATTR_RPC_NAME);
+            checkName(rpcDefinition.getNameElement(), annotationHolder, false);
+          }
+        })
+        .put(ProtoProperty.class, new ProtoElementAnnotator<ProtoProperty>() {
+          @Override
+          public void annotate(ProtoProperty property, AnnotationHolder annotationHolder) {
+            annotateName(property, annotationHolder,
+                         ProtoTextAttributes.ATTR_PROPERTY_NAME);
+          }
+        })
+        .build();
   }
 
   private void annotateName(ProtoNamedElement el,
@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.validation;
+
+/**
+ * Groups of semantic checks that are reported by inspections rather than by the annotator, so
+ * they can run in batch mode, be suppressed and be limited to a scope.
+ */
+public enum ProtoCheckFamily {
+  /** Field number uniqueness and ranges. */
+  IDS,
+  /** Duplicate and clashing names of properties, definitions and RPCs. */
+  NAMES,
+  /** Duplicate enum names, constant names and constant values. */
+  ENUMS,
+  /** Unknown, invalid and overwritten options. */
+  OPTIONS,
+  /** Messages not used by any service of the file. */
+  UNUSED_MESSAGES,
+  /** Definitions and extension numbers that collide with other files of the project. */
+  COLLISIONS
+}
@@ -0,0 +1,34 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.validation;
+
+import java.util.Map;
+
+/**
+ * Optional interface of {@link ProtoValidatorExtn}s that contribute checks to the inspections
+ * of the {@link ProtoCheckFamily}s. Extensions that do not implement it only contribute to the
+ * annotator.
+ */
+public interface ProtoCheckFamilyExtn {
+
+  /**
+   * Returns the checks of the given family contributed by this extension. These are run by the
+   * inspection of that family instead of the annotator, and are combined across extensions in
+   * the same way as {@link ProtoValidatorExtn#getAnnotators()}.
+   */
+  Map<Class, ProtoElementAnnotator> getAnnotators(ProtoCheckFamily family);
+}
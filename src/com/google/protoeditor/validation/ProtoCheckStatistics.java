@@ -0,0 +1,205 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.validation;
+
+import com.google.common.collect.Lists;
+import com.google.protoeditor.metrics.ProtoMetrics;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiElement;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects invocation counts, time and allocations of the validator checks of a project.
+ * <p>
+ * Collection is off by default and switched together with the plugin-wide {@link ProtoMetrics}.
+ * While it is off, callers only read a volatile flag through
+ * {@link #getInstanceIfEnabled(PsiElement)}; no service is looked up and nothing is measured.
+ * Allocations are measured with the per-thread allocation counter of the JVM when it is
+ * available, and reported as zero otherwise.
+ */
+public class ProtoCheckStatistics {
+
+  private static final Logger LOG = Logger.getInstance(ProtoCheckStatistics.class.getName());
+
+  public static boolean isEnabled() {
+    return ProtoMetrics.isEnabled();
+  }
+
+  public static void setEnabled(boolean enabled) {
+    ProtoMetrics.setEnabled(enabled);
+  }
+
+  public static ProtoCheckStatistics getInstance(Project project) {
+    return ServiceManager.getService(project, ProtoCheckStatistics.class);
+  }
+
+  /**
+   * Returns the statistics of the project of the given element, or {@code null} if collection
+   * is disabled.
+   */
+  @Nullable
+  public static ProtoCheckStatistics getInstanceIfEnabled(PsiElement context) {
+    return ProtoMetrics.isEnabled() ? getInstance(context.getProject()) : null;
+  }
+
+  private final ConcurrentMap<String, CheckStatistics> checks =
+      new ConcurrentHashMap<String, CheckStatistics>();
+  private final com.sun.management.ThreadMXBean allocationCounter;
+
+  public ProtoCheckStatistics() {
+    ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    if (threadBean instanceof com.sun.management.ThreadMXBean
+        && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported()) {
+      allocationCounter = (com.sun.management.ThreadMXBean) threadBean;
+    } else {
+      allocationCounter = null;
+    }
+  }
+
+  /**
+   * Returns the number of bytes allocated so far by the current thread, to be passed to
+   * {@link #record(String, long, long)} when the check completes.
+   */
+  public long getAllocatedBytes() {
+    if (allocationCounter == null) {
+      return 0;
+    }
+    return allocationCounter.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Records one invocation of the given check that started at {@code startNanos}, as returned
+   * by {@link System#nanoTime()}, when the thread had allocated {@code startAllocatedBytes}.
+   */
+  public void record(String check, long startNanos, long startAllocatedBytes) {
+    long nanos = System.nanoTime() - startNanos;
+    long allocatedBytes = Math.max(0, getAllocatedBytes() - startAllocatedBytes);
+    CheckStatistics statistics = checks.get(check);
+    if (statistics == null) {
+      statistics = new CheckStatistics(check);
+      CheckStatistics existing = checks.putIfAbsent(check, statistics);
+      if (existing != null) {
+        statistics = existing;
+      }
+    }
+    statistics.record(nanos, allocatedBytes);
+  }
+
+  public void reset() {
+    checks.clear();
+  }
+
+  /**
+   * Returns the statistics of all checks invoked so far, the most expensive first.
+   */
+  public List<CheckStatistics> getStatistics() {
+    List<CheckStatistics> statistics = Lists.newArrayList(checks.values());
+    Collections.sort(statistics, new Comparator<CheckStatistics>() {
+      @Override
+      public int compare(CheckStatistics a, CheckStatistics b) {
+        long totalA = a.getTotalNanos();
+        long totalB = b.getTotalNanos();
+        return totalA > totalB ? -1 : (totalA == totalB ? 0 : 1);
+      }
+    });
+    return statistics;
+  }
+
+  /**
+   * Returns a plain text table of the statistics of all checks.
+   */
+  public String getReport() {
+    StringBuilder report = new StringBuilder();
+    report.append(String.format("%-48s %10s %12s %10s %14s%n",
+        "check", "count", "total ms", "max ms", "allocated KB"));
+    for (CheckStatistics statistics : getStatistics()) {
+      report.append(String.format("%-48s %10d %12.2f %10.2f %14d%n",
+          statistics.getName(),
+          statistics.getCount(),
+          statistics.getTotalNanos() / 1e6,
+          statistics.getMaxNanos() / 1e6,
+          statistics.getAllocatedBytes() / 1024));
+    }
+    return report.toString();
+  }
+
+  /**
+   * Writes the report to the IDE log.
+   */
+  public void dumpToLog() {
+    LOG.info("Proto check statistics:\n" + getReport());
+  }
+
+  /**
+   * Counters of a single check.
+   */
+  public static class CheckStatistics {
+
+    private final String name;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+
+    CheckStatistics(String name) {
+      this.name = name;
+    }
+
+    void record(long nanos, long bytes) {
+      count.incrementAndGet();
+      totalNanos.addAndGet(nanos);
+      allocatedBytes.addAndGet(bytes);
+      long max = maxNanos.get();
+      while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+        max = maxNanos.get();
+      }
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getCount() {
+      return count.get();
+    }
+
+    public long getTotalNanos() {
+      return totalNanos.get();
+    }
+
+    public long getMaxNanos() {
+      return maxNanos.get();
+    }
+
+    public long getAllocatedBytes() {
+      return allocatedBytes.get();
+    }
+  }
+}
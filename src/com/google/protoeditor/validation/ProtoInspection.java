@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.validation;
+
+import com.google.common.collect.Lists;
+
+import com.intellij.codeInspection.LocalInspectionTool;
+import com.intellij.codeInspection.ProblemsHolder;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiElementVisitor;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base class of the inspections that report one {@link ProtoCheckFamily} of checks.
+ * <p>
+ * The checks are the same {@link ProtoElementAnnotator}s the validator extensions contribute
+ * for the family through {@link ProtoCheckFamilyExtn}; their annotations are reported to the
+ * {@link ProblemsHolder}, so the checks take part in batch inspection, scopes and suppression.
+ */
+public abstract class ProtoInspection extends LocalInspectionTool {
+
+  private final ProtoCheckFamily family;
+  private volatile AnnotatorDispatchTable dispatchTable;
+
+  protected ProtoInspection(ProtoCheckFamily family) {
+    this.family = family;
+  }
+
+  @NotNull
+  @Override
+  public PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
+    final AnnotatorDispatchTable table = getDispatchTable();
+    final ProblemAnnotationHolder annotations = new ProblemAnnotationHolder(holder);
+    return new PsiElementVisitor() {
+      @Override
+      public void visitElement(PsiElement element) {
+        table.annotate(element, annotations);
+        annotations.flush();
+      }
+    };
+  }
+
+  private AnnotatorDispatchTable getDispatchTable() {
+    AnnotatorDispatchTable table = dispatchTable;
+    if (table == null) {
+      List<Map<Class, ProtoElementAnnotator>> tables = Lists.newArrayList();
+      for (ProtoValidatorExtn extension : ProtoAnnotator.getValidatorExtensions()) {
+        if (extension instanceof ProtoCheckFamilyExtn) {
+          tables.add(((ProtoCheckFamilyExtn) extension).getAnnotators(family));
+        }
+      }
+      table = new AnnotatorDispatchTable(family.name().toLowerCase(), tables);
+      dispatchTable = table;
+    }
+    return table;
+  }
+}
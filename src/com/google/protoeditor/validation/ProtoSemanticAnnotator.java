@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.validation;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.protoeditor.psi.ProtoMessageTypeReference;
+
+import com.intellij.lang.annotation.AnnotationHolder;
+import com.intellij.lang.annotation.ExternalAnnotator;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Reports message type references that do not resolve.
+ * <p>
+ * Resolving a type may search the whole project, so it is not done by {@link ProtoAnnotator}.
+ * The references of the file are collected under the read action of the highlighting pass, and
+ * then resolved in the background, one short read action per reference, so that typing is not
+ * blocked. The pass gives up as soon as the file changes; the daemon restarts it afterwards.
+ */
+public class ProtoSemanticAnnotator
+    extends ExternalAnnotator<ProtoSemanticAnnotator.Snapshot, List<ProtoMessageTypeReference>> {
+
+  private static final String RESOLVE_CHECK = "semantic:resolve";
+
+  private final ProtoValidator validator = new ProtoValidator();
+
+  @Nullable
+  @Override
+  public Snapshot collectInformation(@NotNull PsiFile file) {
+    return new Snapshot(file);
+  }
+
+  @Nullable
+  @Override
+  public Snapshot collectInformation(@NotNull PsiFile file, @NotNull Editor editor,
+                                     boolean hasErrors) {
+    // Unknown types are worth reporting even while the file has syntax errors.
+    return collectInformation(file);
+  }
+
+  @Nullable
+  @Override
+  public List<ProtoMessageTypeReference> doAnnotate(final Snapshot snapshot) {
+    List<ProtoMessageTypeReference> unresolved = Lists.newArrayList();
+    for (final ProtoMessageTypeReference ref : snapshot.references) {
+      ProgressManager.checkCanceled();
+      Boolean resolved = ApplicationManager.getApplication().runReadAction(
+          new Computable<Boolean>() {
+            @Override
+            public Boolean compute() {
+              if (snapshot.isOutdated()) {
+                return null;
+              }
+              ProtoCheckStatistics statistics = ProtoCheckStatistics.getInstanceIfEnabled(ref);
+              if (statistics == null) {
+                return ref.resolve() != null;
+              }
+              long startNanos = System.nanoTime();
+              long startAllocatedBytes = statistics.getAllocatedBytes();
+              try {
+                return ref.resolve() != null;
+              } finally {
+                statistics.record(RESOLVE_CHECK, startNanos, startAllocatedBytes);
+              }
+            }
+          });
+      if (resolved == null) {
+        return null;
+      }
+      if (!resolved) {
+        unresolved.add(ref);
+      }
+    }
+    return unresolved;
+  }
+
+  @Override
+  public void apply(@NotNull PsiFile file, List<ProtoMessageTypeReference> unresolved,
+                    @NotNull AnnotationHolder annotationHolder) {
+    if (unresolved == null) {
+      return;
+    }
+    for (ProtoMessageTypeReference ref : unresolved) {
+      if (ref.isValid()) {
+        validator.annotateUnknownMessageType(ref, annotationHolder);
+      }
+    }
+  }
+
+  /**
+   * The message type references of a file, together with the modification stamp of the file
+   * at the time they were collected.
+   */
+  static class Snapshot {
+
+    private final PsiFile file;
+    private final long modificationStamp;
+    private final List<ProtoMessageTypeReference> references;
+
+    Snapshot(PsiFile file) {
+      this.file = file;
+      this.modificationStamp = file.getModificationStamp();
+      this.references = ImmutableList.copyOf(
+          PsiTreeUtil.findChildrenOfType(file, ProtoMessageTypeReference.class));
+    }
+
+    boolean isOutdated() {
+      return !file.isValid() || file.getModificationStamp() != modificationStamp;
+    }
+  }
+}
@@ -0,0 +1,32 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.validation;
+
+/**
+ * Reports messages that are not used by any service of the file.
+ */
+public class ProtoUnusedMessageInspection extends ProtoInspection {
+
+  public ProtoUnusedMessageInspection() {
+    super(ProtoCheckFamily.UNUSED_MESSAGES);
+  }
+
+  @Override
+  public boolean runForWholeFile() {
+    return true;
+  }
+}
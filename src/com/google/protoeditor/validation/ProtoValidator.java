@@ -17,11 +17,19 @@
 package com.google.protoeditor.validation;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.SetMultimap;
+import com.google.protoeditor.index.ProtoCollisionIndex;
+import com.google.protoeditor.index.ProtoCollisionIndex.CollisionKey;
+import com.google.protoeditor.index.ProtoCollisionIndex.CollisionType;
 import com.google.protoeditor.lex.ProtoTextAttributes;
 import com.google.protoeditor.lex.ProtoTokenTypes;
+import com.google.protoeditor.metrics.ProtoMetrics;
 import com.google.protoeditor.psi.ProtoAbstractIntegerLiteral;
 import com.google.protoeditor.psi.ProtoChangeTools;
 import com.google.protoeditor.psi.ProtoCustomOptionName;
@@ -32,6 +40,9 @@ import com.google.protoeditor.psi.ProtoEnumConstant;
 import com.google.protoeditor.psi.ProtoEnumDefinition;
 import com.google.protoeditor.psi.ProtoEnumValue;
 import com.google.protoeditor.psi.ProtoExtendDefinition;
+import com.google.protoeditor.psi.ProtoExtensionsLowerBound;
+import com.google.protoeditor.psi.ProtoExtensionsStatement;
+import com.google.protoeditor.psi.ProtoExtensionsUpperBound;
 import com.google.protoeditor.psi.ProtoFile;
 import com.google.protoeditor.psi.ProtoFileOptionStatement;
 import com.google.protoeditor.psi.ProtoGroupDefinition;
@@ -67,14 +78,23 @@ import com.intellij.lang.ASTNode;
 import com.intellij.lang.annotation.Annotation;
 import com.intellij.lang.annotation.AnnotationHolder;
 import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
-import com.intellij.psi.PsiRecursiveElementVisitor;
 import com.intellij.psi.codeStyle.CodeStyleManager;
 import com.intellij.psi.impl.source.tree.LeafPsiElement;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.IncorrectOperationException;
+import com.intellij.util.indexing.FileBasedIndex;
+
+import gnu.trove.TLongArrayList;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -85,10 +105,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedMap;
-import java.util.SortedSet;
-import java.util.TreeMap;
-import java.util.TreeSet;
 import java.util.regex.Pattern;
 
 /**
@@ -97,7 +113,13 @@ import java.util.regex.Pattern;
  */
 // TODO: Clean up this class when implementing syntax highlighting for new features.
 // Fix old comments, and implement old TODOs.
-public class ProtoValidator implements ProtoValidatorExtn {
+public class ProtoValidator implements ProtoValidatorExtn, ProtoCheckFamilyExtn {
+
+  /**
+   * The field numbers reserved for the implementation of protocol buffers.
+   */
+  static final long FIRST_RESERVED_FIELD_NUMBER = 19000;
+  static final long LAST_RESERVED_FIELD_NUMBER = 19999;
 
   private static final List<ProtoPrimitive> INTEGER_PRIMITIVES = Arrays.asList(
       ProtoPrimitive.FIXED32,
@@ -124,24 +146,197 @@ public class ProtoValidator implements ProtoValidatorExtn {
       .asList(ProtoPrimitive.DOUBLE, ProtoPrimitive.FLOAT);
   private static final Pattern PATTERN_PACKAGE_NAME = Pattern.compile(
       "([a-zA-Z_][a-zA-Z_0-9]*)+(\\.([a-zA-Z_][a-zA-Z_0-9]*)+)*");
+  private static final Key<CachedValue<PropertyNameClashes>> PROPERTY_NAME_CLASHES_KEY
+      = Key.create("PROTO_PROPERTY_NAME_CLASHES");
 
-  //TODO: show gutter marker for classes generated from proto classes
   //TODO: add completion for keywords
   //TODO: resolve message names from other proto-files and from classpath
   //TODO: move members refactoring (to move elements between files)
   //TODO: show "reassign ID" as intention
-  //TODO: convert some warnings to inspections
   //TODO: add intention for assigning id when missing id or =id for property and enum constant
   //TODO: accept "," in constant list, provide intention to convert to ";"
   //TODO: add refactoring: convert group to message
 
+  @Override
   public Map<Class, ProtoElementAnnotator> getAnnotators() {
     return ImmutableMap.<Class, ProtoElementAnnotator>builder()
         .put(ProtoSyntaxStatement.class, new SyntaxStatementAnnotator())
-        .put(ProtoFileOptionStatement.class, new FileOptionStatementAnnotator())
+        .put(ProtoSimpleProperty.class, new ProtoElementAnnotator<ProtoSimpleProperty>() {
+          @Override
+          public void annotate(ProtoSimpleProperty element, AnnotationHolder annotationHolder) {
+            checkDefaultValueType(element, annotationHolder);
+          }
+        })
+        .put(ProtoFile.class, new ProtoElementAnnotator<ProtoFile>() {
+          @Override
+          public void annotate(ProtoFile element, AnnotationHolder annotationHolder) {
+            checkDuplicatePackageStatements(element, annotationHolder);
+          }
+        })
+        .put(ProtoIntegerLiteral.class, new ProtoElementAnnotator<ProtoIntegerLiteral>() {
+          @Override
+          public void annotate(ProtoIntegerLiteral element, AnnotationHolder annotationHolder) {
+            checkIntegerLiteralValue(element, annotationHolder);
+          }
+        })
+        .put(ProtoProperty.class, new ProtoElementAnnotator<ProtoProperty>() {
+          @Override
+          public void annotate(ProtoProperty element, AnnotationHolder annotationHolder) {
+            checkPropertyId(element, annotationHolder);
+          }
+        })
+        .put(ProtoPackageStatement.class, new ProtoElementAnnotator<ProtoPackageStatement>() {
+          @Override
+          public void annotate(ProtoPackageStatement element, AnnotationHolder annotationHolder) {
+            checkPackageStatement(element, annotationHolder);
+          }
+        })
+        .put(ProtoHexLiteral.class, new ProtoElementAnnotator<ProtoHexLiteral>() {
+          @Override
+          public void annotate(ProtoHexLiteral element, AnnotationHolder annotationHolder) {
+            checkHexLiteral(element, annotationHolder);
+          }
+        })
+        .put(LeafPsiElement.class, new ProtoElementAnnotator<LeafPsiElement>() {
+          @Override
+          public void annotate(LeafPsiElement element, AnnotationHolder annotationHolder) {
+            checkLeafs(element, annotationHolder);
+          }
+        })
         .build();
   }
 
+  @Override
+  public Map<Class, ProtoElementAnnotator> getAnnotators(ProtoCheckFamily family) {
+    switch (family) {
+      case IDS:
+        return getIdAnnotators();
+      case NAMES:
+        return getNameAnnotators();
+      case ENUMS:
+        return getEnumAnnotators();
+      case OPTIONS:
+        return getOptionAnnotators();
+      case UNUSED_MESSAGES:
+        return getUnusedMessageAnnotators();
+      case COLLISIONS:
+        return getCollisionAnnotators();
+      default:
+        throw new IllegalArgumentException("unknown check family " + family);
+    }
+  }
+
+  private Map<Class, ProtoElementAnnotator> getIdAnnotators() {
+    return ImmutableMap.<Class, ProtoElementAnnotator>of(
+        ProtoMessageDefinition.class, new ProtoElementAnnotator<ProtoMessageDefinition>() {
+          @Override
+          public void annotate(ProtoMessageDefinition element, AnnotationHolder annotationHolder) {
+            if (element.getDefinitionBody() != null) {
+              checkPropertyIds(element, annotationHolder);
+              checkExtensionRanges(element, annotationHolder);
+            }
+          }
+        },
+        ProtoExtensionsStatement.class, new ProtoElementAnnotator<ProtoExtensionsStatement>() {
+          @Override
+          public void annotate(ProtoExtensionsStatement element,
+              AnnotationHolder annotationHolder) {
+            checkExtensionsBounds(element, annotationHolder);
+          }
+        },
+        ProtoExtendDefinition.class, new ProtoElementAnnotator<ProtoExtendDefinition>() {
+          @Override
+          public void annotate(ProtoExtendDefinition element, AnnotationHolder annotationHolder) {
+            checkExtensionNumbers(element, annotationHolder);
+          }
+        });
+  }
+
+  private Map<Class, ProtoElementAnnotator> getNameAnnotators() {
+    return ImmutableMap.<Class, ProtoElementAnnotator>builder()
+        .put(ProtoGroupDefinition.class, new ProtoElementAnnotator<ProtoGroupDefinition>() {
+          @Override
+          public void annotate(ProtoGroupDefinition element, AnnotationHolder annotationHolder) {
+            checkGroupNameCase(element, annotationHolder);
+          }
+        })
+        .put(ProtoDefinitionBody.class, new ProtoElementAnnotator<ProtoDefinitionBody>() {
+          @Override
+          public void annotate(ProtoDefinitionBody element, AnnotationHolder annotationHolder) {
+            checkProperties(element, annotationHolder);
+          }
+        })
+        .put(ProtoFile.class, new ProtoElementAnnotator<ProtoFile>() {
+          @Override
+          public void annotate(ProtoFile element, AnnotationHolder annotationHolder) {
+            checkDuplicateNames(element, annotationHolder);
+          }
+        })
+        .put(ProtoServiceDefinition.class, new ProtoElementAnnotator<ProtoServiceDefinition>() {
+          @Override
+          public void annotate(ProtoServiceDefinition element, AnnotationHolder annotationHolder) {
+            checkRpcNames(element, annotationHolder);
+          }
+        })
+        .put(ProtoProperty.class, new ProtoElementAnnotator<ProtoProperty>() {
+          @Override
+          public void annotate(ProtoProperty element, AnnotationHolder annotationHolder) {
+            checkParentNameClash(element, annotationHolder);
+          }
+        })
+        .build();
+  }
+
+  private Map<Class, ProtoElementAnnotator> getEnumAnnotators() {
+    return ImmutableMap.<Class, ProtoElementAnnotator>of(
+        ProtoDefinitionBody.class, new ProtoElementAnnotator<ProtoDefinitionBody>() {
+          @Override
+          public void annotate(ProtoDefinitionBody element, AnnotationHolder annotationHolder) {
+            checkEnums(element, annotationHolder);
+          }
+        });
+  }
+
+  private Map<Class, ProtoElementAnnotator> getOptionAnnotators() {
+    return ImmutableMap.<Class, ProtoElementAnnotator>of(
+        ProtoFileOptionStatement.class, new FileOptionStatementAnnotator(),
+        ProtoServiceDefinition.class, new ProtoElementAnnotator<ProtoServiceDefinition>() {
+          @Override
+          public void annotate(ProtoServiceDefinition element, AnnotationHolder annotationHolder) {
+            ProtoServiceBody serviceBody = element.getServiceBody();
+            if (serviceBody != null) {
+              checkOptionOverwritten(serviceBody, annotationHolder);
+            }
+          }
+        },
+        ProtoRpcDefinition.class, new ProtoElementAnnotator<ProtoRpcDefinition>() {
+          @Override
+          public void annotate(ProtoRpcDefinition element, AnnotationHolder annotationHolder) {
+            checkRpcDefinition(element, annotationHolder);
+          }
+        });
+  }
+
+  private Map<Class, ProtoElementAnnotator> getUnusedMessageAnnotators() {
+    return ImmutableMap.<Class, ProtoElementAnnotator>of(
+        ProtoFile.class, new ProtoElementAnnotator<ProtoFile>() {
+          @Override
+          public void annotate(ProtoFile element, AnnotationHolder annotationHolder) {
+            checkUnusedMessages(element, annotationHolder);
+          }
+        });
+  }
+
+  private Map<Class, ProtoElementAnnotator> getCollisionAnnotators() {
+    return ImmutableMap.<Class, ProtoElementAnnotator>of(
+        ProtoFile.class, new ProtoElementAnnotator<ProtoFile>() {
+          @Override
+          public void annotate(ProtoFile element, AnnotationHolder annotationHolder) {
+            checkCrossFileCollisions(element, annotationHolder);
+          }
+        });
+  }
+
   public void checkRpcDefinition(ProtoRpcDefinition rpcDefinition,
       AnnotationHolder annotationHolder) {
     ProtoRpcBody rpcBody = rpcDefinition.getRpcBody();
@@ -290,75 +485,210 @@ public class ProtoValidator implements ProtoValidatorExtn {
 
   public void checkPropertyIds(ProtoMessageDefinition messageDefinition,
       AnnotationHolder annotationHolder) {
-    SortedMap<Long, Set<ProtoProperty>> usedValues = new TreeMap<Long, Set<ProtoProperty>>();
+    List<ProtoProperty> props = new ArrayList<ProtoProperty>();
+    TLongArrayList ids = new TLongArrayList();
     ProtoDefinitionBody body = messageDefinition.getDefinitionBody();
-    addUsedValues(usedValues, body);
-    for (Map.Entry<Long, Set<ProtoProperty>> entry : usedValues
-        .entrySet()) {
-      Set<ProtoProperty> props = entry.getValue();
-      if (props.size() > 1) {
-        for (ProtoProperty prop : props) {
-          ProtoPropertyId protoIdElement = prop.getProtoIdElement();
-          if (protoIdElement != null) {
-            ProtoAbstractIntegerLiteral idEl = protoIdElement.getIdLiteral();
-            Annotation anno = annotationHolder.createErrorAnnotation(idEl,
-                                                                     "multiple properties have ID "
-                                                                     + entry.getKey());
-            anno.registerFix(new ReassignIdAction(prop, false));
-          }
-        }
+    addUsedValues(props, ids, body, null);
+    SortedIdSet duplicatedIds = SortedIdSet.duplicatesOf(ids);
+    if (duplicatedIds.isEmpty()) {
+      return;
+    }
+    for (int i = 0; i < props.size(); i++) {
+      long id = ids.get(i);
+      if (duplicatedIds.contains(id)) {
+        ProtoProperty prop = props.get(i);
+        ProtoAbstractIntegerLiteral idEl = prop.getProtoIdElement().getIdLiteral();
+        Annotation anno = annotationHolder.createErrorAnnotation(idEl,
+                                                                 "multiple properties have ID "
+                                                                 + id);
+        anno.registerFix(new ReassignIdAction(prop, false));
+      }
+    }
+  }
+
+  /**
+   * Returns the smallest field number of at least {@code from} that is not used, not in one of
+   * the extension ranges and not reserved, or {@code -1} if there is none up to the largest
+   * field number.
+   */
+  @VisibleForTesting
+  static long nextFreeFieldNumber(SortedIdSet used, ExtensionRanges ranges, long from) {
+    long number = from;
+    while (number <= ProtoExtensionsUpperBound.MAX_FIELD_NUMBER) {
+      number = used.nextFreeId(number);
+      ProtoExtensionsStatement range = ranges.findRange(number);
+      if (range != null) {
+        number = range.getUpperBound().getValue() + 1;
+      } else if (number >= FIRST_RESERVED_FIELD_NUMBER && number <= LAST_RESERVED_FIELD_NUMBER) {
+        number = LAST_RESERVED_FIELD_NUMBER + 1;
+      } else {
+        return number <= ProtoExtensionsUpperBound.MAX_FIELD_NUMBER ? number : -1;
       }
     }
+    return -1;
   }
 
-  private void addUsedValues(SortedMap<Long, Set<ProtoProperty>> usedValues,
-                             ProtoDefinitionBody body) {
+  /**
+   * Reports extension ranges with bounds that are out of order or not valid field numbers.
+   */
+  public void checkExtensionsBounds(ProtoExtensionsStatement statement,
+      AnnotationHolder annotationHolder) {
+    if (!statement.hasValidBounds()) {
+      return;
+    }
+    ProtoExtensionsLowerBound lowerBound = statement.getLowerBound();
+    ProtoExtensionsUpperBound upperBound = statement.getUpperBound();
+    long lower = lowerBound.getValue();
+    long upper = upperBound.getValue();
+    if (lower > upper) {
+      annotationHolder.createErrorAnnotation(statement, "extensions lower bound " + lower
+                                                        + " is greater than upper bound " + upper);
+    } else if (lower <= 0) {
+      annotationHolder.createErrorAnnotation(lowerBound, "extension numbers must be positive");
+    } else if (upper > ProtoExtensionsUpperBound.MAX_FIELD_NUMBER) {
+      annotationHolder.createErrorAnnotation(upperBound, "extension numbers must not be greater "
+          + "than " + ProtoExtensionsUpperBound.MAX_FIELD_NUMBER);
+    }
+  }
+
+  /**
+   * Reports overlapping extension ranges of the given message, and properties of the message
+   * whose ID is in one of its extension ranges.
+   */
+  public void checkExtensionRanges(ProtoMessageDefinition messageDefinition,
+      AnnotationHolder annotationHolder) {
+    ExtensionRanges ranges = ExtensionRanges.getInstance(messageDefinition);
+    if (ranges.isEmpty()) {
+      return;
+    }
+    for (ProtoExtensionsStatement statement : ranges.getOverlappingRanges()) {
+      annotationHolder.createErrorAnnotation(statement,
+                                             "extension range overlaps another extension range");
+    }
+    List<ProtoProperty> props = new ArrayList<ProtoProperty>();
+    TLongArrayList ids = new TLongArrayList();
+    addUsedValues(props, ids, messageDefinition.getDefinitionBody(), null);
+    for (int i = 0; i < props.size(); i++) {
+      long id = ids.get(i);
+      if (ranges.contains(id)) {
+        annotationHolder.createErrorAnnotation(props.get(i).getProtoIdElement().getIdLiteral(),
+                                               "property ID " + id
+                                               + " is reserved for extensions");
+      }
+    }
+  }
+
+  /**
+   * Reports properties of an extend definition whose ID is not in an extension range of the
+   * extended message. The extended message may be in another file.
+   */
+  public void checkExtensionNumbers(ProtoExtendDefinition extendDefinition,
+      AnnotationHolder annotationHolder) {
+    ProtoDefinitionBody body = extendDefinition.getDefinitionBody();
+    if (body == null) {
+      return;
+    }
+    ProtoMessageDefinition extendee = ExtensionRanges.findExtendee(extendDefinition);
+    if (extendee == null) {
+      return;
+    }
+    ExtensionRanges ranges = ExtensionRanges.getInstance(extendee);
+    TLongArrayList ids = new TLongArrayList();
+    List<ProtoProperty> props = new ArrayList<ProtoProperty>();
+    addUsedValues(props, ids, body, null);
+    for (int i = 0; i < props.size(); i++) {
+      long id = ids.get(i);
+      if (!ranges.contains(id)) {
+        annotationHolder.createErrorAnnotation(props.get(i).getProtoIdElement().getIdLiteral(),
+                                               "property ID " + id
+                                               + " is not in an extension range of "
+                                               + extendee.getName());
+      }
+    }
+  }
+
+  /**
+   * Collects the properties with a valid ID, and their IDs at the same positions, from the
+   * given body and the bodies of its groups.
+   */
+  private static void addUsedValues(List<ProtoProperty> props, TLongArrayList ids,
+                                    ProtoDefinitionBody body, ProtoProperty except) {
     for (ProtoProperty property : body.getProperties()) {
       ProtoPropertyId protoIdElement = property.getProtoIdElement();
-      if (protoIdElement != null) {
+      if (property != except && protoIdElement != null) {
         ProtoAbstractIntegerLiteral idLiteral = protoIdElement.getIdLiteral();
         if (idLiteral != null && idLiteral.hasValidValue()) {
-          long idVal = idLiteral.getIntValue();
-          Set<ProtoProperty> props = usedValues.get(idVal);
-          if (props == null) {
-            props = new HashSet<ProtoProperty>(5);
-            usedValues.put(idVal, props);
+          if (props != null) {
+            props.add(property);
           }
-          props.add(property);
+          ids.add(idLiteral.getIntValue());
         }
       }
       if (property instanceof ProtoGroupDefinition) {
         ProtoGroupDefinition groupDefinition = (ProtoGroupDefinition) property;
+        ProtoDefinitionBody groupBody = groupDefinition.getDefinitionBody();
+        if (groupBody != null) {
+          addUsedValues(props, ids, groupBody, except);
+        }
+      }
+    }
+  }
 
-        addUsedValues(usedValues, groupDefinition.getDefinitionBody());
+  /**
+   * Reports definitions and extension numbers of the given file that other files of the project
+   * define as well. Only the keys of this file are looked up in {@link ProtoCollisionIndex}, so
+   * the cost does not depend on the size of the project.
+   */
+  public void checkCrossFileCollisions(ProtoFile file, AnnotationHolder annotationHolder) {
+    VirtualFile vFile = file.getVirtualFile();
+    if (vFile == null) {
+      return;
+    }
+    GlobalSearchScope scope = GlobalSearchScope.projectScope(file.getProject());
+    ListMultimap<CollisionKey, PsiElement> keys = ProtoCollisionIndex.getCollisionKeys(file);
+    for (CollisionKey key : keys.keySet()) {
+      ProgressManager.checkCanceled();
+      List<String> otherFiles = getOtherDefiningFiles(key, vFile, scope);
+      if (otherFiles.isEmpty()) {
+        continue;
+      }
+      String message;
+      if (key.getType() == CollisionType.DEFINITION) {
+        message = "'" + key.getName() + "' is also defined in ";
+      } else {
+        message = "extension number " + key.getNumber() + " of '" + key.getName()
+                  + "' is also used in ";
+      }
+      message += Joiner.on(", ").join(otherFiles);
+      for (PsiElement element : keys.get(key)) {
+        annotationHolder.createErrorAnnotation(element, message);
       }
     }
   }
 
-  public void checkUnusedMessages(ProtoFile file, AnnotationHolder annotationHolder) {
-    List<ProtoServiceDefinition> serviceDefinitions = file.getServiceDefinitions();
-    final Set<String> used = new HashSet<String>();
-    boolean hasServices = false;
-    for (ProtoServiceDefinition protoServiceDefinition : serviceDefinitions) {
-      hasServices = true;
-      protoServiceDefinition.accept(new UsedTypeNameCollector(used));
-    }
-    if (hasServices) {
-      List<ProtoMessageDefinition> msgs = file.getMessageDefinitions();
-      Set<String> tried = new HashSet<String>();
-      boolean tryAgain = true;
-      while (tryAgain) {
-        tryAgain = false;
-        for (ProtoMessageDefinition messageDefinition : msgs) {
-          String name = messageDefinition.getName();
-          if (!tried.contains(name) && used.contains(name)) {
-            tried.add(name);
-            tryAgain = true;
-            messageDefinition.accept(new UsedTypeNameCollector(used));
+  private static List<String> getOtherDefiningFiles(CollisionKey key, final VirtualFile vFile,
+      GlobalSearchScope scope) {
+    final List<String> fileNames = new ArrayList<String>();
+    FileBasedIndex.getInstance().processValues(ProtoCollisionIndex.NAME, key, null,
+        new FileBasedIndex.ValueProcessor<Void>() {
+          @Override
+          public boolean process(VirtualFile file, Void value) {
+            ProgressManager.checkCanceled();
+            if (!file.equals(vFile)) {
+              fileNames.add(file.getName());
+            }
+            return true;
           }
-        }
-      }
-      for (ProtoMessageDefinition msg : msgs) {
+        }, scope);
+    return fileNames;
+  }
+
+  public void checkUnusedMessages(ProtoFile file, AnnotationHolder annotationHolder) {
+    MessageDependencyGraph graph = MessageDependencyGraph.getInstance(file);
+    if (graph.hasServices()) {
+      Set<String> used = graph.getReachableFromServices();
+      for (ProtoMessageDefinition msg : file.getMessageDefinitions()) {
+        ProgressManager.checkCanceled();
         String name = msg.getName();
         if (name == null) {
           continue;
@@ -434,21 +764,31 @@ public class ProtoValidator implements ProtoValidatorExtn {
 
   public void checkMessageTypeReference(final ProtoMessageTypeReference ref,
       AnnotationHolder annotationHolder) {
-    final String referencedName = ref.getReferencedName();
     if (ref.resolve() == null) {
-      Annotation anno = annotationHolder.createErrorAnnotation(ref,
-                                                               "unknown message type "
-                                                               + referencedName);
-      anno.setHighlightType(ProblemHighlightType.LIKE_UNKNOWN_SYMBOL);
-      anno.registerFix(new CreateMessageAction(referencedName, ref));
+      annotateUnknownMessageType(ref, annotationHolder);
     }
   }
 
+  /**
+   * Reports a message type reference that does not resolve. Resolving may search other files,
+   * so {@link ProtoSemanticAnnotator} resolves in the background and only calls this to report.
+   */
+  public void annotateUnknownMessageType(ProtoMessageTypeReference ref,
+      AnnotationHolder annotationHolder) {
+    String referencedName = ref.getReferencedName();
+    Annotation anno = annotationHolder.createErrorAnnotation(ref,
+                                                             "unknown message type "
+                                                             + referencedName);
+    anno.setHighlightType(ProblemHighlightType.LIKE_UNKNOWN_SYMBOL);
+    anno.registerFix(new CreateMessageAction(referencedName, ref));
+  }
+
   public void checkDuplicateNames(ProtoFile protoFile, AnnotationHolder annotationHolder) {
     Map<String, Set<ProtoToplevelDefinition>> map
         = new HashMap<String, Set<ProtoToplevelDefinition>>();
     for (ProtoToplevelDefinition messageDefinition : protoFile
         .getTopLevelDefinitions()) {
+      ProgressManager.checkCanceled();
       String name = messageDefinition.getName();
       if (name == null) {
         continue;
@@ -487,54 +827,52 @@ public class ProtoValidator implements ProtoValidatorExtn {
       String enumName = enm.getName();
       enumNames.put(enumName, enm);
 
-      final SortedMap<Long, Set<ProtoEnumConstant>> enumNumbers =
-          getUsedEnumConstantValues(enm, enumConstantNames);
-      for (Map.Entry<Long, Set<ProtoEnumConstant>> entry : enumNumbers
-          .entrySet()) {
-        Set<ProtoEnumConstant> consts = entry.getValue();
-        if (consts.size() > 1) {
-          for (ProtoEnumConstant constant : consts) {
-            ProtoEnumValue enumValue = constant.getEnumValue();
-            if (enumValue == null) {
-              continue;
+      List<ProtoEnumConstant> constants = new ArrayList<ProtoEnumConstant>();
+      TLongArrayList values = new TLongArrayList();
+      addUsedEnumConstantValues(enm, enumConstantNames, constants, values);
+      SortedIdSet duplicatedValues = SortedIdSet.duplicatesOf(values);
+      if (!duplicatedValues.isEmpty()) {
+        final long nextValue = SortedIdSet.of(values).last() + 1;
+        for (int i = 0; i < constants.size(); i++) {
+          long value = values.get(i);
+          if (!duplicatedValues.contains(value)) {
+            continue;
+          }
+          final ProtoAbstractIntegerLiteral valueLiteral =
+              constants.get(i).getEnumValue().getValueLiteral();
+          if (valueLiteral == null) {
+            continue;
+          }
+          Annotation anno = annotationHolder.createWarningAnnotation(valueLiteral,
+                                                                     "multiple constants in "
+                                                                     + enm.getName()
+                                                                     + " have value " + value);
+          anno.registerFix(new IntentionAction() {
+            @Override
+            public String getText() {
+              return "Reassign enum constant value";
             }
 
-            final ProtoAbstractIntegerLiteral valueLiteral = enumValue.getValueLiteral();
-            if (valueLiteral == null) {
-              continue;
+            @Override
+            public String getFamilyName() {
+              return "ReassignEnumValue";
             }
-            Annotation anno = annotationHolder.createWarningAnnotation(valueLiteral,
-                                                                       "multiple constants in "
-                                                                       + enm.getName()
-                                                                       + " have value " + entry
-                                                                           .getKey());
-            anno.registerFix(new IntentionAction() {
-              @Override
-              public String getText() {
-                return "Reassign enum constant value";
-              }
-
-              @Override
-              public String getFamilyName() {
-                return "ReassignEnumValue";
-              }
-
-              @Override
-              public boolean isAvailable(Project project, Editor editor, PsiFile file) {
-                return true;
-              }
-
-              @Override
-              public void invoke(Project project, Editor editor, PsiFile file) {
-                valueLiteral.setIntValue(enumNumbers.lastKey() + 1);
-              }
-
-              @Override
-              public boolean startInWriteAction() {
-                return true;
-              }
-            });
-          }
+
+            @Override
+            public boolean isAvailable(Project project, Editor editor, PsiFile file) {
+              return true;
+            }
+
+            @Override
+            public void invoke(Project project, Editor editor, PsiFile file) {
+              valueLiteral.setIntValue(nextValue);
+            }
+
+            @Override
+            public boolean startInWriteAction() {
+              return true;
+            }
+          });
         }
       }
       for (Map.Entry<String, Collection<ProtoEnumConstant>> entry : enumConstantNames
@@ -563,11 +901,13 @@ public class ProtoValidator implements ProtoValidatorExtn {
     }
   }
 
-  private SortedMap<Long, Set<ProtoEnumConstant>> getUsedEnumConstantValues(
+  /**
+   * Collects the constants with a valid value, and their values at the same positions.
+   */
+  private void addUsedEnumConstantValues(
       ProtoEnumDefinition enm,
-      SetMultimap<String, ProtoEnumConstant> enumConstantNames) {
-    SortedMap<Long, Set<ProtoEnumConstant>> enumNumbers
-        = new TreeMap<Long, Set<ProtoEnumConstant>>();
+      SetMultimap<String, ProtoEnumConstant> enumConstantNames,
+      List<ProtoEnumConstant> constants, TLongArrayList values) {
     for (ProtoEnumConstant constant : enm.getConstants()) {
       ProtoNameElement nameElement = constant.getNameElement();
       if (nameElement != null) {
@@ -577,56 +917,69 @@ public class ProtoValidator implements ProtoValidatorExtn {
 
       ProtoEnumValue enumValue = constant.getEnumValue();
       if (enumValue != null && enumValue.hasValidValue()) {
-        long value = enumValue.getValue();
-        Set<ProtoEnumConstant> constsForId = enumNumbers.get(value);
-        if (constsForId == null) {
-          constsForId = new HashSet<ProtoEnumConstant>();
-          enumNumbers.put(value, constsForId);
-        }
-        constsForId.add(constant);
+        constants.add(constant);
+        values.add(enumValue.getValue());
       }
     }
-    return enumNumbers;
   }
 
   public void checkProperties(
       ProtoDefinitionBody body,
       AnnotationHolder annotationHolder) {
-    Map<String, Set<ProtoProperty>> usedNames = new HashMap<String, Set<ProtoProperty>>();
+    PropertyNameClashes clashes = getPropertyNameClashes(body);
+    for (Map.Entry<String, Collection<ProtoProperty>> entry : clashes.duplicates
+        .asMap().entrySet()) {
+      addErrorsForNames(entry.getValue(), annotationHolder, "multiple definitions of property '"
+                                                            + entry.getKey() + "'");
+    }
+    addErrorsForNames(clashes.caseClashes, annotationHolder,
+                      "property names differ only in case");
+  }
+
+  private PropertyNameClashes getPropertyNameClashes(final ProtoDefinitionBody body) {
+    ProtoMetrics.NAME_CLASHES_CACHE.request();
+    return CachedValuesManager.getManager(body.getProject()).getCachedValue(
+        body, PROPERTY_NAME_CLASHES_KEY, new CachedValueProvider<PropertyNameClashes>() {
+          @Override
+          public Result<PropertyNameClashes> compute() {
+            ProtoMetrics.NAME_CLASHES_CACHE.miss();
+            return Result.create(findPropertyNameClashes(body), body.getContainingFile());
+          }
+        }, false);
+  }
+
+  /**
+   * Groups the properties of the body by their lower-cased name, so that both exact duplicates
+   * and names differing only in case are found with a single pass over the properties.
+   */
+  private static PropertyNameClashes findPropertyNameClashes(ProtoDefinitionBody body) {
+    ListMultimap<String, ProtoProperty> byLowerName = LinkedListMultimap.create();
     for (ProtoProperty property : body.getProperties()) {
       ProtoNameElement nameElement = property.getNameElement();
       if (nameElement != null) {
         String name = nameElement.getName();
-        Set<ProtoProperty> namedProps = usedNames.get(name);
-        if (namedProps == null) {
-          namedProps = new HashSet<ProtoProperty>();
-          usedNames.put(name, namedProps);
-        }
-        namedProps.add(property);
+        byLowerName.put(name.toLowerCase(), property);
       }
     }
-    Set<String> warned = new HashSet<String>();
-    for (Map.Entry<String, Set<ProtoProperty>> entry : usedNames
-        .entrySet()) {
-      Set<ProtoProperty> props = entry.getValue();
-      String name = entry.getKey();
-      String lowerName = name.toLowerCase();
-      if (props.size() > 1) {
-        addErrorsForNames(props, annotationHolder, "multiple definitions of property '"
-                                                   + name + "'");
-      } else if (!warned.contains(lowerName)) {
-        warned.add(lowerName);
-        for (Map.Entry<String, Set<ProtoProperty>> otherEntry : usedNames.entrySet()) {
-          String otherName = otherEntry.getKey();
-          if (!name.equals(otherName)
-              && name.equalsIgnoreCase(otherName)) {
-            String errorMsg = "property names differ only in case";
-            addErrorsForNames(props, annotationHolder, errorMsg);
-            addErrorsForNames(otherEntry.getValue(), annotationHolder, errorMsg);
-          }
+    PropertyNameClashes clashes = new PropertyNameClashes();
+    for (Collection<ProtoProperty> props : byLowerName.asMap().values()) {
+      if (props.size() < 2) {
+        continue;
+      }
+      SetMultimap<String, ProtoProperty> byName = LinkedHashMultimap.create();
+      for (ProtoProperty prop : props) {
+        byName.put(prop.getNameElement().getName(), prop);
+      }
+      for (Map.Entry<String, Collection<ProtoProperty>> entry : byName.asMap().entrySet()) {
+        if (entry.getValue().size() > 1) {
+          clashes.duplicates.putAll(entry.getKey(), entry.getValue());
         }
       }
+      if (byName.keySet().size() > 1) {
+        clashes.caseClashes.addAll(props);
+      }
     }
+    return clashes;
   }
 
   @VisibleForTesting
@@ -727,7 +1080,7 @@ public class ProtoValidator implements ProtoValidatorExtn {
     return sb.toString();
   }
 
-  private void addErrorsForNames(Set<ProtoProperty> props,
+  private void addErrorsForNames(Collection<ProtoProperty> props,
                                  AnnotationHolder annotationHolder, String errorMsg) {
     for (ProtoProperty prop : props) {
       annotationHolder.createErrorAnnotation(prop.getNameElement(), errorMsg);
@@ -744,24 +1097,13 @@ public class ProtoValidator implements ProtoValidatorExtn {
     return false;
   }
 
-  private static class UsedTypeNameCollector extends PsiRecursiveElementVisitor {
-
-    private final Set<String> used;
+  /**
+   * Properties of a definition body whose names clash, either exactly or ignoring case.
+   */
+  private static class PropertyNameClashes {
 
-    public UsedTypeNameCollector(Set<String> used) {
-      this.used = used;
-    }
-
-    @Override
-    public void visitElement(PsiElement psiElement) {
-      super.visitElement(psiElement);
-
-      if (psiElement instanceof ProtoMessageTypeReference) {
-        ProtoMessageTypeReference protoMessageTypeReference
-            = (ProtoMessageTypeReference) psiElement;
-        used.add(protoMessageTypeReference.getReferencedName());
-      }
-    }
+    private final SetMultimap<String, ProtoProperty> duplicates = LinkedHashMultimap.create();
+    private final List<ProtoProperty> caseClashes = new ArrayList<ProtoProperty>();
   }
 
   private static class RemoveOptionAction implements IntentionAction {
@@ -884,40 +1226,31 @@ public class ProtoValidator implements ProtoValidatorExtn {
         throws IncorrectOperationException {
       ProtoMessageDefinition body = PsiTreeUtil
           .getParentOfType(prop, ProtoMessageDefinition.class);
-      SortedSet<Long> ids = getUsedIds(body);
+      SortedIdSet ids = getUsedIds(body);
+      ExtensionRanges ranges = ExtensionRanges.getInstance(body);
       long literal = -1;
       if (tryLessThan16) {
-        for (long i = 15; i >= 1; i--) {
-          if (!ids.contains(i)) {
-            literal = i;
-            break;
-          }
+        literal = ids.lastFreeIdIn(1, 15);
+        if (literal != -1 && ranges.contains(literal)) {
+          literal = -1;
         }
       }
       if (literal == -1) {
-        literal = ids.last() + 1;
+        literal = nextFreeFieldNumber(ids, ranges, 1);
+      }
+      if (literal == -1) {
+        throw new IncorrectOperationException("No free field number left");
       }
       prop.getProtoIdElement().getIdLiteral().setIntValue(literal);
     }
 
-    private SortedSet<Long> getUsedIds(ProtoMessageDefinition body) {
-      SortedSet<Long> ids = new TreeSet<Long>();
-      addUsedIds(ids, body.getDefinitionBody());
-      return ids;
-    }
-
-    private void addUsedIds(SortedSet<Long> ids, ProtoDefinitionBody body) {
-      for (ProtoProperty property : body.getProperties()) {
-        if (property != prop) {
-          ProtoPropertyId idElement = property.getProtoIdElement();
-          ProtoAbstractIntegerLiteral idLiteral = idElement.getIdLiteral();
-          ids.add(idLiteral.getIntValue());
-        }
-        if (property instanceof ProtoGroupDefinition) {
-          ProtoGroupDefinition groupDefinition = (ProtoGroupDefinition) property;
-          addUsedIds(ids, groupDefinition.getDefinitionBody());
-        }
+    private SortedIdSet getUsedIds(ProtoMessageDefinition body) {
+      TLongArrayList ids = new TLongArrayList();
+      ProtoDefinitionBody definitionBody = body.getDefinitionBody();
+      if (definitionBody != null) {
+        addUsedValues(null, ids, definitionBody, prop);
       }
+      return SortedIdSet.of(ids);
     }
 
     @Override
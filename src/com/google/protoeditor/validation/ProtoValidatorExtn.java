@@ -18,6 +18,8 @@ package com.google.protoeditor.validation;
 
 import com.intellij.openapi.extensions.ExtensionPointName;
 
+import java.util.Map;
+
 /**
  * Extension Point for proto validator providers.
  */
@@ -25,4 +27,11 @@ public interface ProtoValidatorExtn {
 
   ExtensionPointName<ProtoValidatorExtn> EP_NAME
       = ExtensionPointName.create("com.google.protoeditor.protoValidatorExtn");
+
+  /**
+   * Returns the checks contributed by this extension, keyed by the PSI class they apply to.
+   * A check registered for a class also runs for all of its subclasses. The checks of all
+   * registered extensions are combined; if none is registered, {@link ProtoValidator} is used.
+   */
+  Map<Class, ProtoElementAnnotator> getAnnotators();
 }
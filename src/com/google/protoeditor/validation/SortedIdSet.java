@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.validation;
+
+import gnu.trove.TLongArrayList;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of field numbers or enum values, stored as a sorted array of primitive longs.
+ * <p>
+ * Besides membership tests, the set answers free-number queries in logarithmic time: since the
+ * ids are distinct and sorted, {@code ids[i] - i} never decreases, and it stays constant
+ * exactly along runs of consecutive ids. The end of the run containing a given id can therefore
+ * be found with a binary search instead of probing one number at a time.
+ */
+public class SortedIdSet {
+
+  private static final SortedIdSet EMPTY = new SortedIdSet(new long[0]);
+
+  /**
+   * Returns the set of distinct ids in the given list.
+   */
+  public static SortedIdSet of(TLongArrayList ids) {
+    long[] sorted = ids.toNativeArray();
+    Arrays.sort(sorted);
+    int size = 0;
+    for (int i = 0; i < sorted.length; i++) {
+      if (size == 0 || sorted[size - 1] != sorted[i]) {
+        sorted[size++] = sorted[i];
+      }
+    }
+    return create(sorted, size);
+  }
+
+  /**
+   * Returns the set of ids that occur more than once in the given list.
+   */
+  public static SortedIdSet duplicatesOf(TLongArrayList ids) {
+    long[] sorted = ids.toNativeArray();
+    Arrays.sort(sorted);
+    int size = 0;
+    for (int i = 1; i < sorted.length; i++) {
+      if (sorted[i] == sorted[i - 1] && (size == 0 || sorted[size - 1] != sorted[i])) {
+        sorted[size++] = sorted[i];
+      }
+    }
+    return create(sorted, size);
+  }
+
+  private static SortedIdSet create(long[] sorted, int size) {
+    if (size == 0) {
+      return EMPTY;
+    }
+    return new SortedIdSet(size == sorted.length ? sorted : Arrays.copyOf(sorted, size));
+  }
+
+  private final long[] ids;
+
+  private SortedIdSet(long[] ids) {
+    this.ids = ids;
+  }
+
+  public int size() {
+    return ids.length;
+  }
+
+  public boolean isEmpty() {
+    return ids.length == 0;
+  }
+
+  public boolean contains(long id) {
+    return Arrays.binarySearch(ids, id) >= 0;
+  }
+
+  /**
+   * Returns the largest id in the set.
+   *
+   * @throws IllegalStateException if the set is empty
+   */
+  public long last() {
+    if (ids.length == 0) {
+      throw new IllegalStateException("empty id set");
+    }
+    return ids[ids.length - 1];
+  }
+
+  /**
+   * Returns the smallest id that is greater than or equal to {@code from} and not in the set.
+   */
+  public long nextFreeId(long from) {
+    int index = Arrays.binarySearch(ids, from);
+    if (index < 0) {
+      return from;
+    }
+    // ids[index..runEnd] are consecutive, so the first free id follows the end of the run.
+    long runKey = ids[index] - index;
+    int low = index;
+    int high = ids.length - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (ids[mid] - mid == runKey) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return ids[low] + 1;
+  }
+
+  /**
+   * Returns the largest id in {@code [low, high]} that is not in the set, or {@code -1} if all
+   * ids in that range are used.
+   */
+  public long lastFreeIdIn(long low, long high) {
+    if (low > high) {
+      return -1;
+    }
+    int index = Arrays.binarySearch(ids, high);
+    if (index < 0) {
+      return high;
+    }
+    // ids[runStart..index] are consecutive, so the free id precedes the start of the run.
+    long runKey = ids[index] - index;
+    int first = 0;
+    int last = index;
+    while (first < last) {
+      int mid = (first + last) >>> 1;
+      if (ids[mid] - mid == runKey) {
+        last = mid;
+      } else {
+        first = mid + 1;
+      }
+    }
+    long free = ids[first] - 1;
+    return free >= low ? free : -1;
+  }
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.completion;
+
+import com.google.protoeditor.ProtoLightVirtualFile;
+import com.google.protoeditor.completion.ProtoCompletionContributor.Proximity;
+import com.google.protoeditor.psi.ProtoTestCase;
+
+import com.intellij.openapi.vfs.VirtualFile;
+
+/**
+ * Test cases for {@link ProtoCompletionContributor}.
+ */
+public class ProtoCompletionContributorTest extends ProtoTestCase {
+
+  public void testProximity() throws Exception {
+    writeTestProto("package foo;",
+                   "message Foo {",
+                   "}");
+    ProtoImports imports = ProtoImports.getInstance(protoFile);
+    VirtualFile other = new ProtoLightVirtualFile("other.proto", "package bar;");
+
+    assertEquals(Proximity.SAME_FILE, ProtoCompletionContributor.getProximity(
+        virtualTestFile, "foo", virtualTestFile, "foo", imports));
+    assertEquals(Proximity.SAME_PACKAGE, ProtoCompletionContributor.getProximity(
+        other, "foo", virtualTestFile, "foo", imports));
+    assertEquals(Proximity.OTHER, ProtoCompletionContributor.getProximity(
+        other, "bar", virtualTestFile, "foo", imports));
+  }
+}
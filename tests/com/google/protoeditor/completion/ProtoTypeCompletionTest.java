@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.completion;
+
+import com.google.common.base.Joiner;
+import com.google.protoeditor.psi.ProtoCodeInsightFixtureTestCase;
+import com.google.protoeditor.psi.ProtoFile;
+
+import com.intellij.codeInsight.lookup.LookupManager;
+
+import java.util.List;
+
+/**
+ * Completes message types with {@link ProtoCompletionContributor} in a code insight fixture.
+ */
+public class ProtoTypeCompletionTest extends ProtoCodeInsightFixtureTestCase {
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myFixture.addFileToProject("foo/other.proto", Joiner.on("\n").join(
+        "package foo;",
+        "message SearchRequest {",
+        "}",
+        "message SearchResponse {",
+        "}",
+        "message Unrelated {",
+        "}"));
+  }
+
+  public void testCompletesTypesOfOtherFiles() {
+    configureField("Sea");
+    myFixture.completeBasic();
+    assertSameElements(myFixture.getLookupElementStrings(), "SearchRequest", "SearchResponse");
+  }
+
+  public void testCamelHumps() {
+    configureField("SeRe");
+    myFixture.completeBasic();
+    assertSameElements(myFixture.getLookupElementStrings(), "SearchRequest", "SearchResponse");
+  }
+
+  public void testSingleVariantIsInserted() {
+    configureField("SeReq");
+    assertNull(myFixture.completeBasic());
+    myFixture.checkResult("package foo;\n"
+        + "message Bar {\n"
+        + "  optional SearchRequest<caret> x = 1;\n"
+        + "}");
+  }
+
+  public void testCloserCandidatesRankHigher() {
+    myFixture.addFileToProject("foo/same_package.proto", Joiner.on("\n").join(
+        "package foo;",
+        "message ItemPack {",
+        "}"));
+    myFixture.addFileToProject("bar/direct.proto", Joiner.on("\n").join(
+        "package bar;",
+        "import \"baz/transitive.proto\";",
+        "message ItemDrct {",
+        "}"));
+    myFixture.addFileToProject("baz/transitive.proto", Joiner.on("\n").join(
+        "package baz;",
+        "message ItemTran {",
+        "}"));
+    myFixture.addFileToProject("qux/other.proto", Joiner.on("\n").join(
+        "package qux;",
+        "message ItemOthr {",
+        "}"));
+    myFixture.configureByText("test.proto", "package foo;\n"
+        + "import \"bar/direct.proto\";\n"
+        + "message ItemFile {\n"
+        + "  optional Item<caret> x = 1;\n"
+        + "}");
+    myFixture.completeBasic();
+    assertOrderedEquals(myFixture.getLookupElementStrings(),
+        "ItemFile", "ItemPack", "ItemDrct", "ItemTran", "ItemOthr");
+  }
+
+  public void testVariantsAreLimited() {
+    StringBuilder text = new StringBuilder("package foo;\n");
+    for (int i = 0; i < ProtoCompletionContributor.MAX_VARIANTS + 100; i++) {
+      text.append("message Many").append(i).append(" {\n}\n");
+    }
+    myFixture.addFileToProject("foo/many.proto", text.toString());
+    configureField("Many");
+    myFixture.completeBasic();
+    List<String> variants = myFixture.getLookupElementStrings();
+    assertEquals(ProtoCompletionContributor.MAX_VARIANTS, variants.size());
+  }
+
+  public void testJavaMessageClassesAreStillOffered() throws Exception {
+    addProtocolMessageClass();
+    myFixture.addClass("package foo;\n"
+        + "public class SearchResult extends com.google.io.protocol.ProtocolMessage {}");
+    configureField("Search");
+    // The first completion starts collecting the message classes in the background.
+    myFixture.completeBasic();
+    waitForVariants((ProtoFile) myFixture.getFile());
+    LookupManager.getInstance(getProject()).hideActiveLookup();
+    myFixture.completeBasic();
+    assertSameElements(myFixture.getLookupElementStrings(),
+        "SearchRequest", "SearchResponse", "SearchResult");
+  }
+
+  private void configureField(String typePrefix) {
+    myFixture.configureByText("test.proto", "package foo;\n"
+        + "message Bar {\n"
+        + "  optional " + typePrefix + "<caret> x = 1;\n"
+        + "}");
+  }
+}
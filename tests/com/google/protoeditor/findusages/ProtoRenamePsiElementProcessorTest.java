@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.findusages;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protoeditor.psi.ProtoFile;
+import com.google.protoeditor.psi.ProtoMessageDefinition;
+import com.google.protoeditor.psi.ProtoMessageTypeReference;
+import com.google.protoeditor.psi.ProtoTestCase;
+
+import com.intellij.openapi.application.Result;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiReference;
+import com.intellij.psi.search.searches.ReferencesSearch;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.refactoring.rename.RenameProcessor;
+import com.intellij.usageView.UsageInfo;
+import com.intellij.util.IncorrectOperationException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test cases for {@link ProtoRenamePsiElementProcessor}.
+ */
+public class ProtoRenamePsiElementProcessorTest extends ProtoTestCase {
+
+  public void testReplaceAllFromTheEnd() {
+    Document document = EditorFactory.getInstance().createDocument("Foo a; Foo b; Foo c;");
+    ProtoRenamePsiElementProcessor.replaceAll(document, ImmutableList.of(
+        TextRange.create(0, 3), TextRange.create(14, 17), TextRange.create(0, 3)), "Quux");
+    assertEquals("Quux a; Foo b; Quux c;", document.getText());
+  }
+
+  public void testRenameKeepsQualifiers() throws Exception {
+    writeTestProto("package foo;",
+                   "message Foo {",
+                   "}",
+                   "message Bar {",
+                   "  optional Foo a = 1;",
+                   "  optional foo.Foo b = 2;",
+                   "}");
+    final ProtoMessageDefinition foo = getMessageByName(protoFile, "Foo");
+    List<UsageInfo> usages = new ArrayList<UsageInfo>();
+    for (PsiReference reference : ReferencesSearch.search(foo).findAll()) {
+      usages.add(new UsageInfo(reference));
+    }
+    assertEquals(2, usages.size());
+    final UsageInfo[] usageArray = usages.toArray(new UsageInfo[usages.size()]);
+    new WriteCommandAction(fixture.getProject()) {
+      @Override
+      protected void run(Result result) throws Throwable {
+        new ProtoRenamePsiElementProcessor().renameElement(foo, "Quux", usageArray, null);
+      }
+    }.execute();
+    assertEquals("package foo;\n"
+        + "message Quux {\n"
+        + "}\n"
+        + "message Bar {\n"
+        + "  optional Quux a = 1;\n"
+        + "  optional foo.Quux b = 2;\n"
+        + "}", protoFile.getText());
+    assertSame(foo, getMessageByName(protoFile, "Quux"));
+  }
+
+  public void testRenameUpdatesFilesOfThePackageWithoutImport() throws Exception {
+    ProtoFile defining = addProtoFile("foo/defining.proto",
+        "package foo;",
+        "message Foo {",
+        "}");
+    ProtoFile samePackage = addProtoFile("foo/same.proto",
+        "package foo;",
+        "message Bar {",
+        "  optional Foo foo = 1;",
+        "}");
+    new RenameProcessor(getProject(), getOnlyMessage(defining, "Foo"), "Quux", false, false)
+        .run();
+    assertEquals("package foo;\n"
+        + "message Quux {\n"
+        + "}", defining.getText());
+    assertEquals("package foo;\n"
+        + "message Bar {\n"
+        + "  optional Quux foo = 1;\n"
+        + "}", samePackage.getText());
+  }
+
+  public void testRenameReplacesUsagesInOtherFilesAsText() throws Exception {
+    ProtoFile defining = addProtoFile("foo/defining.proto",
+        "package foo;",
+        "message Foo {",
+        "}");
+    ProtoFile importing = addProtoFile("bar/importing.proto",
+        "package bar;",
+        "import \"foo/defining.proto\";",
+        "message Bar {",
+        "  optional foo.Foo a = 1;",
+        "  repeated foo.Foo b = 2;",
+        "}");
+    new RenameProcessor(getProject(), getOnlyMessage(defining, "Foo"), "Quux", false, false)
+        .run();
+    Document document = PsiDocumentManager.getInstance(getProject()).getDocument(importing);
+    assertTrue(PsiDocumentManager.getInstance(getProject()).isCommitted(document));
+    assertEquals("package bar;\n"
+        + "import \"foo/defining.proto\";\n"
+        + "message Bar {\n"
+        + "  optional foo.Quux a = 1;\n"
+        + "  repeated foo.Quux b = 2;\n"
+        + "}", importing.getText());
+    assertSame(getOnlyMessage(defining, "Quux"),
+        PsiTreeUtil.findChildOfType(importing, ProtoMessageTypeReference.class).resolve());
+  }
+
+  public void testRenameRejectsInvalidNames() throws Exception {
+    writeTestProto("message Foo {",
+                   "}");
+    final ProtoMessageDefinition foo = getOnlyMessage(protoFile, "Foo");
+    for (final String name : ImmutableList.of("", "2Foo", "Foo Bar", "foo.Foo", "Foo;")) {
+      try {
+        new WriteCommandAction(fixture.getProject()) {
+          @Override
+          protected void run(Result result) throws Throwable {
+            new ProtoRenamePsiElementProcessor().renameElement(foo, name, new UsageInfo[0],
+                null);
+          }
+        }.execute();
+        fail("renamed to " + name);
+      } catch (IncorrectOperationException e) {
+        // expected
+      }
+    }
+    assertEquals("message Foo {\n}", protoFile.getText());
+  }
+
+  public void testNamesValidator() {
+    ProtoNamesValidator validator = new ProtoNamesValidator();
+    assertTrue(validator.isIdentifier("Foo_2", getProject()));
+    assertTrue(validator.isIdentifier("_foo", getProject()));
+    assertFalse(validator.isIdentifier("2Foo", getProject()));
+    assertFalse(validator.isIdentifier("foo.Foo", getProject()));
+    assertFalse(validator.isIdentifier("Foo-Bar", getProject()));
+    assertTrue(validator.isKeyword("message", getProject()));
+    assertFalse(validator.isKeyword("Foo", getProject()));
+  }
+}
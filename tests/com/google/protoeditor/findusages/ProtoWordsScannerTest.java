@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.findusages;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import com.intellij.lang.cacheBuilder.WordOccurrence;
+import com.intellij.util.Processor;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Test cases for {@link ProtoWordsScanner}.
+ */
+public class ProtoWordsScannerTest extends TestCase {
+
+  public void testQualifiedNamesAreSplit() {
+    assertEquals(
+        ImmutableList.of("CODE:optional", "CODE:foo", "CODE:Bar", "CODE:bar"),
+        scan("optional foo.Bar bar = 1;"));
+  }
+
+  public void testCommentsAndStrings() {
+    assertEquals(
+        ImmutableList.of("COMMENTS:See", "COMMENTS:Request", "CODE:option", "CODE:java_package",
+            "LITERALS:com", "LITERALS:example"),
+        scan("// See Request 42.\noption java_package = \"com.example\";"));
+  }
+
+  public void testStopsWhenProcessorReturnsFalse() {
+    final List<String> words = Lists.newArrayList();
+    new ProtoWordsScanner().processWords("message Foo { }", new Processor<WordOccurrence>() {
+      @Override
+      public boolean process(WordOccurrence occurrence) {
+        words.add(text(occurrence));
+        return false;
+      }
+    });
+    assertEquals(ImmutableList.of("message"), words);
+  }
+
+  private static List<String> scan(String text) {
+    final List<String> words = Lists.newArrayList();
+    new ProtoWordsScanner().processWords(text, new Processor<WordOccurrence>() {
+      @Override
+      public boolean process(WordOccurrence occurrence) {
+        words.add(occurrence.getKind() + ":" + text(occurrence));
+        return true;
+      }
+    });
+    return words;
+  }
+
+  private static String text(WordOccurrence occurrence) {
+    return occurrence.getBaseText()
+        .subSequence(occurrence.getStart(), occurrence.getEnd()).toString();
+  }
+}
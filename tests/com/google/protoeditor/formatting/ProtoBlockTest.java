@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.formatting;
+
+import com.google.protoeditor.lex.ProtoElementTypes;
+import com.google.protoeditor.metrics.ProtoMetrics;
+import com.google.protoeditor.psi.ProtoMessageDefinition;
+import com.google.protoeditor.psi.ProtoTestCase;
+
+import com.intellij.formatting.Alignment;
+import com.intellij.formatting.Block;
+import com.intellij.openapi.application.Result;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.codeStyle.CodeStyleManager;
+import com.intellij.psi.codeStyle.CodeStyleSettingsManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test cases for {@link ProtoBlock}.
+ */
+public class ProtoBlockTest extends ProtoTestCase {
+
+  @Override
+  protected void tearDown() throws Exception {
+    ProtoMetrics.setEnabled(false);
+    ProtoMetrics.reset();
+    super.tearDown();
+  }
+
+  public void testRangeAffectingIndentIsInnermostBody() throws Exception {
+    writeTestProto("message Foo {",
+                   "  optional int32 a = 1;",
+                   "}",
+                   "message Bar {",
+                   "  optional int32 b = 1;",
+                   "}");
+    ProtoMessageDefinition bar = getMessageByName(protoFile, "Bar");
+    int offset = protoFile.getText().indexOf("int32 b");
+    assertEquals(bar.getDefinitionBody().getTextRange(), ProtoBlock.getRangeAffectingIndent(
+        protoFile.getNode().findLeafElementAt(offset)));
+  }
+
+  public void testRangeAffectingIndentAtTopLevel() throws Exception {
+    writeTestProto("message Foo {",
+                   "}",
+                   "message Bar {",
+                   "}");
+    int offset = protoFile.getText().indexOf("message Bar");
+    assertEquals(new TextRange(0, protoFile.getTextLength()), ProtoBlock.getRangeAffectingIndent(
+        protoFile.getNode().findLeafElementAt(offset)));
+  }
+
+  public void testAlignmentsOnlyForBodies() throws Exception {
+    writeTestProto("message Foo {",
+                   "  optional int32 a = 1;",
+                   "  optional int32 b = 2;",
+                   "}");
+    ProtoBlock root = new ProtoBlock(protoFile.getNode(), null, null, null,
+        CodeStyleSettingsManager.getSettings(fixture.getProject()));
+    Block message = root.getSubBlocks().get(0);
+    assertNull(message.getAlignment());
+    ProtoBlock body = null;
+    for (Block block : message.getSubBlocks()) {
+      assertNull(block.getAlignment());
+      ProtoBlock protoBlock = (ProtoBlock) block;
+      if (protoBlock.getNode().getElementType() == ProtoElementTypes.DEFINITION_BODY) {
+        body = protoBlock;
+      }
+    }
+    assertNotNull(body);
+    Alignment alignment = body.getChildAttributes(0).getAlignment();
+    assertNotNull(alignment);
+    for (Block block : body.getSubBlocks()) {
+      assertSame(alignment, block.getAlignment());
+    }
+  }
+
+  /**
+   * Computing the indent of one line of a large file only builds the blocks of the top-level
+   * elements and of the enclosing body, instead of more than ten blocks per message. The time
+   * and the number of blocks are reported by {@link ProtoMetrics}.
+   */
+  public void testLineIndentInLargeFileBuildsFewBlocks() throws Exception {
+    int messageCount = 2000;
+    List<String> lines = new ArrayList<String>();
+    for (int i = 0; i < messageCount; i++) {
+      lines.add("message Message" + i + " {");
+      lines.add("  optional int32 field" + i + " = 1;");
+      lines.add("}");
+    }
+    writeTestProto(lines.toArray(new String[lines.size()]));
+    ProtoMetrics.setEnabled(true);
+    ProtoMetrics.reset();
+
+    int offset = protoFile.getText().indexOf("optional int32 field1000 ");
+    String indent = CodeStyleManager.getInstance(fixture.getProject())
+        .getLineIndent(protoFile, offset);
+    assertNotNull(indent);
+    assertTrue(indent.length() > 0);
+    assertTrue(ProtoMetrics.BLOCKS_CREATED.getValue() < messageCount + 100);
+  }
+
+  public void testSpacingAroundEqualsInFieldOptions() throws Exception {
+    writeTestProto("message Foo {",
+                   "  optional int32 a=1 [default  =  2];",
+                   "}");
+    reformat();
+    assertTrue(protoFile.getText(), protoFile.getText().contains("a = 1 [default = 2];"));
+  }
+
+  /**
+   * Reformats a message with many fields with options. The time spent building blocks is
+   * reported by {@link ProtoMetrics}; spacing is decided from flags of the blocks.
+   */
+  public void testReformatLargeMessageWithFieldOptions() throws Exception {
+    int fieldCount = 2000;
+    List<String> lines = new ArrayList<String>();
+    lines.add("message Foo {");
+    for (int i = 1; i <= fieldCount; i++) {
+      lines.add("optional int32 field" + i + "=" + i + " [default=" + i + ", deprecated=true];");
+    }
+    lines.add("}");
+    writeTestProto(lines.toArray(new String[lines.size()]));
+    ProtoMetrics.setEnabled(true);
+    ProtoMetrics.reset();
+
+    reformat();
+    assertTrue(protoFile.getText().contains(
+        "field" + fieldCount + " = " + fieldCount + " [default=" + fieldCount
+        + ", deprecated=true];"));
+    assertTrue(ProtoMetrics.BUILD_SUB_BLOCKS.getCount() > fieldCount);
+  }
+
+  private void reformat() {
+    new WriteCommandAction(fixture.getProject()) {
+      @Override
+      protected void run(Result result) throws Throwable {
+        CodeStyleManager.getInstance(fixture.getProject()).reformat(protoFile);
+      }
+    }.execute();
+  }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.formatting;
+
+import com.google.common.collect.Iterables;
+import com.google.protoeditor.ProtoFileType;
+import com.google.protoeditor.psi.ProtoTestCase;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.psi.codeStyle.CodeStyleSettings;
+import com.intellij.psi.codeStyle.CodeStyleSettingsManager;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Test cases for {@link ProtoBulkFormatter}.
+ */
+public class ProtoBulkFormatterTest extends ProtoTestCase {
+
+  private static final String UNFORMATTED = "message Foo {\noptional int32 a=1;\n}\n";
+
+  private File root;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    root = FileUtil.createTempDirectory("protoformat", null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    FileUtil.delete(root);
+    super.tearDown();
+  }
+
+  public void testCollectsProtoFilesRecursively() throws Exception {
+    File foo = createFile("foo.proto", UNFORMATTED);
+    File bar = createFile("sub/bar.proto", UNFORMATTED);
+    createFile("sub/README", "");
+    List<File> files = ProtoBulkFormatter.collectProtoFiles(root);
+    assertEquals(2, files.size());
+    assertTrue(files.contains(foo));
+    assertTrue(files.contains(bar));
+  }
+
+  public void testCheckDoesNotWriteAndReformatIsStable() throws Exception {
+    File foo = createFile("foo.proto", UNFORMATTED);
+    List<File> files = ProtoBulkFormatter.collectProtoFiles(root);
+
+    ProtoBulkFormatter.ChangedFile changed = Iterables.getOnlyElement(
+        new ProtoBulkFormatter(fixture.getProject(), true).format(files));
+    assertEquals(foo, changed.getFile());
+    assertEquals(1, changed.getInsertedLines());
+    assertEquals(1, changed.getDeletedLines());
+    assertEquals(UNFORMATTED, FileUtil.loadFile(foo));
+
+    assertEquals(1, new ProtoBulkFormatter(fixture.getProject(), false).format(files).size());
+    assertTrue(FileUtil.loadFile(foo).contains("optional int32 a = 1;"));
+    assertTrue(new ProtoBulkFormatter(fixture.getProject(), true).format(files).isEmpty());
+  }
+
+  public void testKeepsLineSeparators() throws Exception {
+    File foo = createFile("foo.proto", UNFORMATTED.replace("\n", "\r\n"));
+    new ProtoBulkFormatter(fixture.getProject(), false)
+        .format(ProtoBulkFormatter.collectProtoFiles(root));
+    String text = FileUtil.loadFile(foo);
+    assertTrue(text.contains("a = 1;\r\n"));
+    assertFalse(text.replace("\r\n", "").contains("\n"));
+  }
+
+  public void testUsesTheCodeStyleOfTheProject() throws Exception {
+    CodeStyleSettingsManager settingsManager =
+        CodeStyleSettingsManager.getInstance(fixture.getProject());
+    CodeStyleSettings settings = new CodeStyleSettings();
+    settings.getIndentOptions(ProtoFileType.instance()).INDENT_SIZE = 7;
+    settingsManager.setTemporarySettings(settings);
+    try {
+      File foo = createFile("foo.proto", UNFORMATTED);
+      new ProtoBulkFormatter(fixture.getProject(), false)
+          .format(ProtoBulkFormatter.collectProtoFiles(root));
+      assertTrue(FileUtil.loadFile(foo).contains("\n       optional int32 a = 1;\n"));
+    } finally {
+      settingsManager.dropTemporarySettings();
+    }
+  }
+
+  private File createFile(String path, String text) throws Exception {
+    File file = new File(root, path);
+    FileUtil.writeToFile(file, text);
+    return file;
+  }
+}
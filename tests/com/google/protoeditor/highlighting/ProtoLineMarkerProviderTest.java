@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.highlighting;
+
+import com.google.common.collect.Lists;
+import com.google.protoeditor.psi.ProtoCodeInsightFixtureTestCase;
+import com.google.protoeditor.psi.ProtoFile;
+import com.google.protoeditor.psi.ProtoMessageDefinition;
+
+import com.intellij.codeInsight.daemon.LineMarkerInfo;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.util.PsiTreeUtil;
+
+import java.util.List;
+
+/**
+ * Test cases for {@link ProtoLineMarkerProvider}.
+ */
+public class ProtoLineMarkerProviderTest extends ProtoCodeInsightFixtureTestCase {
+
+  private static final String PROTO = "package foo;\n"
+      + "option java_package = \"com.example\";\n"
+      + "option java_outer_classname = \"FooProtos\";\n"
+      + "message Outer {\n"
+      + "  enum Kind {\n"
+      + "    A = 1;\n"
+      + "  }\n"
+      + "}\n"
+      + "message Missing {\n"
+      + "}\n"
+      + "service Search {\n"
+      + "}";
+
+  public void testMarkersOnDefinitionsWithGeneratedClasses() {
+    myFixture.addClass("package com.example;\n"
+        + "public final class FooProtos {\n"
+        + "  public static class Outer {\n"
+        + "    public enum Kind { A }\n"
+        + "  }\n"
+        + "  public static class Search {}\n"
+        + "}");
+    ProtoFile file = (ProtoFile) myFixture.configureByText("foo.proto", PROTO);
+    List<String> tooltips = Lists.newArrayList();
+    for (LineMarkerInfo marker : collectMarkers(file)) {
+      tooltips.add(marker.getElement().getText() + ": " + marker.getLineMarkerTooltip());
+    }
+    assertSameElements(tooltips,
+        "Outer: Generated class com.example.FooProtos.Outer",
+        "Kind: Generated class com.example.FooProtos.Outer.Kind",
+        "Search: Generated class com.example.FooProtos.Search");
+  }
+
+  public void testNoMarkersWithoutGeneratedClasses() {
+    ProtoFile file = (ProtoFile) myFixture.configureByText("foo.proto", PROTO);
+    ProtoLineMarkerProvider provider = new ProtoLineMarkerProvider();
+    List<PsiElement> leaves = getLeaves(file);
+    for (PsiElement leaf : leaves) {
+      assertNull(provider.getLineMarkerInfo(leaf));
+    }
+    assertTrue(collectMarkers(file).isEmpty());
+  }
+
+  public void testFinderFindsNestedClasses() {
+    PsiClass outerClass = myFixture.addClass("package com.example;\n"
+        + "public final class FooProtos {\n"
+        + "  public static class Outer {}\n"
+        + "}").findInnerClassByName("Outer", false);
+    ProtoFile file = (ProtoFile) myFixture.configureByText("foo.proto", PROTO);
+    GeneratedClassFinder finder = new GeneratedClassFinder(file);
+    assertSame(outerClass, finder.findClass(getMessage(file, "Outer")));
+    assertNull(finder.findClass(getMessage(file, "Missing")));
+  }
+
+  private static List<LineMarkerInfo> collectMarkers(ProtoFile file) {
+    List<LineMarkerInfo> markers = Lists.newArrayList();
+    new ProtoLineMarkerProvider().collectSlowLineMarkers(getLeaves(file), markers);
+    return markers;
+  }
+
+  private static List<PsiElement> getLeaves(ProtoFile file) {
+    List<PsiElement> leaves = Lists.newArrayList();
+    for (PsiElement leaf = PsiTreeUtil.firstChild(file); leaf != null;
+        leaf = PsiTreeUtil.nextLeaf(leaf)) {
+      leaves.add(leaf);
+    }
+    return leaves;
+  }
+
+  private static ProtoMessageDefinition getMessage(ProtoFile file, String name) {
+    for (ProtoMessageDefinition message : file.getMessageDefinitions()) {
+      if (name.equals(message.getName())) {
+        return message;
+      }
+    }
+    throw new AssertionError("no message " + name);
+  }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.index;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.protoeditor.index.ProtoCollisionIndex.CollisionKey;
+import com.google.protoeditor.psi.ProtoTestCase;
+
+import com.intellij.psi.PsiElement;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+/**
+ * Test cases for {@link ProtoCollisionIndex}.
+ */
+public class ProtoCollisionIndexTest extends ProtoTestCase {
+
+  public void testCollisionKeySerializerAndDeserializer() throws Exception {
+    CollisionKey key = CollisionKey.extensionNumber("foo.Bar", 1001);
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    key.serialize(new DataOutputStream(os));
+    CollisionKey deserialized = CollisionKey.readFrom(
+        new DataInputStream(new ByteArrayInputStream(os.toByteArray())));
+    assertEquals(key, deserialized);
+  }
+
+  public void testCollisionKeys() throws Exception {
+    writeTestProto("package foo;",
+                   "message Outer {",
+                   "  enum Kind {",
+                   "    A = 1;",
+                   "  }",
+                   "  optional Kind kind = 1;",
+                   "}",
+                   "service Search {",
+                   "}",
+                   "extend Outer {",
+                   "  optional int32 a = 100;",
+                   "  optional int32 b = 101;",
+                   "}",
+                   "extend other.Base {",
+                   "  optional int32 c = 100;",
+                   "}");
+    ListMultimap<CollisionKey, PsiElement> keys = ProtoCollisionIndex.getCollisionKeys(protoFile);
+    assertEquals(
+        ImmutableSet.of(
+            CollisionKey.definition("foo.Outer"),
+            CollisionKey.definition("foo.Outer.Kind"),
+            CollisionKey.definition("foo.Search"),
+            CollisionKey.extensionNumber("foo.Outer", 100),
+            CollisionKey.extensionNumber("foo.Outer", 101),
+            CollisionKey.extensionNumber("other.Base", 100)),
+        keys.keySet());
+    assertEquals("Kind", keys.get(CollisionKey.definition("foo.Outer.Kind")).get(0).getText());
+    assertEquals("101", keys.get(CollisionKey.extensionNumber("foo.Outer", 101)).get(0).getText());
+  }
+}
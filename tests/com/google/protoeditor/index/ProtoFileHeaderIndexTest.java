@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.index;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protoeditor.psi.ProtoFile;
+import com.google.protoeditor.psi.ProtoTestCase;
+
+/**
+ * Test cases for {@link ProtoFileHeaderIndex}.
+ */
+public class ProtoFileHeaderIndexTest extends ProtoTestCase {
+
+  public void testHeaderOfEachFileWithTheSameName() throws Exception {
+    ProtoFile foo = addProtoFile("foo/common.proto",
+        "package foo.bar;",
+        "import \"other/common.proto\";",
+        "import \"baz/baz.proto\";",
+        "message Foo {",
+        "}");
+    ProtoFile noPackage = addProtoFile("other/common.proto",
+        "message Bar {",
+        "}");
+
+    assertEquals("foo.bar",
+        ProtoFileHeaderIndex.getPackageName(getProject(), foo.getVirtualFile()));
+    assertEquals(ImmutableList.of("other/common.proto", "baz/baz.proto"),
+        ProtoFileHeaderIndex.getHeader(getProject(), foo.getVirtualFile()).getImportedPaths());
+    ProtoFileHeaderIndex.Header header =
+        ProtoFileHeaderIndex.getHeader(getProject(), noPackage.getVirtualFile());
+    assertNotNull(header);
+    assertNull(header.getPackageName());
+    assertTrue(header.getImportedPaths().isEmpty());
+  }
+
+  public void testFileThatIsNotIndexed() throws Exception {
+    writeTestProto("package foo;");
+    assertNull(ProtoFileHeaderIndex.getHeader(getProject(), virtualTestFile));
+  }
+}
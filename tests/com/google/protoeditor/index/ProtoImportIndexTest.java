@@ -0,0 +1,33 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.index;
+
+import com.google.common.collect.ImmutableList;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for {@link ProtoImportIndex}.
+ */
+public class ProtoImportIndexTest extends TestCase {
+
+  public void testImportPaths() {
+    assertEquals(ImmutableList.of("c.proto", "b/c.proto", "a/b/c.proto"),
+        ProtoImportIndex.getImportPaths("/a/b/c.proto"));
+    assertEquals(ImmutableList.of("c.proto"), ProtoImportIndex.getImportPaths("c.proto"));
+  }
+}
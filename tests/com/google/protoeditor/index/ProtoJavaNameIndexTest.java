@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.index;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.protoeditor.index.ProtoJavaNameIndex.JavaNameMapping;
+import com.google.protoeditor.psi.ProtoTestCase;
+
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.FileContentImpl;
+import com.intellij.util.indexing.IndexingDataKeys;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test cases for {@link ProtoJavaNameIndex}.
+ */
+public class ProtoJavaNameIndexTest extends ProtoTestCase {
+
+  public void testMappingExternalizer() throws Exception {
+    JavaNameMapping mapping =
+        new JavaNameMapping("foo.Bar", "com.example.Foo.Bar", ImmutableList.of(3, 1));
+    ProtoJavaNameIndex index = new ProtoJavaNameIndex();
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    index.getValueExternalizer().save(new DataOutputStream(os), mapping);
+    JavaNameMapping deserialized = index.getValueExternalizer().read(
+        new DataInputStream(new ByteArrayInputStream(os.toByteArray())));
+    assertEquals(mapping, deserialized);
+  }
+
+  public void testMappings() throws Exception {
+    writeTestProto("package foo;",
+                   "option java_outer_classname = \"FooProtos\";",
+                   "message Outer {",
+                   "  enum Kind {",
+                   "    A = 1;",
+                   "  }",
+                   "  optional Kind kind = 1;",
+                   "}",
+                   "service Search {",
+                   "}");
+    List<JavaNameMapping> mappings = ProtoJavaNameIndex.getMappings(protoFile);
+    Map<String, String> javaNames = Maps.newHashMap();
+    for (JavaNameMapping mapping : mappings) {
+      javaNames.put(mapping.getProtoName(), mapping.getJavaName());
+    }
+    assertEquals(
+        ImmutableMap.of(
+            "foo.Outer", "foo.FooProtos.Outer",
+            "foo.Outer.Kind", "foo.FooProtos.Outer.Kind",
+            "foo.Search", "foo.FooProtos.Search"),
+        javaNames);
+    for (JavaNameMapping mapping : mappings) {
+      assertNotNull(ProtoSymbolIndexLookup.findElement(protoFile, mapping.getPathFromRoot()));
+    }
+  }
+
+  public void testIndexedByJavaNameOnly() throws Exception {
+    writeTestProto("package foo;",
+                   "option java_outer_classname = \"FooProtos\";",
+                   "message Outer {",
+                   "}");
+    FileContent content = new FileContentImpl(protoFile.getVirtualFile());
+    content.putUserData(IndexingDataKeys.PROJECT, getProject());
+    Map<String, JavaNameMapping> keys = new ProtoJavaNameIndex().getIndexer().map(content);
+    assertEquals(ImmutableSet.of("foo.FooProtos.Outer"), keys.keySet());
+    assertEquals("foo.Outer", keys.get("foo.FooProtos.Outer").getProtoName());
+  }
+}
@@ -20,11 +20,15 @@ import com.google.protoeditor.psi.ProtoTestCase;
 
 import com.intellij.ide.caches.FileContent;
 import com.intellij.navigation.NavigationItem;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.Processor;
 import com.intellij.util.indexing.FileBasedIndex;
 import com.intellij.util.indexing.IndexingDataKeys;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 
 public class ProtoSymbolIndexLookupTest extends ProtoTestCase {
@@ -74,6 +78,26 @@ public class ProtoSymbolIndexLookupTest extends ProtoTestCase {
     assertEquals("PEAR", symbolEl.get(0).getName());
   }
 
+  public void testProcessNamesStopsWhenProcessorDoes() throws Exception {
+    final List<String> names = new ArrayList<String>();
+    boolean completed = new ProtoSymbolIndexLookup().processNames(
+        ProtoSymbolIndex.ProtoSymbolType.NAMED_ELEMENT, new Processor<String>() {
+          @Override
+          public boolean process(String name) {
+            names.add(name);
+            return false;
+          }
+        }, GlobalSearchScope.allScope(getProject()), null);
+    assertFalse(completed);
+    assertEquals(1, names.size());
+  }
+
+  public void testNamesAreDistinct() throws Exception {
+    List<String> names = Arrays.asList(new ProtoSymbolIndexLookup().getProtoNames(
+        ProtoSymbolIndex.ProtoSymbolType.NAMED_ELEMENT, getProject()));
+    assertEquals(new HashSet<String>(names).size(), names.size());
+  }
+
   private void saveTestProto() throws IOException {
     writeTestProto(
         "message SearchResponse {",
@@ -20,10 +20,12 @@ import com.google.common.collect.Lists;
 import com.google.protoeditor.index.ProtoSymbolIndex.ProtoIndexKey;
 import com.google.protoeditor.index.ProtoSymbolIndex.ProtoIndexValue;
 import com.google.protoeditor.index.ProtoSymbolIndex.ProtoSymbolType;
+import com.google.protoeditor.psi.ProtoMessageDefinition;
 import com.google.protoeditor.psi.ProtoNamedElement;
 import com.google.protoeditor.psi.ProtoTestCase;
 
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.indexing.DataIndexer;
 import com.intellij.util.indexing.FileContent;
 import com.intellij.util.indexing.FileContentImpl;
@@ -41,8 +43,7 @@ public class ProtoSymbolIndexTest extends ProtoTestCase {
 
   public void testProtoIndexKeySerializerAndDeserializer() throws Exception {
     ProtoSymbolIndex.ProtoIndexKey indexKey = new ProtoSymbolIndex.ProtoIndexKey(
-        ProtoSymbolIndex.ProtoSymbolType.NAMED_ELEMENT, "unittest",
-        "/path/to/my/project/src/google3/a/b/c/rpc.proto");
+        ProtoSymbolIndex.ProtoSymbolType.NAMED_ELEMENT, "unittest");
     ByteArrayOutputStream os = new ByteArrayOutputStream();
     DataOutputStream dataOut = new DataOutputStream(os);
     indexKey.serialize(dataOut);
@@ -55,7 +56,7 @@ public class ProtoSymbolIndexTest extends ProtoTestCase {
 
   public void testProtoIndexValueSerializerAndDeserializer() throws Exception {
     ProtoSymbolIndex.ProtoIndexValue indexKey = new ProtoSymbolIndex.ProtoIndexValue(
-        Lists.<Integer>newArrayList(1, 2, 226));
+        Lists.<Integer>newArrayList(1, 2, 226), "foo.bar", true);
     ByteArrayOutputStream os = new ByteArrayOutputStream();
     DataOutputStream dataOut = new DataOutputStream(os);
     indexKey.serialize(dataOut);
@@ -68,21 +69,15 @@ public class ProtoSymbolIndexTest extends ProtoTestCase {
 
   public void testProtoSymbolsAddedToIndex() throws Exception {
     saveTestProto();
-    String filePath = protoFile.getVirtualFile().getPath();
-    ProtoIndexKey enumKey = new ProtoIndexKey(ProtoSymbolType.TOP_LEVEL_DEFINTION, "Response",
-        filePath);
-    ProtoIndexKey enumNameKey = new ProtoIndexKey(ProtoSymbolType.NAMED_ELEMENT, "Response",
-        filePath);
-    ProtoIndexKey messageKey = new ProtoIndexKey(ProtoSymbolType.TOP_LEVEL_DEFINTION, "Foo",
-        filePath);
-    ProtoIndexKey enumValueKey = new ProtoIndexKey(ProtoSymbolType.NAMED_ELEMENT, "YES",
-        filePath);
-    ProtoIndexKey messageFieldKey = new ProtoIndexKey(ProtoSymbolType.NAMED_ELEMENT, "answer",
-        filePath);
-
-    DataIndexer<ProtoIndexKey, ProtoIndexValue,FileContent> protoIndexer =
+    ProtoIndexKey enumKey = new ProtoIndexKey(ProtoSymbolType.TOP_LEVEL_DEFINTION, "Response");
+    ProtoIndexKey enumNameKey = new ProtoIndexKey(ProtoSymbolType.NAMED_ELEMENT, "Response");
+    ProtoIndexKey messageKey = new ProtoIndexKey(ProtoSymbolType.TOP_LEVEL_DEFINTION, "Foo");
+    ProtoIndexKey enumValueKey = new ProtoIndexKey(ProtoSymbolType.NAMED_ELEMENT, "YES");
+    ProtoIndexKey messageFieldKey = new ProtoIndexKey(ProtoSymbolType.NAMED_ELEMENT, "answer");
+
+    DataIndexer<ProtoIndexKey, List<ProtoIndexValue>, FileContent> protoIndexer =
         new ProtoSymbolIndex().getIndexer();
-    Map<ProtoIndexKey, ProtoSymbolIndex.ProtoIndexValue> protoSymbols = protoIndexer.map(
+    Map<ProtoIndexKey, List<ProtoIndexValue>> protoSymbols = protoIndexer.map(
         getFileContentForProtoFile());
     assertEquals(7, protoSymbols.size());
     assertTrue(protoSymbols.keySet().contains(enumKey));
@@ -91,36 +86,82 @@ public class ProtoSymbolIndexTest extends ProtoTestCase {
     assertTrue(protoSymbols.keySet().contains(enumValueKey));
     assertTrue(protoSymbols.keySet().contains(messageFieldKey));
 
-    ProtoSymbolIndex.ProtoIndexValue enumIndexValue = protoSymbols.get(enumKey);
+    ProtoSymbolIndex.ProtoIndexValue enumIndexValue = protoSymbols.get(enumKey).get(0);
     assertEquals(1, enumIndexValue.getPathFromRoot().size());
 
-    ProtoSymbolIndex.ProtoIndexValue messageIndexValue = protoSymbols.get(messageKey);
+    ProtoSymbolIndex.ProtoIndexValue messageIndexValue = protoSymbols.get(messageKey).get(0);
     assertEquals(1, messageIndexValue.getPathFromRoot().size());
   }
 
   public void testPathFromRootCalculatedCorrectly() throws Exception {
     saveTestProto();
-    String filePath = protoFile.getVirtualFile().getPath();
-    ProtoIndexKey enumKey = new ProtoIndexKey(ProtoSymbolType.TOP_LEVEL_DEFINTION, "Response",
-        filePath);
-    ProtoIndexKey messageFieldKey = new ProtoIndexKey(ProtoSymbolType.NAMED_ELEMENT, "answer",
-        filePath);
+    ProtoIndexKey enumKey = new ProtoIndexKey(ProtoSymbolType.TOP_LEVEL_DEFINTION, "Response");
+    ProtoIndexKey messageFieldKey = new ProtoIndexKey(ProtoSymbolType.NAMED_ELEMENT, "answer");
 
-    DataIndexer<ProtoIndexKey, ProtoIndexValue,FileContent> protoIndexer =
+    DataIndexer<ProtoIndexKey, List<ProtoIndexValue>, FileContent> protoIndexer =
         new ProtoSymbolIndex().getIndexer();
-    Map<ProtoIndexKey, ProtoSymbolIndex.ProtoIndexValue> protoSymbols = protoIndexer.map(
+    Map<ProtoIndexKey, List<ProtoIndexValue>> protoSymbols = protoIndexer.map(
         getFileContentForProtoFile());
     assertTrue(protoSymbols.keySet().contains(enumKey));
     assertTrue(protoSymbols.keySet().contains(messageFieldKey));
 
-    ProtoSymbolIndex.ProtoIndexValue enumIndexValue = protoSymbols.get(enumKey);
+    ProtoSymbolIndex.ProtoIndexValue enumIndexValue = protoSymbols.get(enumKey).get(0);
     assertEquals("Response", ((ProtoNamedElement)findElementInTree(enumIndexValue)).getName());
 
 
-    ProtoSymbolIndex.ProtoIndexValue messageIndexValue = protoSymbols.get(messageFieldKey);
+    ProtoSymbolIndex.ProtoIndexValue messageIndexValue = protoSymbols.get(messageFieldKey).get(0);
     assertEquals("answer", ((ProtoNamedElement)findElementInTree(messageIndexValue)).getName());
   }
 
+  public void testPackageAndTypeDefinitionsIndexed() throws Exception {
+    saveTestProto();
+    Map<ProtoIndexKey, List<ProtoIndexValue>> protoSymbols =
+        new ProtoSymbolIndex().getIndexer().map(getFileContentForProtoFile());
+
+    ProtoIndexValue enumValue = protoSymbols.get(
+        new ProtoIndexKey(ProtoSymbolType.TOP_LEVEL_DEFINTION, "Response")).get(0);
+    assertEquals("foo", enumValue.getPackageName());
+    assertTrue(enumValue.isTypeDefinition());
+    ProtoIndexValue fieldValue = protoSymbols.get(
+        new ProtoIndexKey(ProtoSymbolType.NAMED_ELEMENT, "answer")).get(0);
+    assertFalse(fieldValue.isTypeDefinition());
+  }
+
+  public void testSameNameInOneFileKeepsEveryDefinition() throws Exception {
+    writeTestProto(
+        "package foo;",
+        "message A {",
+        "  message Status {}",
+        "}",
+        "message B {",
+        "  message Status {}",
+        "}");
+    Map<ProtoIndexKey, List<ProtoIndexValue>> protoSymbols =
+        new ProtoSymbolIndex().getIndexer().map(getFileContentForProtoFile());
+
+    List<ProtoIndexValue> statusValues =
+        protoSymbols.get(new ProtoIndexKey(ProtoSymbolType.NAMED_ELEMENT, "Status"));
+    assertEquals(2, statusValues.size());
+    List<String> parents = Lists.newArrayList();
+    for (ProtoIndexValue value : statusValues) {
+      PsiElement status = findElementInTree(value);
+      assertEquals("Status", ((ProtoNamedElement) status).getName());
+      parents.add(PsiTreeUtil.getParentOfType(status, ProtoMessageDefinition.class).getName());
+    }
+    assertSameElements(parents, "A", "B");
+  }
+
+  public void testIndexValuesSerializerAndDeserializer() throws Exception {
+    List<ProtoIndexValue> values = Lists.newArrayList(
+        new ProtoIndexValue(Lists.newArrayList(1, 0), "foo", true),
+        new ProtoIndexValue(Lists.newArrayList(2, 0), "foo", true));
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    new ProtoSymbolIndex().getValueExternalizer().save(new DataOutputStream(os), values);
+    List<ProtoIndexValue> deserialized = new ProtoSymbolIndex().getValueExternalizer().read(
+        new DataInputStream(new ByteArrayInputStream(os.toByteArray())));
+    assertEquals(values, deserialized);
+  }
+
   private FileContent getFileContentForProtoFile() throws Exception {
     FileContent fc = new FileContentImpl(protoFile.getVirtualFile());
     fc.putUserData(IndexingDataKeys.PROJECT, getProject());
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.metrics;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+/**
+ * Test cases for {@link ProtoMetrics}.
+ */
+public class ProtoMetricsTest extends TestCase {
+
+  @Override
+  protected void tearDown() throws Exception {
+    ProtoMetrics.setEnabled(false);
+    ProtoMetrics.reset();
+    super.tearDown();
+  }
+
+  public void testNothingIsRecordedWhileDisabled() throws Exception {
+    ProtoMetrics.Timer timer = ProtoMetrics.timer("test.disabledTimer");
+    ProtoMetrics.Counter counter = ProtoMetrics.counter("test.disabledCounter");
+    timer.stop(timer.start());
+    counter.increment();
+    assertEquals(0, timer.getCount());
+    assertEquals(0, counter.getValue());
+  }
+
+  public void testTimerHistogram() throws Exception {
+    ProtoMetrics.Timer timer = ProtoMetrics.timer("test.histogram");
+    timer.record(5000L);
+    timer.record(50000L);
+    timer.record(50000L);
+    timer.record(2000000000L);
+    assertEquals(4, timer.getCount());
+    assertEquals(2000000000L, timer.getMaxNanos());
+    assertEquals(Arrays.toString(new long[] {1, 2, 0, 0, 0, 0, 1}),
+        Arrays.toString(timer.getHistogram()));
+
+    ProtoMetrics.setEnabled(true);
+    timer.stop(timer.start());
+    assertEquals(5, timer.getCount());
+  }
+
+  public void testCacheHitRatio() throws Exception {
+    ProtoMetrics.setEnabled(true);
+    ProtoMetrics.CacheMetric cache = ProtoMetrics.cache("test.cache");
+    assertEquals(0.0, cache.getHitRatio());
+    for (int i = 0; i < 4; i++) {
+      cache.request();
+    }
+    cache.miss();
+    assertEquals(0.75, cache.getHitRatio(), 1e-9);
+  }
+
+  public void testReports() throws Exception {
+    ProtoMetrics.setEnabled(true);
+    ProtoMetrics.Counter counter = ProtoMetrics.counter("test.reportCounter");
+    counter.add(3);
+    assertTrue(ProtoMetrics.getTextReport().contains("test.reportCounter"));
+    String json = ProtoMetrics.getJsonReport();
+    assertTrue(json.startsWith("{") && json.endsWith("}"));
+    assertTrue(json.contains("\"test.reportCounter\":{\"value\":3}"));
+    assertTrue(json.contains("\"ProtoParser.parse\":{\"count\":"));
+  }
+}
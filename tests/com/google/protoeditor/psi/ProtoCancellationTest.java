@@ -0,0 +1,190 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.psi;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.protoeditor.index.ProtoSymbolIndex;
+import com.google.protoeditor.index.ProtoSymbolIndexLookup;
+import com.google.protoeditor.validation.ProtoNameClashInspection;
+import com.google.protoeditor.validation.ProtoUnusedMessageInspection;
+
+import com.intellij.codeInspection.InspectionManager;
+import com.intellij.codeInspection.LocalInspectionTool;
+import com.intellij.codeInspection.ProblemsHolder;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.CommonProcessors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long resolution, index lookups and validation keep running after their progress
+ * indicator was canceled from another thread, in a project with many proto files.
+ * <p>
+ * Every operation is repeated in a read action on a pooled thread, as a daemon pass would run
+ * it, and the indicator is canceled while it runs. The operations are not cached, so each
+ * repetition walks the whole project and the time to cancel is bounded by the distance between
+ * the cancellation checks inside the operation.
+ */
+public class ProtoCancellationTest extends ProtoTestCase {
+
+  private static final int FILE_COUNT = 100;
+  private static final int MESSAGES_PER_FILE = 50;
+  private static final long RUN_BEFORE_CANCEL_MS = 100;
+  private static final long MAX_CANCEL_LATENCY_MS = 200;
+  private static final long TIMEOUT_SECONDS = 30;
+
+  private final List<ProtoFile> files = new ArrayList<ProtoFile>();
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    for (int i = 0; i < FILE_COUNT; i++) {
+      List<String> lines = new ArrayList<String>();
+      lines.add("package big;");
+      for (int j = 0; j < MESSAGES_PER_FILE; j++) {
+        lines.add("message Message" + i + "x" + j + " {");
+        lines.add("  optional message<Message" + i + "x0> first = 1;");
+        lines.add("}");
+      }
+      lines.add("service Service" + i + " {");
+      lines.add("  rpc Find(Message" + i + "x0) returns (Message" + i + "x1);");
+      lines.add("}");
+      files.add(addProtoFile("big/file" + i + ".proto", lines.toArray(new String[lines.size()])));
+    }
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    files.clear();
+    super.tearDown();
+  }
+
+  public void testCollectingVariantsIsCanceledPromptly() throws Exception {
+    assertCanceledPromptly(new Runnable() {
+      @Override
+      public void run() {
+        ProtoMessageTypeReference.computeVariants(files.get(0));
+      }
+    });
+  }
+
+  public void testMessageFinderIsCanceledPromptly() throws Exception {
+    final MessageFinder finder = new MessageFinder(files.get(0), ImmutableSet.of("big"),
+                                                   Collections.<String>emptySet()) {
+      @Override
+      protected boolean handleMessage(ProtoMessageDefinition def) {
+        return true;
+      }
+
+      @Override
+      protected boolean handleFile(ProtoFile protoFile) {
+        return true;
+      }
+    };
+    assertCanceledPromptly(new Runnable() {
+      @Override
+      public void run() {
+        ModuleRootManager.getInstance(getModule()).getFileIndex().iterateContent(finder);
+      }
+    });
+  }
+
+  public void testIndexLookupIsCanceledPromptly() throws Exception {
+    assertCanceledPromptly(new Runnable() {
+      @Override
+      public void run() {
+        new ProtoSymbolIndexLookup().processNames(ProtoSymbolIndex.ProtoSymbolType.NAMED_ELEMENT,
+            CommonProcessors.<String>alwaysTrue(), GlobalSearchScope.allScope(getProject()),
+            null);
+      }
+    });
+  }
+
+  public void testValidationIsCanceledPromptly() throws Exception {
+    final List<LocalInspectionTool> inspections = new ArrayList<LocalInspectionTool>();
+    inspections.add(new ProtoNameClashInspection());
+    inspections.add(new ProtoUnusedMessageInspection());
+    assertCanceledPromptly(new Runnable() {
+      @Override
+      public void run() {
+        for (ProtoFile file : files) {
+          for (LocalInspectionTool inspection : inspections) {
+            ProblemsHolder holder =
+                new ProblemsHolder(InspectionManager.getInstance(getProject()), file, false);
+            // The file-wide name and unused message checks are registered for the file.
+            inspection.buildVisitor(holder, false).visitElement(file);
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Repeats the operation until it is canceled from the test thread, and checks that it stops
+   * within {@link #MAX_CANCEL_LATENCY_MS} of the cancellation.
+   */
+  private void assertCanceledPromptly(final Runnable operation) throws Exception {
+    final ProgressIndicator indicator = new EmptyProgressIndicator();
+    final CountDownLatch started = new CountDownLatch(1);
+    Future<?> future = ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+      @Override
+      public void run() {
+        ProgressManager.getInstance().runProcess(new Runnable() {
+          @Override
+          public void run() {
+            ApplicationManager.getApplication().runReadAction(new Runnable() {
+              @Override
+              public void run() {
+                started.countDown();
+                while (true) {
+                  operation.run();
+                  // Keeps the thread from spinning forever if the operation never checks.
+                  ProgressManager.checkCanceled();
+                }
+              }
+            });
+          }
+        }, indicator);
+      }
+    });
+    assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    Thread.sleep(RUN_BEFORE_CANCEL_MS);
+    long canceled = System.currentTimeMillis();
+    indicator.cancel();
+    try {
+      future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      fail("operation was not canceled");
+    } catch (ExecutionException e) {
+      assertInstanceOf(e.getCause(), ProcessCanceledException.class);
+    }
+    long latency = System.currentTimeMillis() - canceled;
+    assertTrue("operation ran " + latency + " ms after it was canceled",
+               latency <= MAX_CANCEL_LATENCY_MS);
+  }
+}
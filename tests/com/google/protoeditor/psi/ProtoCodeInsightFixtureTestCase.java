@@ -0,0 +1,59 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.psi;
+
+import com.intellij.testFramework.fixtures.JavaCodeInsightFixtureTestCase;
+import com.intellij.util.ui.UIUtil;
+
+/**
+ * Common code for proto-editor tests that need a code insight fixture, e.g. to complete, to
+ * add Java classes or to collect line markers.
+ */
+public abstract class ProtoCodeInsightFixtureTestCase extends JavaCodeInsightFixtureTestCase {
+
+  private static final long VARIANTS_TIMEOUT_MS = 10000;
+
+  @Override
+  protected void setUp() throws Exception {
+    System.setProperty("idea.platform.prefix", "Idea");
+    ProtoTestCase.setIfNotSet("idea.load.plugins.id", "com.google.protoeditor");
+    super.setUp();
+  }
+
+  /**
+   * Adds a stub of the legacy base class of generated message classes to the project.
+   */
+  protected void addProtocolMessageClass() {
+    myFixture.addClass("package com.google.io.protocol;\n"
+        + "public abstract class ProtocolMessage {}");
+  }
+
+  /**
+   * Waits until the background computation of {@link ProtoVariantsCache}, started by asking
+   * a message type reference of the given file for its variants, has stored its result.
+   */
+  protected static void waitForVariants(ProtoFile file) throws InterruptedException {
+    ProtoVariantsCache cache = ProtoVariantsCache.getInstance(file);
+    long deadline = System.currentTimeMillis() + VARIANTS_TIMEOUT_MS;
+    while (!cache.isUpToDate()) {
+      assertTrue("Variants were not computed in time", System.currentTimeMillis() < deadline);
+      // Canceled computations are restarted from the event dispatch thread.
+      UIUtil.dispatchAllInvocationEvents();
+      Thread.sleep(10);
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.psi;
+
+/**
+ * Test cases for {@link ProtoJavaNames}.
+ */
+public class ProtoJavaNamesTest extends ProtoTestCase {
+
+  public void testToCamelCase() {
+    assertEquals("Test", ProtoJavaNames.toCamelCase("test"));
+    assertEquals("FooBar", ProtoJavaNames.toCamelCase("foo_bar"));
+    assertEquals("FooBar", ProtoJavaNames.toCamelCase("foo-bar"));
+    assertEquals("Foo2Bar", ProtoJavaNames.toCamelCase("foo2bar"));
+    assertEquals("FOOBar", ProtoJavaNames.toCamelCase("FOO_bar"));
+  }
+
+  public void testDefaultOuterClass() throws Exception {
+    writeTestProto("package foo.bar;",
+                   "message Outer {",
+                   "  message Inner {",
+                   "  }",
+                   "}");
+    ProtoMessageDefinition outer = getOnlyMessage(protoFile, "Outer");
+    assertEquals("foo.bar.Test.Outer", ProtoJavaNames.getJavaClassName(outer));
+    ProtoMessageDefinition inner = outer.getDefinitionBody().getMessageDefinitions().get(0);
+    assertEquals("foo.bar.Test.Outer.Inner", ProtoJavaNames.getJavaClassName(inner));
+  }
+
+  public void testJavaOptions() throws Exception {
+    writeTestProto("package foo;",
+                   "option java_package = \"com.example.foo\";",
+                   "option java_outer_classname = \"FooProtos\";",
+                   "message Outer {",
+                   "}");
+    assertEquals("com.example.foo", ProtoJavaNames.getJavaPackage(protoFile));
+    assertEquals("FooProtos", ProtoJavaNames.getOuterClassName(protoFile));
+    assertEquals("com.example.foo.FooProtos.Outer",
+        ProtoJavaNames.getJavaClassName(getOnlyMessage(protoFile, "Outer")));
+  }
+
+  public void testMultipleFiles() throws Exception {
+    writeTestProto("option java_package = \"com.example\";",
+                   "option java_multiple_files = true;",
+                   "message Outer {",
+                   "}");
+    assertTrue(ProtoJavaNames.isMultipleFiles(protoFile));
+    assertEquals("com.example.Outer",
+        ProtoJavaNames.getJavaClassName(getOnlyMessage(protoFile, "Outer")));
+  }
+
+  public void testEnclosingDefinition() throws Exception {
+    writeTestProto("message Outer {",
+                   "  optional int32 field = 1;",
+                   "}");
+    ProtoMessageDefinition outer = getOnlyMessage(protoFile, "Outer");
+    int offset = protoFile.getText().indexOf("field");
+    assertSame(outer, ProtoJavaNames.getEnclosingDefinition(protoFile.findElementAt(offset)));
+    assertNull(ProtoJavaNames.getEnclosingDefinition(protoFile));
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.psi;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.roots.ex.ProjectRootManagerEx;
+import com.intellij.openapi.util.EmptyRunnable;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.util.PsiTreeUtil;
+
+import java.util.Arrays;
+
+/**
+ * Test cases for {@link ProtoMessageClasses}.
+ */
+public class ProtoMessageClassesTest extends ProtoCodeInsightFixtureTestCase {
+
+  private PsiClass person;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    addProtocolMessageClass();
+    person = myFixture.addClass("package com.example;\n"
+        + "public class Person extends com.google.io.protocol.ProtocolMessage {}");
+    myFixture.addClass("package com.example;\n"
+        + "public class NotAMessage {}");
+  }
+
+  public void testFindsSubclassesOfTheMessageBaseClasses() {
+    ProtoMessageClasses classes = ProtoMessageClasses.getInstance(configure("package foo;"));
+    assertSameElements(classes.getAllClasses(), person);
+    assertSameElements(classes.getClassesByName("Person"), person);
+    assertTrue(classes.getClassesByName("NotAMessage").isEmpty());
+  }
+
+  public void testCachedUntilJavaStructureChanges() {
+    ProtoFile file = configure("package foo;");
+    ProtoMessageClasses classes = ProtoMessageClasses.getInstance(file);
+    assertSame(classes, ProtoMessageClasses.getInstance(file));
+
+    PsiClass address = myFixture.addClass("package com.example;\n"
+        + "public class Address extends com.google.io.protocol.ProtocolMessage {}");
+    ProtoMessageClasses updated = ProtoMessageClasses.getInstance(file);
+    assertNotSame(classes, updated);
+    assertSameElements(updated.getClassesByName("Address"), address);
+  }
+
+  public void testCachedUntilProjectRootsChange() {
+    ProtoFile file = configure("package foo;");
+    ProtoMessageClasses classes = ProtoMessageClasses.getInstance(file);
+
+    ApplicationManager.getApplication().runWriteAction(new Runnable() {
+      @Override
+      public void run() {
+        ProjectRootManagerEx.getInstanceEx(getProject())
+            .makeRootsChange(EmptyRunnable.getInstance(), false, true);
+      }
+    });
+    assertNotSame(classes, ProtoMessageClasses.getInstance(file));
+  }
+
+  public void testClassOfThePackageIsResolvedAndOffered() throws Exception {
+    ProtoFile file = configure("package com.example;");
+    ProtoMessageTypeReference reference = getReference(file);
+    assertSame(person, reference.resolve());
+    reference.getVariants();
+    waitForVariants(file);
+    assertTrue(Arrays.asList(reference.getVariants()).contains(person));
+  }
+
+  public void testClassOfAnotherPackageIsNeitherResolvedNorOffered() throws Exception {
+    ProtoFile file = configure("package foo;");
+    ProtoMessageTypeReference reference = getReference(file);
+    assertNull(reference.resolve());
+    reference.getVariants();
+    waitForVariants(file);
+    assertFalse(Arrays.asList(reference.getVariants()).contains(person));
+  }
+
+  private ProtoFile configure(String packageStatement) {
+    return (ProtoFile) myFixture.configureByText("test.proto", packageStatement + "\n"
+        + "message Foo {\n"
+        + "  optional Person person = 1;\n"
+        + "}");
+  }
+
+  private static ProtoMessageTypeReference getReference(ProtoFile file) {
+    return PsiTreeUtil.findChildOfType(file, ProtoMessageTypeReference.class);
+  }
+}
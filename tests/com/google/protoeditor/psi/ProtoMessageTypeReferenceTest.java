@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.psi;
+
+import com.intellij.psi.util.PsiTreeUtil;
+
+/**
+ * Test cases for {@link ProtoMessageTypeReference}.
+ */
+public class ProtoMessageTypeReferenceTest extends ProtoTestCase {
+
+  public void testResolveWithinFile() throws Exception {
+    writeTestProto("message Foo {",
+                   "  optional message<Bar> bar = 1;",
+                   "}",
+                   "message Bar {",
+                   "}");
+    ProtoMessageTypeReference reference =
+        PsiTreeUtil.findChildOfType(protoFile, ProtoMessageTypeReference.class);
+    assertSame(getMessageByName(protoFile, "Bar"), reference.resolve());
+  }
+}
@@ -16,6 +16,12 @@
 
 package com.google.protoeditor.psi;
 
+import com.google.common.collect.Lists;
+
+import com.intellij.psi.util.PsiTreeUtil;
+
+import java.util.List;
+
 public class ProtoPsiToolsTest extends ProtoTestCase {
 
   public void testIsProto2Syntax() throws Exception {
@@ -34,4 +40,54 @@ public class ProtoPsiToolsTest extends ProtoTestCase {
     writeTestProto("just some not parseable mess");
     assertFalse(ProtoPsiTools.isProto2Syntax(protoFile));
   }
+
+  public void testQualifiedNames() throws Exception {
+    writeTestProto("package foo.bar;",
+                   "message Outer {",
+                   "  message Inner {",
+                   "    optional int32 field = 1;",
+                   "  }",
+                   "}",
+                   "service Search {",
+                   "  rpc Find (Outer) returns (Outer);",
+                   "}");
+    ProtoMessageDefinition outer = getMessageByName(protoFile, "Outer");
+    ProtoMessageDefinition inner = outer.getDefinitionBody().getMessageDefinitions().get(0);
+    ProtoProperty field = getOnlyProperty(inner);
+
+    assertEquals("foo.bar.Outer", outer.getQualifiedName());
+    assertEquals("foo.bar.Outer.Inner", inner.getQualifiedName());
+    assertEquals("foo.bar.Outer.Inner.field", field.getQualifiedName());
+    assertEquals("Outer.Inner.field", ProtoPsiTools.getNestedName(field));
+    assertEquals("foo.bar.Search.Find",
+                 getServiceDefinitions().getRpcDefinitions().get(0).getQualifiedName());
+    assertEquals("(in Outer.Inner in " + TEST_PROTO + ")",
+                 field.getPresentation().getLocationString());
+  }
+
+  public void testQualifiedNameWithoutPackage() throws Exception {
+    writeTestProto("message Outer {",
+                   "  optional int32 field = 1;",
+                   "}");
+    ProtoMessageDefinition outer = getOnlyMessage(protoFile, "Outer");
+    assertEquals("Outer", outer.getQualifiedName());
+    assertEquals("Outer.field", getOnlyProperty(outer).getQualifiedName());
+  }
+
+  public void testExtensionFieldsAreNamedInTheDeclaringScope() throws Exception {
+    writeTestProto("package foo;",
+                   "message Outer {",
+                   "  extend Target {",
+                   "    optional int32 nested = 100;",
+                   "  }",
+                   "}",
+                   "extend Target {",
+                   "  optional int32 top = 101;",
+                   "}");
+    List<ProtoProperty> fields = Lists.newArrayList(
+        PsiTreeUtil.findChildrenOfType(protoFile, ProtoProperty.class));
+    assertEquals(2, fields.size());
+    assertEquals("foo.Outer.nested", fields.get(0).getQualifiedName());
+    assertEquals("foo.top", fields.get(1).getQualifiedName());
+  }
 }
@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.psi;
+
+import com.google.common.collect.Lists;
+import com.google.protoeditor.findusages.ProtoFindUsagesProvider;
+
+import com.intellij.openapi.application.Result;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.psi.PsiReference;
+import com.intellij.psi.util.PsiTreeUtil;
+
+import java.util.List;
+
+/**
+ * Test cases for the references from type names and enum defaults to their definitions.
+ */
+public class ProtoReferencesTest extends ProtoTestCase {
+
+  public void testEnumTypeAndDefault() throws Exception {
+    writeTestProto("message Foo {",
+                   "  enum Kind {",
+                   "    A = 1;",
+                   "    B = 2;",
+                   "  }",
+                   "  optional Kind kind = 1 [default = B];",
+                   "}");
+    ProtoMessageDefinition foo = getOnlyMessage(protoFile, "Foo");
+    ProtoEnumDefinition kind = foo.getDefinitionBody().getEnumerations().get(0);
+    ProtoEnumPropertyType type = PsiTreeUtil.findChildOfType(protoFile,
+        ProtoEnumPropertyType.class);
+    assertSame(kind, type.getReference().resolve());
+    ProtoDefaultValue defaultValue = PsiTreeUtil.findChildOfType(protoFile,
+        ProtoDefaultValue.class);
+    assertSame(kind.getConstants().get(1), defaultValue.getReference().resolve());
+    assertEquals(2, defaultValue.getReference().getVariants().length);
+  }
+
+  public void testTypeNameReferenceIsCachedUntilTheFileChanges() throws Exception {
+    writeTestProto("message Foo {",
+                   "}",
+                   "extend Foo {",
+                   "  optional int32 bar = 100;",
+                   "}");
+    ProtoExtendDefinition extend = PsiTreeUtil.findChildOfType(protoFile,
+        ProtoExtendDefinition.class);
+    final PsiReference reference = extend.getReference();
+    assertSame(reference, extend.getReference());
+
+    new WriteCommandAction(getProject()) {
+      @Override
+      protected void run(Result result) throws Throwable {
+        reference.handleElementRename("Bar");
+      }
+    }.execute();
+    PsiReference renamed = extend.getReference();
+    assertNotSame(reference, renamed);
+    assertEquals("Bar", renamed.getCanonicalText());
+  }
+
+  public void testNestedAndQualifiedFieldTypes() throws Exception {
+    writeTestProto("package foo;",
+                   "message Outer {",
+                   "  message Inner {",
+                   "  }",
+                   "  optional Inner inner = 1;",
+                   "}",
+                   "message Other {",
+                   "  optional Outer.Inner a = 1;",
+                   "  optional foo.Outer b = 2;",
+                   "}");
+    ProtoMessageDefinition outer = getMessageByName(protoFile, "Outer");
+    ProtoMessageDefinition inner = outer.getDefinitionBody().getMessageDefinitions().get(0);
+    List<ProtoUserDefinedPropertyType> types = Lists.newArrayList(
+        PsiTreeUtil.findChildrenOfType(protoFile, ProtoUserDefinedPropertyType.class));
+    assertEquals(3, types.size());
+    assertSame(inner, types.get(0).getTypeReferenceElement().resolve());
+    assertSame(inner, types.get(1).getTypeReferenceElement().resolve());
+    assertSame(outer, types.get(2).getTypeReferenceElement().resolve());
+  }
+
+  public void testExtendTarget() throws Exception {
+    writeTestProto("message Foo {",
+                   "  extensions 100 to 199;",
+                   "}",
+                   "extend Foo {",
+                   "  optional int32 bar = 100;",
+                   "}");
+    ProtoExtendDefinition extend = PsiTreeUtil.findChildOfType(protoFile,
+        ProtoExtendDefinition.class);
+    PsiReference reference = extend.getReference();
+    assertEquals("Foo", reference.getCanonicalText());
+    assertSame(getMessageByName(protoFile, "Foo"), reference.resolve());
+  }
+
+  public void testRpcTypes() throws Exception {
+    writeTestProto("message Request {",
+                   "}",
+                   "service Search {",
+                   "  rpc Find(Request) returns (Request);",
+                   "}");
+    ProtoRpcDefinition rpc = PsiTreeUtil.findChildOfType(protoFile, ProtoRpcDefinition.class);
+    assertSame(getMessageByName(protoFile, "Request"),
+        rpc.getInputTypeElement().getTypeReferenceElement().resolve());
+    assertSame(getMessageByName(protoFile, "Request"),
+        rpc.getReturnTypeElement().getTypeReferenceElement().resolve());
+  }
+
+  public void testFindUsagesForAllNamedElements() throws Exception {
+    writeTestProto("message Foo {",
+                   "  enum Kind {",
+                   "    A = 1;",
+                   "  }",
+                   "  optional int32 field = 1;",
+                   "}",
+                   "service Search {",
+                   "  rpc Find(Foo) returns (Foo);",
+                   "}");
+    ProtoFindUsagesProvider provider = new ProtoFindUsagesProvider();
+    for (ProtoNamedElement element
+        : PsiTreeUtil.findChildrenOfType(protoFile, ProtoNamedElement.class)) {
+      assertTrue(element.getName(), provider.canFindUsagesFor(element));
+    }
+    assertEquals("enum constant", provider.getType(
+        PsiTreeUtil.findChildOfType(protoFile, ProtoEnumConstant.class)));
+  }
+}
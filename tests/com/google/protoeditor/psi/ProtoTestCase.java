@@ -35,6 +35,8 @@ import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.psi.PsiRecursiveElementVisitor;
 import com.intellij.testFramework.IdeaTestCase;
+import com.intellij.testFramework.PsiTestUtil;
+import com.intellij.testFramework.VfsTestUtil;
 import com.intellij.testFramework.fixtures.IdeaProjectTestFixture;
 import com.intellij.testFramework.fixtures.IdeaTestFixtureFactory;
 import com.intellij.testFramework.fixtures.TestFixtureBuilder;
@@ -58,6 +60,7 @@ public class ProtoTestCase extends IdeaTestCase {
   protected IdeaProjectTestFixture fixture;
   protected ProtoFile protoFile;
   protected VirtualFile virtualTestFile;
+  private VirtualFile sourceRoot;
 
   @Override
   protected void setUp() throws Exception {
@@ -74,6 +77,7 @@ public class ProtoTestCase extends IdeaTestCase {
   @Override
   protected void tearDown() throws Exception {
     protoFile = null;
+    sourceRoot = null;
     if (virtualTestFile != null) {
       virtualTestFile.delete(this);
     }
@@ -119,6 +123,20 @@ public class ProtoTestCase extends IdeaTestCase {
     EasyMock.verify(annotationHolder);
   }
 
+  /**
+   * Creates a proto file with the given path and lines under a source root of the module of
+   * the test, so that it is indexed, and returns it.
+   */
+  protected ProtoFile addProtoFile(String relativePath, String... lines) throws IOException {
+    if (sourceRoot == null) {
+      sourceRoot = getVirtualFile(createTempDirectory());
+      PsiTestUtil.addSourceContentToRoots(getModule(), sourceRoot);
+    }
+    VirtualFile file = VfsTestUtil.createFile(sourceRoot, relativePath,
+        Joiner.on("\n").join(lines));
+    return (ProtoFile) PsiManager.getInstance(getProject()).findFile(file);
+  }
+
   protected ProtoFile openProtoFile(File fileContainingProto) throws FileNotFoundException {
     return openProtoFile(LocalFileSystem.getInstance().findFileByIoFile(fileContainingProto));
   }
@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.psi;
+
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.SearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+
+/**
+ * Test cases for {@link ProtoUseScope}.
+ */
+public class ProtoUseScopeTest extends ProtoTestCase {
+
+  public void testDefiningFileWithoutImporters() throws Exception {
+    writeTestProto("message Foo {",
+                   "}");
+    ProtoMessageDefinition foo = getOnlyMessage(protoFile, "Foo");
+    SearchScope scope = foo.getUseScope();
+    assertTrue(scope instanceof GlobalSearchScope);
+    assertTrue(((GlobalSearchScope) scope).contains(virtualTestFile));
+    assertSame(ProtoUseScope.getUseScope(protoFile), ProtoUseScope.getUseScope(protoFile));
+  }
+
+  public void testFilesSeeingTheDefinitionsWithoutImportsAreInScope() throws Exception {
+    ProtoFile defining = addProtoFile("foo/defining.proto",
+        "package foo;",
+        "message Foo {",
+        "}");
+    ProtoFile samePackage = addProtoFile("foo/same.proto",
+        "package foo;",
+        "message Bar {",
+        "  optional Foo foo = 1;",
+        "}");
+    ProtoFile nestedPackage = addProtoFile("foo/bar/nested.proto",
+        "package foo.bar;",
+        "message Baz {",
+        "  optional Foo foo = 1;",
+        "}");
+    ProtoFile otherPackage = addProtoFile("other/other.proto",
+        "package other;",
+        "message Quux {",
+        "  optional foo.Foo foo = 1;",
+        "}");
+    ProtoFile importing = addProtoFile("other/importing.proto",
+        "package other;",
+        "import \"foo/defining.proto\";",
+        "message Quuz {",
+        "  optional foo.Foo foo = 1;",
+        "}");
+
+    ProtoMessageDefinition foo = getOnlyMessage(defining, "Foo");
+    GlobalSearchScope scope = (GlobalSearchScope) foo.getUseScope();
+    assertTrue(scope.contains(samePackage.getVirtualFile()));
+    assertTrue(scope.contains(nestedPackage.getVirtualFile()));
+    assertTrue(scope.contains(importing.getVirtualFile()));
+    assertFalse(scope.contains(otherPackage.getVirtualFile()));
+
+    assertSame(foo, resolveOnlyReference(samePackage));
+    assertSame(foo, resolveOnlyReference(nestedPackage));
+    assertSame(foo, resolveOnlyReference(importing));
+    assertNull(resolveOnlyReference(otherPackage));
+  }
+
+  public void testReferableScopeContainsTheFilesSeenByTheReferringFile() throws Exception {
+    ProtoFile defining = addProtoFile("foo/defining.proto",
+        "package foo;",
+        "message Foo {",
+        "}");
+    ProtoFile importing = addProtoFile("other/importing.proto",
+        "package other;",
+        "import \"foo/defining.proto\";",
+        "message Bar {",
+        "}");
+    ProtoFile otherPackage = addProtoFile("other/other.proto",
+        "package other;",
+        "message Baz {",
+        "}");
+    ProtoFile nestedPackage = addProtoFile("foo/bar/nested.proto",
+        "package foo.bar;",
+        "message Quux {",
+        "}");
+
+    GlobalSearchScope scope = ProtoUseScope.getReferableScope(importing);
+    assertTrue(scope.contains(defining.getVirtualFile()));
+    assertTrue(scope.contains(importing.getVirtualFile()));
+    assertTrue(scope.contains(otherPackage.getVirtualFile()));
+    assertFalse(scope.contains(nestedPackage.getVirtualFile()));
+
+    assertSame(ProtoUseScope.getUseScope(defining),
+        ProtoUseScope.getUseScope(getProject(), defining.getVirtualFile()));
+  }
+
+  private static PsiElement resolveOnlyReference(ProtoFile file) {
+    return PsiTreeUtil.findChildOfType(file, ProtoMessageTypeReference.class).resolve();
+  }
+}
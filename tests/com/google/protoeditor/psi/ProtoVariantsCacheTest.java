@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.psi;
+
+import com.intellij.psi.util.PsiTreeUtil;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test cases for {@link ProtoVariantsCache}.
+ */
+public class ProtoVariantsCacheTest extends ProtoTestCase {
+
+  public void testFileMessagesAreAvailableBeforeComputation() throws Exception {
+    writeTestProto("message Foo {",
+                   "  optional message<Bar> bar = 1;",
+                   "}",
+                   "message Bar {",
+                   "}");
+    ProtoMessageTypeReference reference =
+        PsiTreeUtil.findChildOfType(protoFile, ProtoMessageTypeReference.class);
+    List<Object> variants = Arrays.asList(
+        ProtoVariantsCache.getInstance(protoFile).getVariants(reference));
+    assertTrue(variants.contains(getMessageByName(protoFile, "Foo")));
+    assertTrue(variants.contains(getMessageByName(protoFile, "Bar")));
+  }
+
+  public void testComputedVariantsAreReused() throws Exception {
+    writeTestProto("message Foo {",
+                   "  optional message<Foo> foo = 1;",
+                   "}");
+    ProtoMessageTypeReference reference =
+        PsiTreeUtil.findChildOfType(protoFile, ProtoMessageTypeReference.class);
+    ProtoVariantsCache cache = ProtoVariantsCache.getInstance(protoFile);
+    assertSame(cache, ProtoVariantsCache.getInstance(protoFile));
+    cache.update();
+    Object[] variants = cache.getVariants(reference);
+    assertSame(variants, cache.getVariants(reference));
+    assertTrue(Arrays.asList(variants).contains(getOnlyMessage(protoFile, "Foo")));
+  }
+
+  public void testFileWithoutReferencesIsComputed() throws Exception {
+    writeTestProto("message Foo {",
+                   "}");
+    ProtoVariantsCache cache = ProtoVariantsCache.getInstance(protoFile);
+    assertFalse(cache.isUpToDate());
+    cache.update();
+    assertTrue(cache.isUpToDate());
+  }
+
+  public void testVariantsAreComputedInTheBackground() throws Exception {
+    writeTestProto("message Foo {",
+                   "  optional message<Foo> foo = 1;",
+                   "}");
+    ProtoMessageTypeReference reference =
+        PsiTreeUtil.findChildOfType(protoFile, ProtoMessageTypeReference.class);
+    ProtoVariantsCache cache = ProtoVariantsCache.getInstance(protoFile);
+    cache.getVariants(reference);
+    ProtoCodeInsightFixtureTestCase.waitForVariants(protoFile);
+    assertSame(cache.getVariants(reference), cache.getVariants(reference));
+  }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.validation;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.protoeditor.psi.ProtoEnumProperty;
+import com.google.protoeditor.psi.ProtoKeyword;
+import com.google.protoeditor.psi.ProtoProperty;
+import com.google.protoeditor.psi.ProtoSimpleProperty;
+
+import com.intellij.lang.annotation.AnnotationHolder;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Test cases for {@link AnnotatorDispatchTable}.
+ */
+public class AnnotatorDispatchTableTest extends TestCase {
+
+  private static final ProtoElementAnnotator<ProtoProperty> PROPERTY_ANNOTATOR =
+      new NoopAnnotator<ProtoProperty>();
+  private static final ProtoElementAnnotator<ProtoSimpleProperty> SIMPLE_PROPERTY_ANNOTATOR =
+      new NoopAnnotator<ProtoSimpleProperty>();
+  private static final ProtoElementAnnotator<ProtoProperty> EXTENSION_ANNOTATOR =
+      new NoopAnnotator<ProtoProperty>();
+
+  private AnnotatorDispatchTable table;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    Map<Class, ProtoElementAnnotator> builtIn = ImmutableMap.<Class, ProtoElementAnnotator>of(
+        ProtoProperty.class, PROPERTY_ANNOTATOR,
+        ProtoSimpleProperty.class, SIMPLE_PROPERTY_ANNOTATOR);
+    Map<Class, ProtoElementAnnotator> extension = ImmutableMap.<Class, ProtoElementAnnotator>of(
+        ProtoProperty.class, EXTENSION_ANNOTATOR);
+    table = new AnnotatorDispatchTable("test", Arrays.asList(builtIn, extension));
+  }
+
+  public void testSubclassesInheritAnnotatorsOfAllExtensions() throws Exception {
+    assertEquals(
+        Arrays.<ProtoElementAnnotator>asList(
+            PROPERTY_ANNOTATOR, SIMPLE_PROPERTY_ANNOTATOR, EXTENSION_ANNOTATOR),
+        Arrays.asList(table.getAnnotators(ProtoSimpleProperty.class)));
+    assertEquals(
+        Arrays.<ProtoElementAnnotator>asList(PROPERTY_ANNOTATOR, EXTENSION_ANNOTATOR),
+        Arrays.asList(table.getAnnotators(ProtoEnumProperty.class)));
+  }
+
+  public void testUnregisteredClassHasNoAnnotators() throws Exception {
+    assertEquals(0, table.getAnnotators(ProtoKeyword.class).length);
+    assertSame(table.getAnnotators(ProtoKeyword.class), table.getAnnotators(String.class));
+  }
+
+  private static class NoopAnnotator<E> implements ProtoElementAnnotator<E> {
+
+    @Override
+    public void annotate(E element, AnnotationHolder annotationHolder) {
+    }
+  }
+}
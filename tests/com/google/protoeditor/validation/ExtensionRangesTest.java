@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.validation;
+
+import com.google.protoeditor.psi.ProtoExtendDefinition;
+import com.google.protoeditor.psi.ProtoExtensionsStatement;
+import com.google.protoeditor.psi.ProtoPsiTools;
+import com.google.protoeditor.psi.ProtoTestCase;
+
+import java.util.List;
+
+/**
+ * Test cases for {@link ExtensionRanges}.
+ */
+public class ExtensionRangesTest extends ProtoTestCase {
+
+  public void testContainsAndFindRange() throws Exception {
+    writeTestProto("message Foo {",
+                   "  extensions 100 to 199;",
+                   "  extensions 150 to 160;",
+                   "  extensions 1000 to max;",
+                   "}");
+    ExtensionRanges ranges = ExtensionRanges.getInstance(getOnlyMessage(protoFile, "Foo"));
+    assertFalse(ranges.isEmpty());
+    assertFalse(ranges.contains(99));
+    assertTrue(ranges.contains(100));
+    assertTrue(ranges.contains(155));
+    assertTrue(ranges.contains(170));
+    assertTrue(ranges.contains(199));
+    assertFalse(ranges.contains(200));
+    assertTrue(ranges.contains(536870911));
+    assertEquals("extensions 100 to 199;", ranges.findRange(170).getText());
+    assertNull(ranges.findRange(500));
+
+    List<ProtoExtensionsStatement> overlapping = ranges.getOverlappingRanges();
+    assertEquals(1, overlapping.size());
+    assertEquals("extensions 150 to 160;", overlapping.get(0).getText());
+  }
+
+  public void testHexBounds() throws Exception {
+    writeTestProto("message Foo {",
+                   "  extensions 0x64 to 0xC7;",
+                   "  extensions 0x3E8 to max;",
+                   "}");
+    ExtensionRanges ranges = ExtensionRanges.getInstance(getOnlyMessage(protoFile, "Foo"));
+    assertFalse(ranges.contains(99));
+    assertTrue(ranges.contains(100));
+    assertTrue(ranges.contains(199));
+    assertFalse(ranges.contains(200));
+    assertTrue(ranges.contains(1000));
+  }
+
+  public void testRangesWithBoundsOutOfOrderAreIgnored() throws Exception {
+    writeTestProto("message Foo {",
+                   "  extensions 200 to 100;",
+                   "}");
+    ExtensionRanges ranges = ExtensionRanges.getInstance(getOnlyMessage(protoFile, "Foo"));
+    assertTrue(ranges.isEmpty());
+    assertFalse(ranges.contains(150));
+  }
+
+  public void testFindExtendeeInSameFile() throws Exception {
+    writeTestProto("package foo;",
+                   "message Foo {",
+                   "  extensions 100 to 199;",
+                   "}",
+                   "extend Foo {",
+                   "  optional int32 bar = 100;",
+                   "}");
+    ProtoExtendDefinition extendDefinition = ProtoPsiTools.findDirectChildOfType(
+        protoFile, ProtoExtendDefinition.class);
+    assertEquals("foo.Foo", extendDefinition.getQualifiedExtendeeName());
+    assertSame(getMessageByName(protoFile, "Foo"),
+               ExtensionRanges.findExtendee(extendDefinition));
+  }
+}
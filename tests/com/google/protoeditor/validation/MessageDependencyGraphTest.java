@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.validation;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.protoeditor.psi.ProtoTestCase;
+
+/**
+ * Test cases for {@link MessageDependencyGraph}.
+ */
+public class MessageDependencyGraphTest extends ProtoTestCase {
+
+  public void testReachableFromServices() throws Exception {
+    writeTestProto("message Request {",
+                   "  optional message<Payload> payload = 1;",
+                   "}",
+                   "message Payload {",
+                   "  repeated message<Item> item = 1;",
+                   "}",
+                   "message Item {",
+                   "  optional message<Payload> parent = 1;",
+                   "}",
+                   "message Response {",
+                   "}",
+                   "message Unused {",
+                   "  optional message<Request> request = 1;",
+                   "}",
+                   "service Search {",
+                   "  rpc Find (Request) returns (Response);",
+                   "}");
+    MessageDependencyGraph graph = MessageDependencyGraph.getInstance(protoFile);
+
+    assertTrue(graph.hasServices());
+    assertEquals(ImmutableSet.of("Request", "Response"), graph.getRoots());
+    assertEquals(ImmutableSet.of("Request", "Response", "Payload", "Item"),
+                 graph.getReachableFromServices());
+    assertEquals(ImmutableSet.of("Unused", "Request", "Payload", "Item"),
+                 graph.getReachable(ImmutableSet.of("Unused")));
+    assertSame(graph, MessageDependencyGraph.getInstance(protoFile));
+  }
+
+  public void testNoServices() throws Exception {
+    writeTestProto("message Foo {",
+                   "  optional message<Bar> bar = 1;",
+                   "}",
+                   "message Bar {",
+                   "}");
+    MessageDependencyGraph graph = MessageDependencyGraph.getInstance(protoFile);
+
+    assertFalse(graph.hasServices());
+    assertTrue(graph.getReachableFromServices().isEmpty());
+    assertEquals(ImmutableSet.of("Foo", "Bar"), graph.getMessageNames());
+  }
+}
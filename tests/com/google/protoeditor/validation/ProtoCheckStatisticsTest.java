@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.validation;
+
+import com.google.protoeditor.metrics.ProtoMetrics;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Test cases for {@link ProtoCheckStatistics}.
+ */
+public class ProtoCheckStatisticsTest extends TestCase {
+
+  public void testRecordsCountsAndTimes() throws Exception {
+    ProtoCheckStatistics statistics = new ProtoCheckStatistics();
+    long now = System.nanoTime();
+    statistics.record("cheap", now, statistics.getAllocatedBytes());
+    statistics.record("expensive", now - 5000000, statistics.getAllocatedBytes());
+    statistics.record("expensive", now - 1000000, statistics.getAllocatedBytes());
+
+    List<ProtoCheckStatistics.CheckStatistics> all = statistics.getStatistics();
+    assertEquals(2, all.size());
+    ProtoCheckStatistics.CheckStatistics expensive = all.get(0);
+    assertEquals("expensive", expensive.getName());
+    assertEquals(2, expensive.getCount());
+    assertTrue(expensive.getMaxNanos() >= 5000000);
+    assertTrue(expensive.getTotalNanos() >= 6000000);
+    assertEquals("cheap", all.get(1).getName());
+
+    String report = statistics.getReport();
+    assertTrue(report.contains("expensive"));
+    assertTrue(report.contains("cheap"));
+
+    statistics.reset();
+    assertTrue(statistics.getStatistics().isEmpty());
+  }
+
+  public void testDisabledByDefault() throws Exception {
+    assertFalse(ProtoCheckStatistics.isEnabled());
+  }
+
+  public void testSharesTheSwitchOfProtoMetrics() throws Exception {
+    try {
+      ProtoCheckStatistics.setEnabled(true);
+      assertTrue(ProtoMetrics.isEnabled());
+      ProtoMetrics.setEnabled(false);
+      assertFalse(ProtoCheckStatistics.isEnabled());
+    } finally {
+      ProtoMetrics.setEnabled(false);
+    }
+  }
+}
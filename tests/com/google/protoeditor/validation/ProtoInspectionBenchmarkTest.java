@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.validation;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protoeditor.psi.ProtoFile;
+import com.google.protoeditor.psi.ProtoTestCase;
+
+import com.intellij.codeInspection.InspectionManager;
+import com.intellij.codeInspection.LocalInspectionTool;
+import com.intellij.codeInspection.ProblemsHolder;
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiElementVisitor;
+import com.intellij.psi.PsiRecursiveElementVisitor;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.Processor;
+import com.intellij.util.ThrowableRunnable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the wall time of running all {@link ProtoInspection}s over a project, once file by
+ * file and once on the platform's parallel job launcher, as batch inspection does.
+ */
+public class ProtoInspectionBenchmarkTest extends ProtoTestCase {
+
+  private static final int FILE_COUNT = 300;
+  private static final int EXPECTED_MS = 15000;
+
+  private final List<LocalInspectionTool> inspections = ImmutableList.<LocalInspectionTool>of(
+      new ProtoFieldNumberInspection(),
+      new ProtoNameClashInspection(),
+      new ProtoEnumInspection(),
+      new ProtoOptionInspection(),
+      new ProtoUnusedMessageInspection(),
+      new ProtoCollisionInspection());
+  private final List<ProtoFile> files = new ArrayList<ProtoFile>();
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    for (int i = 0; i < FILE_COUNT; i++) {
+      files.add(addProtoFile("bench/file" + i + ".proto",
+                             "package bench" + i + ";",
+                             "option java_package = \"com.example.bench" + i + "\";",
+                             "message Request {",
+                             "  optional int32 id = 1;",
+                             "  optional int32 duplicate = 1;",
+                             "  optional string name = 2;",
+                             "  repeated Status status = 3;",
+                             "  extensions 100 to 199;",
+                             "}",
+                             "message Response {",
+                             "  optional Request request = 1;",
+                             "  optional int32 name = 2;",
+                             "  optional int32 name = 3;",
+                             "}",
+                             "message Unused {",
+                             "}",
+                             "enum Status {",
+                             "  OK = 0;",
+                             "  FAILED = 1;",
+                             "  BROKEN = 1;",
+                             "}",
+                             "service Search {",
+                             "  rpc Find(Request) returns (Response);",
+                             "}"));
+    }
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    files.clear();
+    super.tearDown();
+  }
+
+  public void testWholeProjectInspection() throws Throwable {
+    long start = System.currentTimeMillis();
+    int sequentialProblems = 0;
+    for (ProtoFile file : files) {
+      sequentialProblems += inspect(file);
+    }
+    long sequentialMs = System.currentTimeMillis() - start;
+    assertTrue(sequentialProblems > 0);
+
+    final AtomicInteger parallelProblems = new AtomicInteger();
+    final long[] parallelMs = new long[1];
+    PlatformTestUtil.startPerformanceTest("inspect " + FILE_COUNT + " proto files", EXPECTED_MS,
+        new ThrowableRunnable() {
+          @Override
+          public void run() throws Throwable {
+            parallelProblems.set(0);
+            long runStart = System.currentTimeMillis();
+            assertTrue(JobLauncher.getInstance().invokeConcurrentlyUnderProgress(
+                files, new EmptyProgressIndicator(), false, new Processor<ProtoFile>() {
+                  @Override
+                  public boolean process(ProtoFile file) {
+                    parallelProblems.addAndGet(inspect(file));
+                    return true;
+                  }
+                }));
+            parallelMs[0] = System.currentTimeMillis() - runStart;
+          }
+        }).cpuBound().assertTiming();
+    assertEquals(sequentialProblems, parallelProblems.get());
+
+    System.out.println("Inspected " + FILE_COUNT + " proto files: sequential " + sequentialMs
+        + " ms, parallel " + parallelMs[0] + " ms on "
+        + Runtime.getRuntime().availableProcessors() + " cores");
+  }
+
+  private int inspect(ProtoFile file) {
+    int problems = 0;
+    for (LocalInspectionTool inspection : inspections) {
+      ProblemsHolder holder =
+          new ProblemsHolder(InspectionManager.getInstance(getProject()), file, false);
+      final PsiElementVisitor visitor = inspection.buildVisitor(holder, false);
+      file.accept(new PsiRecursiveElementVisitor() {
+        @Override
+        public void visitElement(PsiElement element) {
+          element.accept(visitor);
+          super.visitElement(element);
+        }
+      });
+      problems += holder.getResultCount();
+    }
+    return problems;
+  }
+}
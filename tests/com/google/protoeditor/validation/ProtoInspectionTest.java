@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.validation;
+
+import com.google.protoeditor.psi.ProtoTestCase;
+
+import com.intellij.codeInspection.InspectionManager;
+import com.intellij.codeInspection.LocalInspectionTool;
+import com.intellij.codeInspection.ProblemDescriptor;
+import com.intellij.codeInspection.ProblemHighlightType;
+import com.intellij.codeInspection.ProblemsHolder;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiElementVisitor;
+import com.intellij.psi.PsiRecursiveElementVisitor;
+
+import java.util.List;
+
+/**
+ * Test cases for {@link ProtoInspection} and its subclasses.
+ */
+public class ProtoInspectionTest extends ProtoTestCase {
+
+  public void testFieldNumberInspectionReportsSharedIds() throws Exception {
+    writeTestProto("message Foo {",
+                   "  optional int32 a = 1;",
+                   "  optional int32 b = 1;",
+                   "  optional int32 c = 2;",
+                   "}");
+    List<ProblemDescriptor> problems = inspect(new ProtoFieldNumberInspection());
+    assertEquals(2, problems.size());
+    for (ProblemDescriptor problem : problems) {
+      assertEquals("multiple properties have ID 1", problem.getDescriptionTemplate());
+      assertEquals("1", problem.getPsiElement().getText());
+      assertEquals(ProblemHighlightType.GENERIC_ERROR, problem.getHighlightType());
+      assertEquals(1, problem.getFixes().length);
+    }
+  }
+
+  public void testFieldNumberInspectionChecksExtensionRanges() throws Exception {
+    writeTestProto("message Foo {",
+                   "  optional int32 a = 150;",
+                   "  extensions 100 to 199;",
+                   "  extensions 300 to 200;",
+                   "}",
+                   "extend Foo {",
+                   "  optional int32 b = 120;",
+                   "  optional int32 c = 5;",
+                   "}");
+    List<ProblemDescriptor> problems = inspect(new ProtoFieldNumberInspection());
+    assertEquals(3, problems.size());
+    assertEquals("property ID 150 is reserved for extensions",
+                 problems.get(0).getDescriptionTemplate());
+    assertEquals("extensions lower bound 300 is greater than upper bound 200",
+                 problems.get(1).getDescriptionTemplate());
+    assertEquals("property ID 5 is not in an extension range of Foo",
+                 problems.get(2).getDescriptionTemplate());
+  }
+
+  public void testUnusedMessageInspection() throws Exception {
+    writeTestProto("message Request {",
+                   "}",
+                   "message Unused {",
+                   "}",
+                   "service Search {",
+                   "  rpc Find(Request) returns (Request);",
+                   "}");
+    List<ProblemDescriptor> problems = inspect(new ProtoUnusedMessageInspection());
+    assertEquals(1, problems.size());
+    assertEquals("Unused", problems.get(0).getPsiElement().getText());
+  }
+
+  public void testInspectionsOnlyReportTheirFamily() throws Exception {
+    writeTestProto("message Foo {",
+                   "  optional int32 a = 1;",
+                   "  optional int32 a = 2;",
+                   "}");
+    assertEquals(0, inspect(new ProtoFieldNumberInspection()).size());
+    assertEquals(0, inspect(new ProtoEnumInspection()).size());
+    assertEquals(2, inspect(new ProtoNameClashInspection()).size());
+  }
+
+  private List<ProblemDescriptor> inspect(LocalInspectionTool inspection) {
+    ProblemsHolder holder = new ProblemsHolder(
+        InspectionManager.getInstance(fixture.getProject()), protoFile, false);
+    final PsiElementVisitor visitor = inspection.buildVisitor(holder, false);
+    protoFile.accept(new PsiRecursiveElementVisitor() {
+      @Override
+      public void visitElement(PsiElement element) {
+        element.accept(visitor);
+        super.visitElement(element);
+      }
+    });
+    return holder.getResults();
+  }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.validation;
+
+import com.google.protoeditor.psi.ProtoMessageTypeReference;
+import com.google.protoeditor.psi.ProtoTestCase;
+
+import com.intellij.lang.annotation.Annotation;
+import com.intellij.lang.annotation.AnnotationHolder;
+import com.intellij.psi.PsiElement;
+
+import org.easymock.EasyMock;
+
+import java.util.List;
+
+/**
+ * Test cases for {@link ProtoSemanticAnnotator}.
+ */
+public class ProtoSemanticAnnotatorTest extends ProtoTestCase {
+
+  public void testReportsUnresolvedReferences() throws Exception {
+    writeTestProto("message Foo {",
+                   "  optional message<Foo> self = 1;",
+                   "  optional message<Bar> bar = 2;",
+                   "}");
+    ProtoSemanticAnnotator annotator = new ProtoSemanticAnnotator();
+    List<ProtoMessageTypeReference> unresolved =
+        annotator.doAnnotate(annotator.collectInformation(protoFile));
+    assertEquals(1, unresolved.size());
+    assertEquals("Bar", unresolved.get(0).getReferencedName());
+
+    AnnotationHolder annotationHolder = EasyMock.createMock(AnnotationHolder.class);
+    EasyMock.expect(annotationHolder.createErrorAnnotation(
+        EasyMock.isA(PsiElement.class), EasyMock.eq("unknown message type Bar")))
+        .andReturn(new Annotation(0, 0, null, "", ""));
+    EasyMock.replay(annotationHolder);
+    annotator.apply(protoFile, unresolved, annotationHolder);
+    EasyMock.verify(annotationHolder);
+  }
+
+  public void testFreshSnapshotIsNotOutdated() throws Exception {
+    writeTestProto("message Foo {",
+                   "}");
+    ProtoSemanticAnnotator.Snapshot snapshot =
+        new ProtoSemanticAnnotator().collectInformation(protoFile);
+    assertFalse(snapshot.isOutdated());
+  }
+}
@@ -33,6 +33,8 @@ import com.intellij.psi.impl.source.tree.LeafPsiElement;
 
 import org.easymock.EasyMock;
 
+import gnu.trove.TLongArrayList;
+
 import java.util.List;
 
 /**
@@ -240,4 +242,55 @@ public class ProtoValidatorTest extends ProtoTestCase {
     });
     EasyMock.verify(annotationHolder);
   }
+
+  public void testCheckPropertiesReportsDuplicateAndCaseClashingNames() throws Exception {
+    writeTestProto("message Foo {",
+        "  optional int32 a = 1;",
+        "  optional int32 a = 2;",
+        "  optional int32 Bar = 3;",
+        "  optional int32 bar = 4;",
+        "  optional int32 baz = 5;",
+        "}");
+    ProtoValidator validator = new ProtoValidator();
+
+    AnnotationHolder annotationHolder = EasyMock.createMock(AnnotationHolder.class);
+    Annotation annotation = new Annotation(0, 0, HighlightSeverity.ERROR, "", "");
+    EasyMock.expect(annotationHolder.createErrorAnnotation(
+        EasyMock.isA(PsiElement.class),
+        EasyMock.eq("multiple definitions of property 'a'"))).andReturn(annotation).times(2);
+    EasyMock.expect(annotationHolder.createErrorAnnotation(
+        EasyMock.isA(PsiElement.class),
+        EasyMock.eq("property names differ only in case"))).andReturn(annotation).times(2);
+    EasyMock.replay(annotationHolder);
+    validator.checkProperties(
+        protoFile.getMessageDefinition("Foo").getDefinitionBody(), annotationHolder);
+    EasyMock.verify(annotationHolder);
+  }
+
+  public void testNextFreeFieldNumberSkipsUsedAndExtensionNumbers() throws Exception {
+    writeTestProto("message Foo {",
+        "  extensions 4 to 9;",
+        "  extensions 18990 to 18999;",
+        "}");
+    ExtensionRanges ranges = ExtensionRanges.getInstance(protoFile.getMessageDefinition("Foo"));
+
+    assertEquals(2, ProtoValidator.nextFreeFieldNumber(ids(1, 3), ranges, 1));
+    assertEquals(10, ProtoValidator.nextFreeFieldNumber(ids(1, 2, 3), ranges, 1));
+    assertEquals(12, ProtoValidator.nextFreeFieldNumber(ids(1, 2, 3, 10, 11), ranges, 1));
+    assertEquals(20000, ProtoValidator.nextFreeFieldNumber(ids(18989), ranges, 18989));
+  }
+
+  public void testNextFreeFieldNumberStopsAtTheLargestFieldNumber() throws Exception {
+    writeTestProto("message Foo {",
+        "  extensions 1000 to max;",
+        "}");
+    ExtensionRanges ranges = ExtensionRanges.getInstance(protoFile.getMessageDefinition("Foo"));
+
+    assertEquals(-1, ProtoValidator.nextFreeFieldNumber(ids(999), ranges, 999));
+    assertEquals(998, ProtoValidator.nextFreeFieldNumber(ids(999), ranges, 998));
+  }
+
+  private static SortedIdSet ids(long... ids) {
+    return SortedIdSet.of(new TLongArrayList(ids));
+  }
 }
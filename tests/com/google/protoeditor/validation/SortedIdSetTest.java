@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2012 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.protoeditor.validation;
+
+import gnu.trove.TLongArrayList;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for {@link SortedIdSet}.
+ */
+public class SortedIdSetTest extends TestCase {
+
+  public void testOfRemovesDuplicates() throws Exception {
+    SortedIdSet set = SortedIdSet.of(list(5, 1, 3, 1, 5));
+    assertEquals(3, set.size());
+    assertTrue(set.contains(1));
+    assertTrue(set.contains(3));
+    assertTrue(set.contains(5));
+    assertFalse(set.contains(2));
+    assertEquals(5, set.last());
+  }
+
+  public void testDuplicatesOf() throws Exception {
+    SortedIdSet duplicates = SortedIdSet.duplicatesOf(list(4, 2, 4, 7, 2, 4, 9));
+    assertEquals(2, duplicates.size());
+    assertTrue(duplicates.contains(2));
+    assertTrue(duplicates.contains(4));
+    assertFalse(duplicates.contains(7));
+    assertTrue(SortedIdSet.duplicatesOf(list(1, 2, 3)).isEmpty());
+  }
+
+  public void testNextFreeId() throws Exception {
+    SortedIdSet set = SortedIdSet.of(list(1, 2, 3, 5, 6, 10));
+    assertEquals(4, set.nextFreeId(1));
+    assertEquals(4, set.nextFreeId(3));
+    assertEquals(4, set.nextFreeId(4));
+    assertEquals(7, set.nextFreeId(5));
+    assertEquals(11, set.nextFreeId(10));
+    assertEquals(1, SortedIdSet.of(list()).nextFreeId(1));
+  }
+
+  public void testLastFreeIdIn() throws Exception {
+    SortedIdSet set = SortedIdSet.of(list(1, 2, 3, 12, 13, 14, 15));
+    assertEquals(11, set.lastFreeIdIn(1, 15));
+    assertEquals(-1, set.lastFreeIdIn(12, 15));
+    assertEquals(-1, set.lastFreeIdIn(1, 3));
+    assertEquals(4, set.lastFreeIdIn(1, 4));
+    assertEquals(-1, SortedIdSet.of(list(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15))
+        .lastFreeIdIn(1, 15));
+  }
+
+  public void testLastOfEmptySetFails() throws Exception {
+    try {
+      SortedIdSet.of(list()).last();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  private static TLongArrayList list(long... values) {
+    return new TLongArrayList(values);
+  }
+}